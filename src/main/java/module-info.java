@@ -1,13 +1,15 @@
 /**
  * Module definition for the Java app.
  * This module requires JavaFX controls and graphics, Apache Commons IO,
- * and Java Desktop for GUI components.
+ * Java Desktop for GUI components and Java SQL for the embedded database.
+ * The H2 driver isn't required, it's found as a java.sql.Driver service.
  * It exports packages for controllers, views, models, data, and utilities.
  */
 module nl.hva.oop.practicumopdracht {
     requires transitive javafx.controls;
     requires org.apache.commons.io;
     requires java.desktop;
+    requires java.sql;
     requires transitive javafx.graphics;
     requires info.remzi.javafx.hyperlink;
     exports nl.hva.oop.practicumopdracht;
@@ -1,6 +1,10 @@
 package nl.hva.oop.practicumopdracht;
 
 import javafx.application.Application;
+import nl.hva.oop.practicumopdracht.data.Exporter;
+import nl.hva.oop.practicumopdracht.data.FormatConverter;
+import nl.hva.oop.practicumopdracht.data.PersonDAO;
+import nl.hva.oop.practicumopdracht.data.TicketDAO;
 import nl.hva.oop.practicumopdracht.utils.Preloader;
 import java.io.*;
 import java.net.ServerSocket;
@@ -69,6 +73,15 @@ public class Main {
             APP_DATA_DIRECTORY = System.getProperty("user.home") + File.separator + appFolder;
         }
 
+        // Headless conversion of a data file, see convert()
+        if (args.length > 0 && args[0].equals("--convert")) {
+            System.exit(convert(args) ? 0 : 1);
+        }
+        // Headless export of the data, see export()
+        if (args.length > 0 && args[0].equals("--export")) {
+            System.exit(export(args) ? 0 : 1);
+        }
+
         int port = loadPortFromConfig();
 
         if (!attemptSingleInstanceLock(port)) {
@@ -104,6 +117,76 @@ public class Main {
         System.out.println(Integriteitsverklaring);
     }
 
+    /**
+     * Converts a data file without starting the application, for example:
+     * --convert tickets Tickets.obj Tickets.dat binary
+     * @param args is a String array denoting --convert, persons or tickets, the source, the target, the format of
+     *             the target (text, binary or object) and for tickets optionally the persons file of the owners
+     * @return true if the file has been converted
+     */
+    private static boolean convert(String[] args) {
+        FormatConverter.Format format = null;
+        if (args.length == 5 || args.length == 6 && args[1].equals("tickets")) {
+            for (FormatConverter.Format value : FormatConverter.Format.values()) {
+                if (value.name().equalsIgnoreCase(args[4])) {
+                    format = value;
+                }
+            }
+        }
+        if (format == null || !args[1].equals("persons") && !args[1].equals("tickets")) {
+            System.err.println("Usage: --convert persons|tickets <source> <target> text|binary|object [<persons>]");
+            return false;
+        }
+
+        File source = new File(args[2]);
+        File target = new File(args[3]);
+        File persons = args.length == 6 ? new File(args[5]) : null;
+        return args[1].equals("persons") ? FormatConverter.convertPersons(source, target, format) :
+                FormatConverter.convertTickets(source, target, format, persons);
+    }
+
+    /**
+     * Exports the persons joined with their tickets without starting the application (see Exporter), for example:
+     * --export csv Export.csv.gz --gzip
+     * @param args is a String array denoting --export, the format (csv or jsonl), the target and optionally --gzip
+     * @return true if the data has been exported
+     */
+    private static boolean export(String[] args) {
+        Exporter.Format format = null;
+        if (args.length >= 3) {
+            for (Exporter.Format value : Exporter.Format.values()) {
+                if (value.getExtension().equalsIgnoreCase("." + args[1])) {
+                    format = value;
+                }
+            }
+        }
+        boolean gzip = args.length == 4 && args[3].equals("--gzip");
+        if (format == null || args.length > 4 || args.length == 4 && !gzip) {
+            System.err.println("Usage: --export csv|jsonl <target> [--gzip]");
+            return false;
+        }
+
+        MainApplication.createDAOs();
+        PersonDAO personDAO = MainApplication.getPersonDAO();
+        TicketDAO ticketDAO = MainApplication.getTicketDAO();
+        try {
+            if (!ticketDAO.loadWith(personDAO)) {
+                System.err.println("Couldn't load data!");
+                return false;
+            }
+        } catch (FileNotFoundException e) {
+            System.err.println("Couldn't load data!");
+            return false;
+        }
+
+        Exporter exporter = new Exporter(personDAO, ticketDAO, new File(args[2]), format, gzip);
+        if (!exporter.export()) {
+            return false;
+        }
+        System.out.println("Exported " + exporter);
+        return true;
+    }
+
     private static int generateRandomPort() {
         return ThreadLocalRandom.current().nextInt(DEFAULT_PORT_MIN, DEFAULT_PORT_MAX + 1);
     }
@@ -124,7 +207,10 @@ public class Main {
         return port;
     }
 
-    private static int loadPortFromConfig() {
+    /**
+     * @return the properties of config.properties, empty if the file doesn't exist or can't be read
+     */
+    private static Properties loadConfig() {
         Properties properties = new Properties();
         File configFile = new File(APP_DATA_DIRECTORY, "config.properties");
 
@@ -135,17 +221,37 @@ public class Main {
                  BufferedReader bufferedReader = new BufferedReader(inputStreamReader)) {
 
                 properties.load(bufferedReader);
-                String portString = properties.getProperty("port");
+            } catch (IOException | IllegalArgumentException e) {
+                if (DEBUG) {
+                    System.err.println("Invalid config file: " + e.getMessage());
+                }
+            }
+        }
+        return properties;
+    }
 
-                if (portString != null) {
-                    int port = Integer.parseInt(portString);
-                    if (port >= DEFAULT_PORT_MIN && port <= DEFAULT_PORT_MAX) {
-                        return port; // Use the port from config without checking availability
-                    }
+    /**
+     * @param key          is a String denoting the name of the setting in config.properties, for example
+     *                     storage.tickets
+     * @param defaultValue is a String denoting the value if the setting isn't in config.properties
+     * @return the value of the setting
+     */
+    public static String getConfigProperty(String key, String defaultValue) {
+        return loadConfig().getProperty(key, defaultValue).trim();
+    }
+
+    private static int loadPortFromConfig() {
+        String portString = loadConfig().getProperty("port");
+
+        if (portString != null) {
+            try {
+                int port = Integer.parseInt(portString.trim());
+                if (port >= DEFAULT_PORT_MIN && port <= DEFAULT_PORT_MAX) {
+                    return port; // Use the port from config without checking availability
                 }
-            } catch (IOException | NumberFormatException e) {
+            } catch (NumberFormatException e) {
                 if (DEBUG) {
-                    System.err.println("Invalid config file or port, generating a new one.");
+                    System.err.println("Invalid port, generating a new one.");
                 }
             }
         }
@@ -157,7 +263,8 @@ public class Main {
     }
 
     private static void savePortToConfig(int port) {
-        Properties properties = new Properties();
+        // The other settings in the config file are kept
+        Properties properties = loadConfig();
         properties.setProperty("port", String.valueOf(port));
 
         File configFile = new File(APP_DATA_DIRECTORY, "config.properties");
@@ -226,6 +333,10 @@ public class Main {
     }
 
     public static String getAppDataDirectory() {
+        // Without main(), for example in the tests, the directory is given by the system property appDataDirectory
+        if (APP_DATA_DIRECTORY == null) {
+            APP_DATA_DIRECTORY = System.getProperty("appDataDirectory");
+        }
         return APP_DATA_DIRECTORY;
     }
 }
\ No newline at end of file
@@ -10,9 +10,11 @@ import javafx.stage.Stage;
 import nl.hva.oop.practicumopdracht.controllers.Controller;
 import nl.hva.oop.practicumopdracht.controllers.PersonController;
 import nl.hva.oop.practicumopdracht.data.*;
+import nl.hva.oop.practicumopdracht.utils.AutoSaver;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.time.Duration;
 import java.time.format.DateTimeFormatter;
 import java.util.Locale;
 import java.util.Objects;
@@ -31,8 +33,6 @@ public class MainApplication extends Application {
             getStudentNumber());
     private static final int WIDTH = 800;
     private static final int HEIGHT = 600;
-    // Visual bounds - usable area of the screen (no task bars etc.)
-    private static final Rectangle2D VISUAL_BOUNDS = Screen.getPrimary().getVisualBounds();
     private static final String DATE_FORMAT = "dd-MM-yyyy";
     private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern(DATE_FORMAT);
     private static Stage stage;
@@ -44,6 +44,17 @@ public class MainApplication extends Application {
     private static PersonDAO personDAO;
     // TicketDAO - DetailDAO
     private static TicketDAO ticketDAO;
+    /*
+     * Autosave after changes, set in jpackage --java-options "-Dautosave=true/false". The quiet period and maximum delay
+     * are in milliseconds: "-Dautosave.quietPeriod=2000" and "-Dautosave.maxDelay=10000"
+     */
+    private static final boolean AUTOSAVE = Boolean.parseBoolean(System.getProperty("autosave", "true"));
+    private static final long AUTOSAVE_QUIET_PERIOD = Long.getLong("autosave.quietPeriod", 2000);
+    private static final long AUTOSAVE_MAX_DELAY = Long.getLong("autosave.maxDelay", 10000);
+    private static AutoSaver autoSaver;
+    // Minutes between two checks of the checksums of the data files (see Scrubber), "-Dscrub.interval=0" turns it off
+    private static final long SCRUB_INTERVAL = Long.getLong("scrub.interval", 60);
+    private static Scrubber scrubber;
 
     public MainApplication() {
         try (InputStream inputStream = MainApplication.class.getResourceAsStream("images/icon.png")) {
@@ -87,11 +98,14 @@ public class MainApplication extends Application {
         stage.setMinWidth(WIDTH);
         stage.setMinHeight(HEIGHT);
 
-        personDAO = new BinaryPersonDAO();
-        ticketDAO = new ObjectTicketDAO();
+        createDAOs();
         try {
-            personDAO.load();
-            ticketDAO.load();
+            // The persons and the tickets are loaded at the same time
+            ticketDAO.loadWith(personDAO);
+            if (DEBUG) {
+                System.out.printf("Shared repeated values: %d bytes saved (persons), %d bytes saved (tickets)%n",
+                        personDAO.getDeduplicatedBytes(), ticketDAO.getDeduplicatedBytes());
+            }
         } catch (FileNotFoundException e) {
             System.err.println("Couldn't load data!");
             Platform.exit();
@@ -103,10 +117,28 @@ public class MainApplication extends Application {
             System.exit(0);
         }
 
+        if (AUTOSAVE) {
+            autoSaver = new AutoSaver(personDAO, ticketDAO, Duration.ofMillis(AUTOSAVE_QUIET_PERIOD),
+                    Duration.ofMillis(Math.max(AUTOSAVE_QUIET_PERIOD, AUTOSAVE_MAX_DELAY)));
+        }
+        if (SCRUB_INTERVAL > 0) {
+            scrubber = new Scrubber(Duration.ofMinutes(SCRUB_INTERVAL));
+            scrubber.start();
+        }
+
         // Start/default controller with default associated view
         switchController(new PersonController(null));
     }
 
+    /**
+     * Creates the DAOs of the storage chosen in config.properties (see Storage), they still have to be loaded.
+     * Also used by Main --export, which doesn't start JavaFX.
+     */
+    static void createDAOs() {
+        personDAO = Storage.forPersons(getConfigProperty("storage.persons", Storage.AUTO)).createPersonDAO();
+        ticketDAO = Storage.forTickets(getConfigProperty("storage.tickets", Storage.AUTO)).createTicketDAO();
+    }
+
     /**
      * switchController for switching between views.
      *
@@ -169,7 +201,24 @@ public class MainApplication extends Application {
         return ticketDAO;
     }
 
+    /**
+     * @return the autosave of the DAOs or null if autosave is turned off
+     */
+    public static AutoSaver getAutoSaver() {
+        return autoSaver;
+    }
+
+    /**
+     * @return the background check of the data files or null if it's turned off
+     */
+    public static Scrubber getScrubber() {
+        return scrubber;
+    }
+
     public static double getMaxWidthScreen() {
-        return VISUAL_BOUNDS.getWidth();
+        // Visual bounds - usable area of the screen (no task bars etc.), not a constant because this class is also
+        // used by Main --convert and --export, which don't start JavaFX
+        Rectangle2D visualBounds = Screen.getPrimary().getVisualBounds();
+        return visualBounds.getWidth();
     }
 }
\ No newline at end of file
@@ -9,11 +9,14 @@ import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import nl.hva.oop.practicumopdracht.MainApplication;
 import nl.hva.oop.practicumopdracht.comparators.NameComparator;
+import nl.hva.oop.practicumopdracht.data.Exporter;
 import nl.hva.oop.practicumopdracht.data.PersonDAO;
 import nl.hva.oop.practicumopdracht.data.TicketDAO;
 import nl.hva.oop.practicumopdracht.models.Person;
 import nl.hva.oop.practicumopdracht.utils.AlertDialog;
+import nl.hva.oop.practicumopdracht.utils.DAOTask;
 import nl.hva.oop.practicumopdracht.utils.DatePickerConverter;
+import nl.hva.oop.practicumopdracht.utils.ExportFileChooser;
 import nl.hva.oop.practicumopdracht.utils.InputHandler;
 import nl.hva.oop.practicumopdracht.utils.IsNumeric;
 import nl.hva.oop.practicumopdracht.views.AboutView;
@@ -108,9 +111,15 @@ public class PersonController extends Controller {
                 }
         );
 
+        // Show the progress of autosaves in this view, only the menu is locked while saving
+        if (getAutoSaver() != null) {
+            getAutoSaver().setOnSave(task -> view.getStatusBar().show(task, view.getMenuBar()));
+        }
+
         // Menubar items
         view.getMenuItemSave().setOnAction(this::handleMenuSaveButton);
         view.getMenuItemLoad().setOnAction(this::handleMenuLoadButton);
+        view.getMenuItemExport().setOnAction(this::handleMenuExportButton);
         view.getMenuItemClose().setOnAction(this::handleMenuCloseButton);
         view.getMenuItemSortAZ().setOnAction(this::handleMenuSortAZButton);
         view.getMenuItemSortZA().setOnAction(this::handleMenuSortZAButton);
@@ -184,18 +193,37 @@ public class PersonController extends Controller {
     }
 
     private void handleMenuSaveButton(ActionEvent event) {
+        // Nothing changed since the last load or save, so there is no need to write the files again
+        if (!personDAO.hasChanges() && !ticketDAO.hasChanges()) {
+            menuAlert(true, "Geen wijzigingen", "Er zijn geen wijzigingen om op te slaan.");
+            return;
+        }
+
         alert = new AlertDialog("CONFIRMATION", "Data opslaan",
                 "Wilt u de data opslaan?", alertDialogIcon, APP_CSS);
         alert.show();
 
         if (alert.getResult() == ButtonType.OK) {
-            if (personDAO.save() && ticketDAO.save()) {
-                menuAlert(true, "Data succesvol opgeslagen",
-                        "De data is succesvol opgeslagen.");
-            } else {
+            // Save in the background, a save doesn't block changes so only the menu is locked
+            DAOTask task = DAOTask.save(personDAO, ticketDAO);
+            task.setOnSucceeded(_ -> {
+                if (task.getValue()) {
+                    menuAlert(true, "Data succesvol opgeslagen",
+                            "De data is succesvol opgeslagen.");
+                } else {
+                    menuAlert(false, "Error bij opslaan data!",
+                            "Data is niet opgeslagen.\nEr is een fout opgetreden tijdens het opslaan van de data.");
+                }
+            });
+            task.setOnFailed(_ -> {
+                System.err.println("Something went wrong while saving data!");
+                task.getException().printStackTrace();
                 menuAlert(false, "Error bij opslaan data!",
                         "Data is niet opgeslagen.\nEr is een fout opgetreden tijdens het opslaan van de data.");
-            }
+            });
+            task.setOnCancelled(_ -> menuAlert(true, "Opslaan geannuleerd", "De data is niet opgeslagen."));
+            view.getStatusBar().show(task, view.getMenuBar());
+            task.start();
         }
     }
 
@@ -205,9 +233,11 @@ public class PersonController extends Controller {
         alert.show();
 
         if (alert.getResult() == ButtonType.OK) {
-            try {
+            // Load in the background, the view is locked until the task is done
+            DAOTask task = DAOTask.load(personDAO, ticketDAO);
+            task.setOnSucceeded(_ -> {
                 // Load data from data sources and confirm if successful
-                if (personDAO.load() && ticketDAO.load()) {
+                if (task.getValue()) {
                     // Update the observable list with the new data
                     observableListPersons.setAll(personDAO.getAll());
 
@@ -217,20 +247,54 @@ public class PersonController extends Controller {
                     menuAlert(false, "Error bij laden data!",
                             "Er is een fout opgetreden tijdens het laden van de data.");
                 }
-            } catch (FileNotFoundException e) {
-                alert = new AlertDialog("ERROR", "Fout bij laden data!",
-                        "Het bestand kon niet gevonden worden", alertDialogIcon, APP_CSS);
-                alert.show();
-                System.err.println("Couldn't load data!");
-                Platform.exit();
-                System.exit(0);
-            } catch (Exception e) {
-                System.err.println("Something went wrong while loading data!");
-                e.printStackTrace();
+            });
+            task.setOnFailed(_ -> {
+                if (task.getException() instanceof FileNotFoundException) {
+                    alert = new AlertDialog("ERROR", "Fout bij laden data!",
+                            "Het bestand kon niet gevonden worden", alertDialogIcon, APP_CSS);
+                    alert.show();
+                    System.err.println("Couldn't load data!");
+                } else {
+                    System.err.println("Something went wrong while loading data!");
+                    task.getException().printStackTrace();
+                }
                 Platform.exit();
                 System.exit(0);
-            }
+            });
+            task.setOnCancelled(_ -> menuAlert(true, "Laden geannuleerd", "De data is niet opnieuw geladen."));
+            view.getStatusBar().show(task, view.getMenuBar(), view.getVboxContainer());
+            task.start();
+        }
+    }
+
+    private void handleMenuExportButton(ActionEvent event) {
+        Exporter exporter = ExportFileChooser.show(view.getMenuBar().getScene().getWindow(), personDAO, ticketDAO);
+        if (exporter == null) {
+            return;
         }
+
+        // Export in the background, the view is locked until the task is done
+        DAOTask task = DAOTask.export(exporter);
+        task.setOnSucceeded(_ -> {
+            if (task.getValue()) {
+                menuAlert(true, "Data succesvol geëxporteerd", String.format(
+                        "%d rijen geëxporteerd in %.1f seconden (%.0f rijen per seconde).",
+                        exporter.getRowCount(), exporter.getDuration().toMillis() / 1000.0,
+                        exporter.getRowsPerSecond()));
+            } else {
+                menuAlert(false, "Error bij exporteren data!",
+                        "Er is een fout opgetreden tijdens het exporteren van de data.");
+            }
+        });
+        task.setOnFailed(_ -> {
+            System.err.println("Something went wrong while exporting data!");
+            task.getException().printStackTrace();
+            menuAlert(false, "Error bij exporteren data!",
+                    "Er is een fout opgetreden tijdens het exporteren van de data.");
+        });
+        task.setOnCancelled(_ -> menuAlert(true, "Exporteren geannuleerd", "De data is niet geëxporteerd."));
+        view.getStatusBar().show(task, view.getMenuBar(), view.getVboxContainer());
+        task.start();
     }
 
     private void menuAlert(boolean result, String title, String contextText) {
@@ -373,28 +437,36 @@ public class PersonController extends Controller {
             person = new Person(fullName.getText(), sex.getSelectionModel().getSelectedItem(),
                     birthdate.getValue(), birthplace.getText(), nationality.getText(),
                     Integer.parseInt(SSN.getText()), documentNumber.getText());
-            // Update ListView
+            // Update DAO and ListView
+            personDAO.addOrUpdate(person);
             observableListPersons.add(person);
             // Alert title and text
             alert.setTitle("Persoon toegevoegd");
             alert.setContentText("Persoon is toegevoegd.");
         } else {
-            // Update person
-            person.setName(fullName.getText());
-            person.setSex(sex.getSelectionModel().getSelectedItem());
-            person.setBirthdate(birthdate.getValue());
-            person.setBirthplace(birthplace.getText());
-            person.setNationality(nationality.getText());
-            person.setSSN(Integer.parseInt(SSN.getText()));
-            person.setDocumentNumber(documentNumber.getText());
+            // Update person in the DAO, the setters run with the lock of the DAO so a save doesn't see half of them
+            String name = fullName.getText();
+            String selectedSex = sex.getSelectionModel().getSelectedItem();
+            LocalDate selectedBirthdate = birthdate.getValue();
+            String place = birthplace.getText();
+            String selectedNationality = nationality.getText();
+            int ssn = Integer.parseInt(SSN.getText());
+            String document = documentNumber.getText();
+            personDAO.update(person, edited -> {
+                edited.setName(name);
+                edited.setSex(selectedSex);
+                edited.setBirthdate(selectedBirthdate);
+                edited.setBirthplace(place);
+                edited.setNationality(selectedNationality);
+                edited.setSSN(ssn);
+                edited.setDocumentNumber(document);
+            });
 
             // Alert title and text
             alert.setTitle("Persoon bijgewerkt");
             alert.setContentText("Persoon is bijgewerkt.");
         }
 
-        // Update DAO
-        personDAO.addOrUpdate(person);
         // Sort list
         observableListPersons.sort(new NameComparator(personNameAscending));
         // Show confirmation
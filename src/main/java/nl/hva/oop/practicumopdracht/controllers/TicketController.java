@@ -11,12 +11,15 @@ import nl.hva.oop.practicumopdracht.MainApplication;
 import nl.hva.oop.practicumopdracht.comparators.DateComparator;
 import nl.hva.oop.practicumopdracht.comparators.NameComparator;
 import nl.hva.oop.practicumopdracht.comparators.PriceComparator;
+import nl.hva.oop.practicumopdracht.data.Exporter;
 import nl.hva.oop.practicumopdracht.data.PersonDAO;
 import nl.hva.oop.practicumopdracht.data.TicketDAO;
 import nl.hva.oop.practicumopdracht.models.Person;
 import nl.hva.oop.practicumopdracht.models.Ticket;
 import nl.hva.oop.practicumopdracht.utils.AlertDialog;
+import nl.hva.oop.practicumopdracht.utils.DAOTask;
 import nl.hva.oop.practicumopdracht.utils.DatePickerConverter;
+import nl.hva.oop.practicumopdracht.utils.ExportFileChooser;
 import nl.hva.oop.practicumopdracht.utils.InputHandler;
 import nl.hva.oop.practicumopdracht.utils.IsNumeric;
 import nl.hva.oop.practicumopdracht.views.AboutView;
@@ -24,6 +27,7 @@ import nl.hva.oop.practicumopdracht.views.TicketView;
 import nl.hva.oop.practicumopdracht.views.View;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
+import java.time.LocalDate;
 import static nl.hva.oop.practicumopdracht.MainApplication.*;
 import static nl.hva.oop.practicumopdracht.Main.DEBUG;
 
@@ -63,9 +67,15 @@ public class TicketController extends Controller {
         view.getNewButton().setDisable(true);
         view.getDeleteButton().setDisable(true);
 
+        // Show the progress of autosaves in this view, only the menu is locked while saving
+        if (getAutoSaver() != null) {
+            getAutoSaver().setOnSave(task -> view.getStatusBar().show(task, view.getMenuBar()));
+        }
+
         // Menubar items
         view.getMenuItemSave().setOnAction(this::handleMenuSaveButton);
         view.getMenuItemLoad().setOnAction(this::handleMenuLoadButton);
+        view.getMenuItemExport().setOnAction(this::handleMenuExportButton);
         view.getMenuItemClose().setOnAction(this::handleMenuCloseButton);
         view.getMenuItemAbout().setOnAction(_ -> new AboutView());
 
@@ -193,18 +203,37 @@ public class TicketController extends Controller {
     }
 
     private void handleMenuSaveButton(ActionEvent event) {
+        // Nothing changed since the last load or save, so there is no need to write the files again
+        if (!personDAO.hasChanges() && !ticketDAO.hasChanges()) {
+            menuAlert(true, "Geen wijzigingen", "Er zijn geen wijzigingen om op te slaan.");
+            return;
+        }
+
         alert = new AlertDialog("CONFIRMATION", "Data opslaan",
                 "Wilt u de data opslaan?", alertDialogIcon, APP_CSS);
         alert.show();
 
         if (alert.getResult() == ButtonType.OK) {
-            if (personDAO.save() && ticketDAO.save()) {
-                menuAlert(true, "Data succesvol opgeslagen",
-                        "De data is succesvol opgeslagen.");
-            } else {
+            // Save in the background, a save doesn't block changes so only the menu is locked
+            DAOTask task = DAOTask.save(personDAO, ticketDAO);
+            task.setOnSucceeded(_ -> {
+                if (task.getValue()) {
+                    menuAlert(true, "Data succesvol opgeslagen",
+                            "De data is succesvol opgeslagen.");
+                } else {
+                    menuAlert(false, "Error bij opslaan data!",
+                            "Er is een fout opgetreden tijdens het opslaan van de data.");
+                }
+            });
+            task.setOnFailed(_ -> {
+                System.err.println("Something went wrong while saving data!");
+                task.getException().printStackTrace();
                 menuAlert(false, "Error bij opslaan data!",
                         "Er is een fout opgetreden tijdens het opslaan van de data.");
-            }
+            });
+            task.setOnCancelled(_ -> menuAlert(true, "Opslaan geannuleerd", "De data is niet opgeslagen."));
+            view.getStatusBar().show(task, view.getMenuBar());
+            task.start();
         }
     }
 
@@ -214,12 +243,14 @@ public class TicketController extends Controller {
         alert.show();
 
         if (alert.getResult() == ButtonType.OK) {
-            try {
-                view.getComboBoxBelongsTo().getSelectionModel().clearSelection();
-                view.getListView().getSelectionModel().clearSelection();
-
+            // Load in the background, the view is locked until the task is done
+            DAOTask task = DAOTask.load(personDAO, ticketDAO);
+            task.setOnSucceeded(_ -> {
                 // Load data from data sources and confirm if successful
-                if (personDAO.load() && ticketDAO.load()) {
+                if (task.getValue()) {
+                    view.getComboBoxBelongsTo().getSelectionModel().clearSelection();
+                    view.getListView().getSelectionModel().clearSelection();
+
                     // Update the observable list with the new data
                     observableListPersons.setAll(personDAO.getAll());
                     observableListTickets.setAll(ticketDAO.getAllFor(
@@ -234,22 +265,56 @@ public class TicketController extends Controller {
                     menuAlert(false, "Error bij laden data!",
                             "Er is een fout opgetreden tijdens het laden van de data.");
                 }
-            } catch (FileNotFoundException e) {
-                alert = new AlertDialog("ERROR", "Fout bij laden data!",
-                        "Het bestand kon niet gevonden worden", alertDialogIcon, APP_CSS);
-                alert.show();
-                System.err.println("Couldn't load data!");
-                Platform.exit();
-                System.exit(0);
-            } catch (Exception e) {
-                System.err.println("Something went wrong while loading data!");
-                e.printStackTrace();
+            });
+            task.setOnFailed(_ -> {
+                if (task.getException() instanceof FileNotFoundException) {
+                    alert = new AlertDialog("ERROR", "Fout bij laden data!",
+                            "Het bestand kon niet gevonden worden", alertDialogIcon, APP_CSS);
+                    alert.show();
+                    System.err.println("Couldn't load data!");
+                } else {
+                    System.err.println("Something went wrong while loading data!");
+                    task.getException().printStackTrace();
+                }
                 Platform.exit();
                 System.exit(0);
-            }
+            });
+            task.setOnCancelled(_ -> menuAlert(true, "Laden geannuleerd", "De data is niet opnieuw geladen."));
+            view.getStatusBar().show(task, view.getMenuBar(), view.getVboxContainer());
+            task.start();
         }
     }
 
+    private void handleMenuExportButton(ActionEvent event) {
+        Exporter exporter = ExportFileChooser.show(view.getMenuBar().getScene().getWindow(), personDAO, ticketDAO);
+        if (exporter == null) {
+            return;
+        }
+
+        // Export in the background, the view is locked until the task is done
+        DAOTask task = DAOTask.export(exporter);
+        task.setOnSucceeded(_ -> {
+            if (task.getValue()) {
+                menuAlert(true, "Data succesvol geëxporteerd", String.format(
+                        "%d rijen geëxporteerd in %.1f seconden (%.0f rijen per seconde).",
+                        exporter.getRowCount(), exporter.getDuration().toMillis() / 1000.0,
+                        exporter.getRowsPerSecond()));
+            } else {
+                menuAlert(false, "Error bij exporteren data!",
+                        "Er is een fout opgetreden tijdens het exporteren van de data.");
+            }
+        });
+        task.setOnFailed(_ -> {
+            System.err.println("Something went wrong while exporting data!");
+            task.getException().printStackTrace();
+            menuAlert(false, "Error bij exporteren data!",
+                    "Er is een fout opgetreden tijdens het exporteren van de data.");
+        });
+        task.setOnCancelled(_ -> menuAlert(true, "Exporteren geannuleerd", "De data is niet geëxporteerd."));
+        view.getStatusBar().show(task, view.getMenuBar(), view.getVboxContainer());
+        task.start();
+    }
+
     private void menuAlert(boolean result, String title, String contextText) {
         if (result) {
             alert = new AlertDialog("INFORMATION", title, contextText, alertDialogIcon, APP_CSS);
@@ -350,28 +415,36 @@ public class TicketController extends Controller {
                     checkedIn.isSelected(), description.getText()
             );
 
-            // Update ListView
+            // Update DAO and ListView
+            ticketDAO.addOrUpdate(ticket);
             observableListTickets.add(ticket);
             // Alert title and text
             alert.setTitle("Ticket aangemaakt");
             alert.setContentText("Ticket is aangemaakt.");
         } else {
-            // Update ticket
-            ticket.setBelongsTo(belongsTo.getSelectionModel().getSelectedItem());
-            ticket.setDestination(destination.getText());
-            ticket.setStartDate(startDate.getValue());
-            ticket.setEndDate(endDate.getValue());
-            ticket.setCost(Double.parseDouble(cost.getText().replace(",", ".")));
-            ticket.setCheckedIn(checkedIn.isSelected());
-            ticket.setDescription(description.getText());
+            // Update ticket in the DAO, the setters run with the lock of the DAO so a save doesn't see half of them
+            Person owner = belongsTo.getSelectionModel().getSelectedItem();
+            String selectedDestination = destination.getText();
+            LocalDate selectedStartDate = startDate.getValue();
+            LocalDate selectedEndDate = endDate.getValue();
+            double selectedCost = Double.parseDouble(cost.getText().replace(",", "."));
+            boolean selectedCheckedIn = checkedIn.isSelected();
+            String selectedDescription = description.getText();
+            ticketDAO.update(ticket, edited -> {
+                edited.setBelongsTo(owner);
+                edited.setDestination(selectedDestination);
+                edited.setStartDate(selectedStartDate);
+                edited.setEndDate(selectedEndDate);
+                edited.setCost(selectedCost);
+                edited.setCheckedIn(selectedCheckedIn);
+                edited.setDescription(selectedDescription);
+            });
 
             // Alert title and text
             alert.setTitle("Ticket bijgewerkt");
             alert.setContentText("Ticket is bijgewerkt.");
         }
 
-        // Update DAO
-        ticketDAO.addOrUpdate(ticket);
         // Show confirmation
         alert.show();
         // Clear everything after successful save
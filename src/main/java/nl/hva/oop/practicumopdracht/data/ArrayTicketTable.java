@@ -0,0 +1,112 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * ArrayTicketTable
+ * TicketTable with a primitive array on the heap for every column (struct of arrays) and a BitSet for the
+ * checked-in flags.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+final class ArrayTicketTable extends TicketTable {
+    private static final int INITIAL_CAPACITY = 16;
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] owners = new long[INITIAL_CAPACITY];
+    private int[] startDays = new int[INITIAL_CAPACITY];
+    private int[] endDays = new int[INITIAL_CAPACITY];
+    private long[] costCents = new long[INITIAL_CAPACITY];
+    private int[] destinations = new int[INITIAL_CAPACITY];
+    private String[] descriptions = new String[INITIAL_CAPACITY];
+    private final BitSet checkedIn = new BitSet();
+
+    ArrayTicketTable(StringDictionary destinationDictionary) {
+        super(destinationDictionary);
+    }
+
+    @Override
+    protected void ensureCapacity(int rows) {
+        if (rows > ids.length) {
+            int capacity = Math.max(rows, ids.length + (ids.length >> 1));
+            ids = Arrays.copyOf(ids, capacity);
+            owners = Arrays.copyOf(owners, capacity);
+            startDays = Arrays.copyOf(startDays, capacity);
+            endDays = Arrays.copyOf(endDays, capacity);
+            costCents = Arrays.copyOf(costCents, capacity);
+            destinations = Arrays.copyOf(destinations, capacity);
+            descriptions = Arrays.copyOf(descriptions, capacity);
+        }
+    }
+
+    @Override
+    protected void setColumns(int row, long id, long owner, int startDay, int endDay, long cents,
+                              boolean rowCheckedIn, int destinationCode, String description) {
+        ids[row] = id;
+        owners[row] = owner;
+        startDays[row] = startDay;
+        endDays[row] = endDay;
+        costCents[row] = cents;
+        checkedIn.set(row, rowCheckedIn);
+        destinations[row] = destinationCode;
+        descriptions[row] = description;
+    }
+
+    @Override
+    protected void moveRow(int from, int to) {
+        ids[to] = ids[from];
+        owners[to] = owners[from];
+        startDays[to] = startDays[from];
+        endDays[to] = endDays[from];
+        costCents[to] = costCents[from];
+        checkedIn.set(to, checkedIn.get(from));
+        destinations[to] = destinations[from];
+        descriptions[to] = descriptions[from];
+    }
+
+    @Override
+    protected void truncate(int rowCount) {
+        Arrays.fill(descriptions, rowCount, descriptions.length, null);
+        checkedIn.clear(rowCount, Math.max(rowCount, checkedIn.length()));
+    }
+
+    @Override
+    long getId(int row) {
+        return ids[row];
+    }
+
+    @Override
+    long getOwner(int row) {
+        return owners[row];
+    }
+
+    @Override
+    int getStartDay(int row) {
+        return startDays[row];
+    }
+
+    @Override
+    int getEndDay(int row) {
+        return endDays[row];
+    }
+
+    @Override
+    long getCostCents(int row) {
+        return costCents[row];
+    }
+
+    @Override
+    boolean isCheckedIn(int row) {
+        return checkedIn.get(row);
+    }
+
+    @Override
+    int getDestinationCode(int row) {
+        return destinations[row];
+    }
+
+    @Override
+    String getDescription(int row) {
+        return descriptions[row];
+    }
+}
@@ -0,0 +1,68 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * BinaryFormat
+ * Helper methods for the compact binary file formats, shared by the binary DAO classes.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+final class BinaryFormat {
+    private BinaryFormat() {
+    }
+
+    /**
+     * Writes an int in 1 to 5 bytes, 7 bits per byte, small values take fewer bytes.
+     * @param output the output to write to
+     * @param value is an int denoting the value, negative values always take 5 bytes
+     */
+    static void writeVarInt(DataOutput output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    static int readVarInt(DataInput input) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length int");
+    }
+
+    /**
+     * Writes a String as the UTF-8 length followed by the UTF-8 bytes. Unlike writeUTF() this has no 64 KB limit.
+     * The length is stored plus one, so a length of 0 means null.
+     * @param output the output to write to
+     * @param string is a String, can be null
+     */
+    static void writeString(DataOutput output, String string) throws IOException {
+        if (string == null) {
+            writeVarInt(output, 0);
+            return;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(output, bytes.length + 1);
+        output.write(bytes);
+    }
+
+    static String readString(DataInput input) throws IOException {
+        int length = readVarInt(input) - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
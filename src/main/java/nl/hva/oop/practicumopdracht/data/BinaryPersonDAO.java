@@ -4,6 +4,8 @@ import nl.hva.oop.practicumopdracht.models.Person;
 import org.apache.commons.io.FileUtils;
 import java.io.*;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 import static nl.hva.oop.practicumopdracht.Main.getAppDataDirectory;
 import static nl.hva.oop.practicumopdracht.Main.DEBUG;
 import static nl.hva.oop.practicumopdracht.MainApplication.getDateTimeFormatter;
@@ -17,12 +19,55 @@ import static nl.hva.oop.practicumopdracht.MainApplication.getDateTimeFormatter;
  */
 public class BinaryPersonDAO extends PersonDAO {
     private static final String DIRECTORY_NAME = getAppDataDirectory();
-    private static final String FILE_NAME = "Persons.dat";
+    static final String FILE_NAME = "Persons.dat";
     private static final File DIRECTORY = FileUtils.getFile(DIRECTORY_NAME);
-    private static final File FILE = FileUtils.getFile(DIRECTORY, FILE_NAME);
+    static final File FILE = FileUtils.getFile(DIRECTORY, FILE_NAME);
+    /*
+     * Files start with MAGIC and a format version. Version 1 files have no header and start with the number of
+     * persons, a person was referred to by the position in the file.
+     * Version 2 - every person starts with the ID of the person
+     * Version 3 - the birthdate is an epoch day (int) instead of dd-MM-yyyy text, the SSN is a varint and the Strings
+     *             are length-prefixed UTF-8 without the 64 KB limit of writeUTF() (see BinaryFormat)
+     * Version 4 - the header is followed by a dictionary (see StringDictionary) for sex, birthplace and nationality,
+     *             the persons contain the codes of these values
+     * Version 5 - the persons are saved in checksummed blocks (see BlockFile) and every block starts with the
+     *             dictionaries of its persons, the number of persons is in the index at the end instead of the header
+     */
+    static final int MAGIC = 0x5052534E; // "PRSN"
+    static final int VERSION = 5;
+
+    /**
+     * The dictionaries of the columns with few distinct values.
+     */
+    record Dictionaries(StringDictionary sexes, StringDictionary birthplaces,
+                                StringDictionary nationalities) {
+        Dictionaries() {
+            this(new StringDictionary(), new StringDictionary(), new StringDictionary());
+        }
+
+        static Dictionaries read(DataInput input) throws IOException {
+            return new Dictionaries(StringDictionary.read(input), StringDictionary.read(input),
+                    StringDictionary.read(input));
+        }
+
+        /**
+         * Adds the values of a person, every person must be added before the dictionaries are written.
+         */
+        void add(Person person) {
+            sexes.add(person.getSex());
+            birthplaces.add(person.getBirthplace());
+            nationalities.add(person.getNationality());
+        }
+
+        void write(DataOutput output) throws IOException {
+            sexes.write(output);
+            birthplaces.write(output);
+            nationalities.write(output);
+        }
+    }
 
     @Override
-    public boolean load() {
+    protected boolean loadLocked() {
         if (DEBUG) {
             System.out.printf("%n******** Debug info%n* App data directory: %s%n* Full path to file: %s%n********%n%n",
                     DIRECTORY.getAbsolutePath(), FILE.getAbsolutePath());
@@ -47,10 +92,11 @@ public class BinaryPersonDAO extends PersonDAO {
         }
 
         try (
-                FileInputStream fileInputStream = FileUtils.openInputStream(FILE);
-                DataInputStream dataInputStream = new DataInputStream(fileInputStream);
+                InputStream inputStream = FileUtils.openInputStream(FILE);
+                BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream);
+                DataInputStream dataInputStream = new DataInputStream(bufferedInputStream)
         ) {
-            if (dataInputStream.available() == 0) {
+            if (FILE.length() == 0) {
                 if (DEBUG) {
                     System.out.println("File is empty");
                 }
@@ -58,19 +104,31 @@ public class BinaryPersonDAO extends PersonDAO {
             }
 
             // Clear the list before loading new data
-            persons.clear();
+            clearAll();
 
+            int version = 1;
             int arraySize = dataInputStream.readInt();
-            for (int i = 0; i < arraySize; i++) {
-                persons.add(new Person(
-                        dataInputStream.readUTF(),
-                        dataInputStream.readUTF(),
-                        LocalDate.parse(dataInputStream.readUTF(), getDateTimeFormatter()),
-                        dataInputStream.readUTF(),
-                        dataInputStream.readUTF(),
-                        dataInputStream.readInt(),
-                        dataInputStream.readUTF()
-                ));
+            if (arraySize == MAGIC) {
+                version = dataInputStream.readInt();
+                if (version == VERSION) {
+                    return loadBlocks();
+                }
+                arraySize = dataInputStream.readInt();
+            }
+            if (version > VERSION) {
+                System.err.printf("Unsupported file version %d: %s%n", version, FILE_NAME);
+                return false;
+            }
+
+            if (version >= 4) {
+                Dictionaries dictionaries = Dictionaries.read(dataInputStream);
+                for (int i = 0; i < arraySize; i++) {
+                    addLoaded(readPerson(dataInputStream, dictionaries));
+                }
+            } else {
+                for (int i = 0; i < arraySize; i++) {
+                    addLoaded(readPerson(dataInputStream, version));
+                }
             }
 
             // Successful load
@@ -85,37 +143,165 @@ public class BinaryPersonDAO extends PersonDAO {
         }
     }
 
+    /**
+     * Loads a file of version 5, the blocks are read, verified and decoded in parallel. If blocks are damaged, the
+     * persons of the intact blocks are loaded, the damaged blocks are kept in the quarantine directory and the file is
+     * saved again without them.
+     */
+    private boolean loadBlocks() throws IOException {
+        try (BlockFile.Contents contents = BlockFile.read(FILE)) {
+            for (Person person : contents.decode(BinaryPersonDAO::readBlock)) {
+                addLoaded(person);
+            }
+            if (!contents.isDamaged()) {
+                if (DEBUG) {
+                    System.out.println("Loading complete: " + FILE_NAME);
+                }
+                return true;
+            }
+
+            System.err.printf("%s is damaged: %s, %d persons recovered%n", FILE_NAME, contents.describeDamage(),
+                    persons.size());
+            if (contents.quarantine(FILE) == null) {
+                // Without a copy of the damaged blocks the file is left as it is
+                return true;
+            }
+        }
+        return saveLocked();
+    }
+
     @Override
-    public boolean save() {
+    protected boolean saveSnapshot(Snapshot<Person> snapshot) {
         if (DEBUG) {
             System.out.println("\nSaving data: " + FILE_NAME);
         }
 
-        try (
-                FileOutputStream fileOutputStream = FileUtils.openOutputStream(FILE);
-                DataOutputStream dataOutputStream = new DataOutputStream(fileOutputStream);
-        ) {
-            dataOutputStream.writeInt(persons.size());
-
-            for (Person person : persons) {
-                dataOutputStream.writeUTF(person.getName());
-                dataOutputStream.writeUTF(person.getSex());
-                dataOutputStream.writeUTF(person.getBirthdate().format(getDateTimeFormatter()));
-                dataOutputStream.writeUTF(person.getBirthplace());
-                dataOutputStream.writeUTF(person.getNationality());
-                dataOutputStream.writeInt(person.getSSN());
-                dataOutputStream.writeUTF(person.getDocumentNumber());
+        try (BlockFile.Writer<Person> writer = new BlockFile.Writer<>(SaveTransaction.openOutputStream(FILE), MAGIC,
+                VERSION, BinaryPersonDAO::writeBlock)) {
+            for (Person person : snapshot.records()) {
+                writer.write(person);
             }
 
             // Successful save
             if (DEBUG) {
                 System.out.println("Saving data complete: " + FILE_NAME);
             }
-            return true;
+            return idAllocator.save();
 
         } catch (IOException e) {
             System.err.println("An error occurred while saving the file: " + e.getMessage());
             return false;
         }
     }
+
+    /**
+     * Writes the data of a block of Persons.dat version 5: the dictionaries of the persons followed by the persons.
+     */
+    static void writeBlock(DataOutput output, List<Person> persons) throws IOException {
+        Dictionaries dictionaries = new Dictionaries();
+        for (Person person : persons) {
+            dictionaries.add(person);
+        }
+        dictionaries.write(output);
+        for (Person person : persons) {
+            writePerson(output, person, dictionaries);
+        }
+    }
+
+    static List<Person> readBlock(DataInput input, int count) throws IOException {
+        Dictionaries dictionaries = Dictionaries.read(input);
+        List<Person> persons = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            persons.add(readPerson(input, dictionaries));
+        }
+        return persons;
+    }
+
+    /**
+     * Writes one person in the layout of Persons.dat version 4 and 5.
+     */
+    static void writePerson(DataOutput output, Person person, Dictionaries dictionaries) throws IOException {
+        output.writeLong(person.getId());
+        BinaryFormat.writeString(output, person.getName());
+        dictionaries.sexes().writeCode(output, person.getSex());
+        output.writeInt((int) person.getBirthdate().toEpochDay());
+        dictionaries.birthplaces().writeCode(output, person.getBirthplace());
+        dictionaries.nationalities().writeCode(output, person.getNationality());
+        BinaryFormat.writeVarInt(output, person.getSSN());
+        BinaryFormat.writeString(output, person.getDocumentNumber());
+    }
+
+    static Person readPerson(DataInput input, Dictionaries dictionaries) throws IOException {
+        long id = input.readLong();
+        Person person = new Person(
+                BinaryFormat.readString(input),
+                dictionaries.sexes().readValue(input),
+                LocalDate.ofEpochDay(input.readInt()),
+                dictionaries.birthplaces().readValue(input),
+                dictionaries.nationalities().readValue(input),
+                BinaryFormat.readVarInt(input),
+                BinaryFormat.readString(input)
+        );
+        person.setId(id);
+        return person;
+    }
+
+    /**
+     * Writes one person in a layout without dictionaries, used for the records of the JournalPersonDAO.
+     * @param version is an int denoting the version of the layout of Persons.dat, 2 or 3
+     */
+    static void writePerson(DataOutput output, Person person, int version) throws IOException {
+        output.writeLong(person.getId());
+        if (version < 3) {
+            output.writeUTF(person.getName());
+            output.writeUTF(person.getSex());
+            output.writeUTF(person.getBirthdate().format(getDateTimeFormatter()));
+            output.writeUTF(person.getBirthplace());
+            output.writeUTF(person.getNationality());
+            output.writeInt(person.getSSN());
+            output.writeUTF(person.getDocumentNumber());
+            return;
+        }
+
+        BinaryFormat.writeString(output, person.getName());
+        BinaryFormat.writeString(output, person.getSex());
+        output.writeInt((int) person.getBirthdate().toEpochDay());
+        BinaryFormat.writeString(output, person.getBirthplace());
+        BinaryFormat.writeString(output, person.getNationality());
+        BinaryFormat.writeVarInt(output, person.getSSN());
+        BinaryFormat.writeString(output, person.getDocumentNumber());
+    }
+
+    /**
+     * Reads one person in a layout without dictionaries.
+     * @param version is an int denoting the version of the file the person is read from, 1 to 3
+     */
+    static Person readPerson(DataInput input, int version) throws IOException {
+        // Version 1 files have no IDs, these persons get a new ID in addLoaded()
+        long id = version >= 2 ? input.readLong() : 0;
+        Person person;
+        if (version < 3) {
+            person = new Person(
+                    input.readUTF(),
+                    input.readUTF(),
+                    LocalDate.parse(input.readUTF(), getDateTimeFormatter()),
+                    input.readUTF(),
+                    input.readUTF(),
+                    input.readInt(),
+                    input.readUTF()
+            );
+        } else {
+            person = new Person(
+                    BinaryFormat.readString(input),
+                    BinaryFormat.readString(input),
+                    LocalDate.ofEpochDay(input.readInt()),
+                    BinaryFormat.readString(input),
+                    BinaryFormat.readString(input),
+                    BinaryFormat.readVarInt(input),
+                    BinaryFormat.readString(input)
+            );
+        }
+        person.setId(id);
+        return person;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,286 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import nl.hva.oop.practicumopdracht.models.Person;
+import nl.hva.oop.practicumopdracht.models.Ticket;
+import org.apache.commons.io.FileUtils;
+import java.io.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongFunction;
+import static nl.hva.oop.practicumopdracht.Main.DEBUG;
+import static nl.hva.oop.practicumopdracht.Main.getAppDataDirectory;
+
+/**
+ * BinaryTicketDAO - BinaryDetailDAO
+ * This is a DAO class which handles loading and saving data to a binary file for the Ticket model.
+ * Unlike ObjectTicketDAO this uses a fixed schema instead of Java serialization, so there are no class descriptors in
+ * the file and no reflection while loading.
+ * If there is no Tickets.dat yet, but there is a Tickets.obj from the ObjectTicketDAO, the tickets are migrated once.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+public class BinaryTicketDAO extends TicketDAO {
+    private static final String DIRECTORY_NAME = getAppDataDirectory();
+    private static final String FILE_NAME = "Tickets.dat";
+    private static final String OBJECT_FILE_NAME = "Tickets.obj";
+    private static final File DIRECTORY = FileUtils.getFile(DIRECTORY_NAME);
+    static final File FILE = FileUtils.getFile(DIRECTORY, FILE_NAME);
+    private static final File OBJECT_FILE = FileUtils.getFile(DIRECTORY, OBJECT_FILE_NAME);
+    /*
+     * File layout: MAGIC, version, number of tickets and then per ticket:
+     * ID (long), owner ID (long, 0 is no owner), start date and end date (int, epoch day), cost (double),
+     * flags (byte), destination and description (length-prefixed UTF-8)
+     * Version 2 - the number of tickets is followed by a dictionary of the destinations (see StringDictionary), the
+     *             tickets contain the code of the destination
+     * Version 3 - the tickets are saved in checksummed blocks (see BlockFile) and every block starts with the
+     *             dictionary of its destinations, the number of tickets is in the index at the end instead of the
+     *             header
+     * The TableTicketDAO reads and writes the same file.
+     */
+    static final int MAGIC = 0x54434B54; // "TCKT"
+    static final int VERSION = 3;
+    static final int FLAG_CHECKED_IN = 1;
+
+    @Override
+    protected boolean loadLocked() throws FileNotFoundException {
+        if (DEBUG) {
+            System.out.printf("%n******** Debug info%n* App data directory: %s%n* Full path to file: %s%n********%n%n",
+                    DIRECTORY.getAbsolutePath(), FILE.getAbsolutePath());
+        }
+
+        // Ensure the directory exists
+        try {
+            FileUtils.forceMkdir(DIRECTORY);
+        } catch (IOException e) {
+            System.err.println("An error occurred while creating the directory: " + e.getMessage());
+            return false;
+        }
+
+        if (!FILE.exists()) {
+            if (OBJECT_FILE.exists()) {
+                return migrateObjectFile();
+            }
+
+            try {
+                FileUtils.touch(FILE);
+                if (DEBUG) {
+                    System.out.println("File created: " + FILE_NAME);
+                }
+            } catch (IOException e) {
+                System.err.println("An error occurred while creating the file: " + e.getMessage());
+                return false;
+            }
+        }
+
+        if (DEBUG) {
+            System.out.println("Loading data: " + FILE_NAME);
+        }
+
+        try (
+                InputStream inputStream = FileUtils.openInputStream(FILE);
+                BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream);
+                DataInputStream dataInputStream = new DataInputStream(bufferedInputStream)
+        ) {
+            // Clear the list before loading new data
+            clearAll();
+
+            if (FILE.length() == 0) {
+                if (DEBUG) {
+                    System.out.println("File is empty");
+                }
+                return true;
+            }
+
+            if (dataInputStream.readInt() != MAGIC) {
+                System.err.println("Not a tickets file: " + FILE_NAME);
+                return false;
+            }
+            int version = dataInputStream.readInt();
+            if (version > VERSION) {
+                System.err.printf("Unsupported file version %d: %s%n", version, FILE_NAME);
+                return false;
+            }
+            if (version == VERSION) {
+                return loadBlocks();
+            }
+
+            int arraySize = dataInputStream.readInt();
+            // Version 1 files have no dictionary
+            StringDictionary destinations = version >= 2 ? StringDictionary.read(dataInputStream) : null;
+            for (int i = 0; i < arraySize; i++) {
+                addLoaded(readTicket(dataInputStream, destinations, this::getOwner));
+            }
+
+            if (DEBUG) {
+                System.out.println("Loading complete: " + FILE_NAME);
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Something went wrong while reading the file: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return false;
+    }
+
+    /**
+     * Loads a file of version 3 like the BinaryPersonDAO: the blocks are read, verified and decoded in parallel and
+     * the tickets of the intact blocks are loaded when blocks are damaged.
+     */
+    private boolean loadBlocks() throws IOException {
+        try (BlockFile.Contents contents = BlockFile.read(FILE)) {
+            for (Ticket ticket : contents.decode((input, count) -> readBlock(input, count, this::getOwner))) {
+                addLoaded(ticket);
+            }
+            if (!contents.isDamaged()) {
+                if (DEBUG) {
+                    System.out.println("Loading complete: " + FILE_NAME);
+                }
+                return true;
+            }
+
+            System.err.printf("%s is damaged: %s, %d tickets recovered%n", FILE_NAME, contents.describeDamage(),
+                    tickets.size());
+            if (contents.quarantine(FILE) == null) {
+                // Without a copy of the damaged blocks the file is left as it is
+                return true;
+            }
+        }
+        return saveLocked();
+    }
+
+    @Override
+    protected boolean saveSnapshot(Snapshot<Ticket> snapshot) {
+        if (DEBUG) {
+            System.out.println("\nSaving data: " + FILE_NAME);
+        }
+
+        try (BlockFile.Writer<Ticket> writer = new BlockFile.Writer<>(SaveTransaction.openOutputStream(FILE), MAGIC,
+                VERSION, BinaryTicketDAO::writeBlock)) {
+            for (Ticket ticket : snapshot.records()) {
+                writer.write(ticket);
+            }
+
+            if (DEBUG) {
+                System.out.println("Saving data complete: " + FILE_NAME);
+            }
+        } catch (IOException e) {
+            System.err.println("An error occurred while saving the file: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+
+        return idAllocator.save();
+    }
+
+    /**
+     * Writes the data of a block of Tickets.dat version 3: the dictionary of the destinations followed by the tickets.
+     */
+    static void writeBlock(DataOutput output, List<Ticket> tickets) throws IOException {
+        StringDictionary destinations = new StringDictionary();
+        for (Ticket ticket : tickets) {
+            destinations.add(ticket.getDestination());
+        }
+        destinations.write(output);
+        for (Ticket ticket : tickets) {
+            writeTicket(output, ticket, destinations);
+        }
+    }
+
+    /**
+     * @param owners returns the person with an ID, for example getOwner() of the DAO
+     */
+    static List<Ticket> readBlock(DataInput input, int count, LongFunction<Person> owners) throws IOException {
+        StringDictionary destinations = StringDictionary.read(input);
+        List<Ticket> tickets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tickets.add(readTicket(input, destinations, owners));
+        }
+        return tickets;
+    }
+
+    /**
+     * Writes one ticket in the layout of Tickets.dat version 1, used for the records of the JournalTicketDAO.
+     */
+    static void writeTicket(DataOutput output, Ticket ticket) throws IOException {
+        writeTicket(output, ticket, null);
+    }
+
+    /**
+     * @param destinations the dictionary with the destination of the ticket or null to write the destination itself
+     */
+    static void writeTicket(DataOutput output, Ticket ticket, StringDictionary destinations)
+            throws IOException {
+        output.writeLong(ticket.getId());
+        output.writeLong(ticket.getBelongsTo() == null ? 0 : ticket.getBelongsTo().getId());
+        output.writeInt((int) ticket.getStartDate().toEpochDay());
+        output.writeInt((int) ticket.getEndDate().toEpochDay());
+        output.writeDouble(ticket.getCost());
+        output.writeByte(ticket.isCheckedIn() ? FLAG_CHECKED_IN : 0);
+        if (destinations == null) {
+            BinaryFormat.writeString(output, ticket.getDestination());
+        } else {
+            destinations.writeCode(output, ticket.getDestination());
+        }
+        BinaryFormat.writeString(output, ticket.getDescription());
+    }
+
+    /**
+     * Reads one ticket in the layout of Tickets.dat, also used for the records of the JournalTicketDAO.
+     * @param destinations the dictionary of the file or null if the destination itself is in the file
+     * @param owners       returns the person with an ID, for example getOwner() of the DAO
+     */
+    static Ticket readTicket(DataInput input, StringDictionary destinations, LongFunction<Person> owners)
+            throws IOException {
+        long id = input.readLong();
+        long belongsTo = input.readLong();
+        LocalDate startDate = LocalDate.ofEpochDay(input.readInt());
+        LocalDate endDate = LocalDate.ofEpochDay(input.readInt());
+        double cost = input.readDouble();
+        int flags = input.readUnsignedByte();
+        String destination = destinations == null ? BinaryFormat.readString(input) : destinations.readValue(input);
+        String description = BinaryFormat.readString(input);
+
+        Person owner = belongsTo == 0 ? null : owners.apply(belongsTo);
+        Ticket ticket = new Ticket(owner, destination, startDate, endDate, cost,
+                (flags & FLAG_CHECKED_IN) != 0, description);
+        ticket.setId(id);
+        return ticket;
+    }
+
+    /**
+     * One-shot migration from the Tickets.obj file of the ObjectTicketDAO. The tickets are read with the
+     * ObjectTicketDAO and written to Tickets.dat, the Tickets.obj file is left untouched. Nothing is written if
+     * Tickets.obj can't be loaded.
+     * @return true if the tickets are migrated
+     */
+    private boolean migrateObjectFile() throws FileNotFoundException {
+        if (DEBUG) {
+            System.out.println("Migrating " + OBJECT_FILE_NAME + " to " + FILE_NAME);
+        }
+
+        // The ObjectTicketDAO looks up the owners itself
+        awaitPersons();
+        ObjectTicketDAO objectTicketDAO = new ObjectTicketDAO();
+        clearAll();
+        // Tickets.dat isn't created, so the migration is tried again at the next load
+        if (!objectTicketDAO.load()) {
+            System.err.println("Couldn't migrate " + OBJECT_FILE_NAME + " to " + FILE_NAME);
+            return false;
+        }
+        for (Ticket ticket : objectTicketDAO.getAll()) {
+            addLoaded(ticket);
+        }
+
+        if (!saveLocked()) {
+            System.err.println("Couldn't migrate " + OBJECT_FILE_NAME + " to " + FILE_NAME);
+            return false;
+        }
+
+        if (DEBUG) {
+            System.out.printf("Migration complete: %d tickets%n", tickets.size());
+        }
+        return true;
+    }
+}
@@ -0,0 +1,531 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * BlockFile
+ * The checksummed layout of the binary files, used by Persons.dat version 5 and Tickets.dat version 3.
+ * After MAGIC and the version of the file, the records are written in blocks of at most RECORDS_PER_BLOCK records.
+ * A block starts with BLOCK_MAGIC, the CRC32C checksum, the length of the data and the number of records, followed by
+ * the data. The checksum covers the length, the number of records and the data. The data of a block can be decoded
+ * on its own, so it contains its own dictionaries.
+ * The file ends with an index of the blocks: INDEX_MAGIC, the number of blocks, per block the offset, length, number
+ * of records and checksum, the CRC32C of the index, the offset of the index (long) and INDEX_MAGIC again.
+ * read() finds the blocks with the index, the blocks are read through a FileChannel and verified one at a time when
+ * they are decoded. Without an intact index, for example after a save that was interrupted, the blocks are found by
+ * scanning for BLOCK_MAGIC. A block with a wrong checksum is
+ * skipped, so every record in an intact block is recovered. The damaged parts can be kept with quarantine().
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+final class BlockFile {
+    static final int RECORDS_PER_BLOCK = 4096;
+    // MAGIC and the version of the file come before the first block
+    static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int BLOCK_MAGIC = 0x424C4B30; // "BLK0"
+    private static final int INDEX_MAGIC = 0x42494458; // "BIDX"
+    private static final int BLOCK_HEADER_SIZE = 4 * Integer.BYTES;
+    private static final int INDEX_ENTRY_SIZE = Long.BYTES + 3 * Integer.BYTES;
+    private static final int INDEX_END_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    /**
+     * Writes the data of one block.
+     */
+    interface Encoder<T> {
+        void encode(DataOutput output, List<T> records) throws IOException;
+    }
+
+    /**
+     * Reads the data of one block, can be called from several threads at the same time.
+     */
+    interface Decoder<T> {
+        List<T> decode(DataInput input, int recordCount) throws IOException;
+    }
+
+    /**
+     * A block in the file, the offset is the position of BLOCK_MAGIC.
+     */
+    record Block(long offset, int length, int recordCount, int checksum) {
+        long end() {
+            return offset + BLOCK_HEADER_SIZE + length;
+        }
+    }
+
+    /**
+     * A damaged part of the file.
+     * @param recordCount is an int denoting the number of records that are lost, -1 if this isn't known
+     */
+    record Region(long offset, long length, int recordCount) {
+    }
+
+    private BlockFile() {
+    }
+
+    /**
+     * Writes the records in blocks, the index is written by close().
+     */
+    static final class Writer<T> implements Closeable {
+        private final DataOutputStream output;
+        private final Encoder<T> encoder;
+        private final List<T> records = new ArrayList<>(RECORDS_PER_BLOCK);
+        private final List<Block> blocks = new ArrayList<>();
+        private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        private final DataOutputStream dataOutput = new DataOutputStream(data);
+        private long position = HEADER_SIZE;
+
+        Writer(OutputStream outputStream, int magic, int version, Encoder<T> encoder) throws IOException {
+            output = new DataOutputStream(new BufferedOutputStream(outputStream));
+            this.encoder = encoder;
+            output.writeInt(magic);
+            output.writeInt(version);
+        }
+
+        void write(T record) throws IOException {
+            records.add(record);
+            if (records.size() == RECORDS_PER_BLOCK) {
+                writeBlock();
+            }
+        }
+
+        private void writeBlock() throws IOException {
+            data.reset();
+            encoder.encode(dataOutput, records);
+            byte[] bytes = data.toByteArray();
+            CRC32C crc = new CRC32C();
+            crc.update(ByteBuffer.allocate(2 * Integer.BYTES).putInt(bytes.length).putInt(records.size()).flip());
+            crc.update(bytes);
+
+            Block block = new Block(position, bytes.length, records.size(), (int) crc.getValue());
+            output.writeInt(BLOCK_MAGIC);
+            output.writeInt(block.checksum());
+            output.writeInt(block.length());
+            output.writeInt(block.recordCount());
+            output.write(bytes);
+            blocks.add(block);
+            position = block.end();
+            records.clear();
+        }
+
+        /**
+         * Writes the last block and the index and closes the file.
+         */
+        @Override
+        public void close() throws IOException {
+            try (output) {
+                if (!records.isEmpty()) {
+                    writeBlock();
+                }
+                ByteBuffer index = ByteBuffer.allocate(2 * Integer.BYTES + blocks.size() * INDEX_ENTRY_SIZE);
+                index.putInt(INDEX_MAGIC).putInt(blocks.size());
+                for (Block block : blocks) {
+                    index.putLong(block.offset()).putInt(block.length()).putInt(block.recordCount())
+                            .putInt(block.checksum());
+                }
+                CRC32C crc = new CRC32C();
+                crc.update(index.array());
+                output.write(index.array());
+                output.writeInt((int) crc.getValue());
+                output.writeLong(position);
+                output.writeInt(INDEX_MAGIC);
+            }
+        }
+    }
+
+    /**
+     * Reads the blocks of a file one at a time, for example to convert the file without loading it. Unlike read() it
+     * stops at the first damaged block.
+     */
+    static final class Reader implements Closeable {
+        private final DataInputStream input;
+        private long position = HEADER_SIZE;
+        private int recordCount;
+
+        /**
+         * @param inputStream is an InputStream that is positioned after MAGIC and the version of the file
+         */
+        Reader(InputStream inputStream) {
+            input = new DataInputStream(inputStream);
+        }
+
+        /**
+         * @return the data of the next block or null after the last block
+         */
+        DataInput next() throws IOException {
+            int magic = input.readInt();
+            if (magic == INDEX_MAGIC) {
+                return null;
+            }
+            int checksum = input.readInt();
+            int length = input.readInt();
+            recordCount = input.readInt();
+            if (magic != BLOCK_MAGIC || length < 0 || recordCount < 0) {
+                throw new IOException("Damaged block at offset " + position);
+            }
+            byte[] bytes = input.readNBytes(length);
+            Block block = new Block(position, length, recordCount, checksum);
+            if (bytes.length < length || !verify(block, bytes, 0)) {
+                throw new IOException("Damaged block at offset " + position);
+            }
+            position = block.end();
+            return new DataInputStream(new ByteArrayInputStream(bytes));
+        }
+
+        /**
+         * @return the number of records in the block returned by next()
+         */
+        int getRecordCount() {
+            return recordCount;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+
+    /**
+     * Reads the data of one intact block, see Contents.forEach().
+     */
+    interface BlockConsumer {
+        void accept(DataInputStream input, int recordCount) throws IOException;
+    }
+
+    /**
+     * The blocks of a file that is read one block at a time. A block is read and verified when it is decoded, so only
+     * the blocks that are being decoded are in memory and the file can be larger than an array.
+     */
+    static final class Contents implements Closeable {
+        private final FileChannel channel;
+        private final List<Block> blocks;
+        private final List<Region> damaged;
+        private final boolean indexIntact;
+
+        private Contents(FileChannel channel, List<Block> blocks, List<Region> damaged, boolean indexIntact) {
+            this.channel = channel;
+            this.blocks = blocks;
+            this.damaged = damaged;
+            this.indexIntact = indexIntact;
+        }
+
+        /**
+         * Reads, verifies and decodes the blocks in parallel. A block that is damaged or can't be decoded is added to
+         * the damaged parts.
+         * @return the records of the intact blocks in file order
+         * @throws IOException if the file can't be read
+         */
+        <T> List<T> decode(Decoder<T> decoder) throws IOException {
+            List<List<T>> decoded;
+            try {
+                decoded = IntStream.range(0, blocks.size())
+                        .parallel()
+                        .mapToObj(i -> {
+                            DataInputStream input;
+                            try {
+                                input = readBlock(channel, blocks.get(i));
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                            try {
+                                return input == null ? null : decoder.decode(input, blocks.get(i).recordCount());
+                            } catch (IOException | RuntimeException e) {
+                                return null;
+                            }
+                        })
+                        .toList();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            List<T> records = new ArrayList<>();
+            for (int i = 0; i < decoded.size(); i++) {
+                if (decoded.get(i) == null) {
+                    damaged.add(region(blocks.get(i)));
+                } else {
+                    records.addAll(decoded.get(i));
+                }
+            }
+            return records;
+        }
+
+        /**
+         * Reads and verifies the blocks one at a time in file order, a damaged block is added to the damaged parts.
+         * @throws IOException if the file can't be read or the consumer fails
+         */
+        void forEach(BlockConsumer consumer) throws IOException {
+            for (Block block : blocks) {
+                DataInputStream input = readBlock(channel, block);
+                if (input == null) {
+                    damaged.add(region(block));
+                } else {
+                    consumer.accept(input, block.recordCount());
+                }
+            }
+        }
+
+        /**
+         * @return true if a block is damaged or the index is missing, known after decode() or forEach()
+         */
+        boolean isDamaged() {
+            return !damaged.isEmpty() || !indexIntact;
+        }
+
+        List<Region> getDamaged() {
+            return damaged;
+        }
+
+        /**
+         * Copies the damaged parts to the quarantine directory (see Quarantine).
+         * @return the quarantine file or null if the damaged parts couldn't be copied
+         */
+        File quarantine(File file) {
+            return Quarantine.store(file, damaged);
+        }
+
+        /**
+         * @return a description of the damage for the error messages, for example "2 damaged part(s) of 210000 bytes
+         * (8192 records lost)"
+         */
+        String describeDamage() {
+            long bytes = 0;
+            long records = 0;
+            boolean unknown = false;
+            for (Region region : damaged) {
+                bytes += region.length();
+                records += Math.max(region.recordCount(), 0);
+                unknown |= region.recordCount() < 0;
+            }
+            String lost = !unknown ? String.valueOf(records) :
+                    records > 0 ? "at least " + records : "unknown number of";
+            return String.format("%d damaged part(s) of %d bytes (%s records lost)%s", damaged.size(), bytes, lost,
+                    indexIntact ? "" : ", the index of the blocks is missing");
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Finds the blocks of a file that starts with MAGIC and the version. The blocks are verified when they are read
+     * with the returned Contents, which has to be closed.
+     */
+    static Contents read(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), READ);
+        try {
+            List<Block> index = readIndex(channel);
+            if (index == null) {
+                return scan(channel);
+            }
+            return new Contents(channel, index, new ArrayList<>(), true);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Finds the blocks without the index, the parts between the intact blocks are damaged.
+     */
+    private static Contents scan(FileChannel channel) throws IOException {
+        long size = channel.size();
+        Window window = new Window(channel);
+        List<Block> blocks = new ArrayList<>();
+        List<Region> damaged = new ArrayList<>();
+        long damagedStart = -1;
+        long position = HEADER_SIZE;
+        while (position <= size - BLOCK_HEADER_SIZE) {
+            int magic = window.getInt(position);
+            Block block = new Block(position, window.getInt(position + 2 * Integer.BYTES),
+                    window.getInt(position + 3 * Integer.BYTES), window.getInt(position + Integer.BYTES));
+            if (magic == BLOCK_MAGIC && readBlock(channel, block) != null) {
+                if (damagedStart >= 0) {
+                    damaged.add(new Region(damagedStart, position - damagedStart, -1));
+                    damagedStart = -1;
+                }
+                blocks.add(block);
+                position = block.end();
+            } else if (damagedStart < 0 && magic == INDEX_MAGIC) {
+                // A damaged index right after an intact block, no records are lost
+                damaged.add(new Region(position, size - position, 0));
+                return new Contents(channel, blocks, damaged, false);
+            } else {
+                // Search for the next block
+                if (damagedStart < 0) {
+                    damagedStart = position;
+                }
+                position++;
+            }
+        }
+        if (damagedStart < 0 && position < size) {
+            damagedStart = position;
+        }
+        if (damagedStart >= 0) {
+            damaged.add(new Region(damagedStart, size - damagedStart, -1));
+        }
+        return new Contents(channel, blocks, damaged, false);
+    }
+
+    /**
+     * Reads the ints of a file through a buffer, so scan() doesn't read from the file for every position.
+     */
+    private static final class Window {
+        private static final int SIZE = 64 * 1024;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+        private long start = -1;
+
+        private Window(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * @param position is a long denoting a position at least 4 bytes before the end of the file
+         */
+        int getInt(long position) throws IOException {
+            if (start < 0 || position < start || position + Integer.BYTES > start + buffer.limit()) {
+                buffer.clear();
+                read(channel, buffer, position);
+                buffer.flip();
+                start = position;
+            }
+            return buffer.getInt((int) (position - start));
+        }
+    }
+
+    /**
+     * Reads the index at the end of a file.
+     * @return the blocks of the index or null if the index is missing or damaged
+     */
+    private static List<Block> readIndex(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_SIZE + 2 * Integer.BYTES + INDEX_END_SIZE) {
+            return null;
+        }
+        ByteBuffer end = ByteBuffer.allocate(INDEX_END_SIZE);
+        if (!read(channel, end, size - INDEX_END_SIZE)) {
+            return null;
+        }
+        long indexOffset = end.getLong(Integer.BYTES);
+        if (end.getInt(Integer.BYTES + Long.BYTES) != INDEX_MAGIC || indexOffset < HEADER_SIZE
+                || indexOffset >= size || size - indexOffset > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        ByteBuffer index = ByteBuffer.allocate((int) (size - indexOffset));
+        if (!read(channel, index, indexOffset)) {
+            return null;
+        }
+        return parseIndex(index.clear(), indexOffset);
+    }
+
+    /**
+     * @param index       is a ByteBuffer with the bytes from the start of the index to the end of the file
+     * @param indexOffset is a long denoting the position of the index in the file
+     * @return the blocks of the index or null if the index is damaged
+     */
+    private static List<Block> parseIndex(ByteBuffer index, long indexOffset) {
+        if (index.limit() < 2 * Integer.BYTES + INDEX_END_SIZE || index.getInt(0) != INDEX_MAGIC) {
+            return null;
+        }
+        int blockCount = index.getInt(Integer.BYTES);
+        long length = 2L * Integer.BYTES + (long) blockCount * INDEX_ENTRY_SIZE;
+        if (blockCount < 0 || length + INDEX_END_SIZE != index.limit()) {
+            return null;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(index.slice(0, (int) length));
+        if ((int) crc.getValue() != index.getInt((int) length)) {
+            return null;
+        }
+
+        List<Block> blocks = new ArrayList<>(blockCount);
+        long previousEnd = HEADER_SIZE;
+        for (int i = 0; i < blockCount; i++) {
+            int entry = 2 * Integer.BYTES + i * INDEX_ENTRY_SIZE;
+            Block block = new Block(index.getLong(entry), index.getInt(entry + Long.BYTES),
+                    index.getInt(entry + Long.BYTES + Integer.BYTES),
+                    index.getInt(entry + Long.BYTES + 2 * Integer.BYTES));
+            if (block.offset() < previousEnd || block.length() < 0 || block.end() > indexOffset) {
+                return null;
+            }
+            blocks.add(block);
+            previousEnd = block.end();
+        }
+        return blocks;
+    }
+
+    /**
+     * Reads a block and checks the block header and the checksum.
+     * @return the data of the block or null if the block is damaged
+     */
+    private static DataInputStream readBlock(FileChannel channel, Block block) throws IOException {
+        if (block.length() < 0 || block.recordCount() < 0 || block.end() > channel.size()) {
+            return null;
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(BLOCK_HEADER_SIZE + block.length());
+        if (!read(channel, bytes, block.offset()) || bytes.getInt(0) != BLOCK_MAGIC
+                || bytes.getInt(Integer.BYTES) != block.checksum() || bytes.getInt(2 * Integer.BYTES) != block.length()
+                || bytes.getInt(3 * Integer.BYTES) != block.recordCount()
+                || !verify(block, bytes.array(), BLOCK_HEADER_SIZE)) {
+            return null;
+        }
+        return new DataInputStream(new ByteArrayInputStream(bytes.array(), BLOCK_HEADER_SIZE, block.length()));
+    }
+
+    /**
+     * Reads from the position until the buffer is full or the file ends.
+     * @return true if the buffer is full
+     */
+    private static boolean read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Region region(Block block) {
+        return new Region(block.offset(), block.end() - block.offset(), block.recordCount());
+    }
+
+    /**
+     * @param dataOffset is an int denoting the position of the data of the block in the byte array
+     */
+    private static boolean verify(Block block, byte[] bytes, int dataOffset) {
+        CRC32C crc = new CRC32C();
+        crc.update(ByteBuffer.allocate(2 * Integer.BYTES).putInt(block.length()).putInt(block.recordCount()).flip());
+        crc.update(bytes, dataOffset, block.length());
+        return (int) crc.getValue() == block.checksum();
+    }
+
+    /**
+     * Verifies the blocks of a file with the index, without decoding the records. The blocks are read one at a time,
+     * so this needs little memory.
+     * @return the damaged parts of the file, a file without an intact index is one damaged part
+     */
+    static List<Region> verify(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+            List<Block> blocks = readIndex(channel);
+            if (blocks == null) {
+                return List.of(new Region(0, channel.size(), -1));
+            }
+
+            List<Region> damaged = new ArrayList<>();
+            for (Block block : blocks) {
+                if (readBlock(channel, block) == null) {
+                    damaged.add(region(block));
+                }
+            }
+            return damaged;
+        }
+    }
+}
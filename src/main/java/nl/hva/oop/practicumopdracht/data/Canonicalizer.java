@@ -0,0 +1,102 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Canonicalizer
+ * Replaces equal String and LocalDate values of loaded records by one shared instance, so a value that is repeated in
+ * a million records (a nationality, a destination, a date) is only kept in memory once.
+ * The maps are bounded: once a map is full new values are no longer added, the values that are already in the map
+ * are still shared. Only use it for fields with few distinct values, a unique value costs a map entry and saves
+ * nothing.
+ * The saved bytes are estimated from the size of the duplicate objects on a 64-bit JVM with compressed pointers.
+ * Not thread-safe, the DAO classes only use it while adding loaded records.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+final class Canonicalizer {
+    private static final int MAX_SIZE = 64 * 1024;
+    // Object header and fields of a String and a LocalDate, the array of a String has a header of 16 bytes
+    private static final int STRING_SIZE = 24;
+    private static final int ARRAY_HEADER_SIZE = 16;
+    private static final int LOCAL_DATE_SIZE = 24;
+    private final Map<String, String> strings = new HashMap<>();
+    private final Map<LocalDate, LocalDate> dates = new HashMap<>();
+    private long bytesSaved;
+
+    /**
+     * @param value is a String, can be null
+     * @return the shared instance of the value
+     */
+    String canonical(String value) {
+        if (value == null) {
+            return null;
+        }
+        String canonical = strings.get(value);
+        if (canonical == null) {
+            if (strings.size() < MAX_SIZE) {
+                strings.put(value, value);
+            }
+            return value;
+        }
+        if (canonical != value) {
+            bytesSaved += sizeOf(value);
+        }
+        return canonical;
+    }
+
+    /**
+     * @param value is a LocalDate, can be null
+     * @return the shared instance of the value
+     */
+    LocalDate canonical(LocalDate value) {
+        if (value == null) {
+            return null;
+        }
+        LocalDate canonical = dates.get(value);
+        if (canonical == null) {
+            if (dates.size() < MAX_SIZE) {
+                dates.put(value, value);
+            }
+            return value;
+        }
+        if (canonical != value) {
+            bytesSaved += LOCAL_DATE_SIZE;
+        }
+        return canonical;
+    }
+
+    // Compact strings: 1 byte per character if all characters are Latin-1, otherwise 2 bytes
+    private static long sizeOf(String value) {
+        int bytesPerCharacter = 1;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xFF) {
+                bytesPerCharacter = 2;
+                break;
+            }
+        }
+        return STRING_SIZE + align(ARRAY_HEADER_SIZE + (long) value.length() * bytesPerCharacter);
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    /**
+     * @return the estimated number of bytes of the duplicates that have been replaced since the last clear()
+     */
+    long getBytesSaved() {
+        return bytesSaved;
+    }
+
+    /**
+     * Forgets all values, should be called when the records are loaded again.
+     */
+    void clear() {
+        strings.clear();
+        dates.clear();
+        bytesSaved = 0;
+    }
+}
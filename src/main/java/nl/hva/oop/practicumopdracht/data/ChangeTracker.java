@@ -0,0 +1,149 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * ChangeTracker
+ * Keeps the records that are inserted, updated or deleted since the last load or save, by ID of the record.
+ * Changes of the same record are combined, so there is at most one change per record:
+ * inserted and updated is inserted, inserted and deleted is no change, updated and deleted is deleted and deleted
+ * and added again is updated.
+ * The listeners are called after every change, also when it's combined with an earlier change. During a batch (see
+ * startBatch()) the listeners are called once at the end of the batch instead.
+ * Every change gets a version, so a save of a snapshot (see Snapshot) only forgets the changes up to the version of
+ * the snapshot. A record that is inserted before a snapshot and deleted after it may be in the saved file, so that
+ * stays a deletion.
+ * The changes are guarded by the lock of the DAO. Batches are started outside that lock, so every thread has its own
+ * batch and the listeners are called when the batch of that thread ends.
+ *
+ * @param <T> model Person or Ticket
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+final class ChangeTracker<T> {
+    enum Type {
+        INSERTED, UPDATED, DELETED
+    }
+
+    /**
+     * @param type    the kind of change
+     * @param record  the latest version of the record, null for a deleted record that was never read
+     * @param version the version of the last change of the record
+     */
+    record Change<T>(Type type, T record, long version) {
+    }
+
+    private final Map<Long, Change<T>> changes = new LinkedHashMap<>();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    // Version of the last change and of the last snapshot
+    private long version;
+    private long snapshotVersion;
+    // Nesting depth of startBatch() calls and whether something changed during the batch, per thread
+    private final ThreadLocal<Batch> batch = ThreadLocal.withInitial(Batch::new);
+
+    private static final class Batch {
+        private int depth;
+        private boolean changed;
+    }
+
+    void inserted(long id, T record) {
+        Change<T> previous = changes.get(id);
+        Type type = previous != null && previous.type() == Type.DELETED ? Type.UPDATED : Type.INSERTED;
+        changes.put(id, new Change<>(type, record, ++version));
+        changed();
+    }
+
+    void updated(long id, T record) {
+        Type type = isUnsavedInsert(changes.get(id)) ? Type.INSERTED : Type.UPDATED;
+        changes.put(id, new Change<>(type, record, ++version));
+        changed();
+    }
+
+    void deleted(long id, T record) {
+        if (isUnsavedInsert(changes.get(id))) {
+            changes.remove(id);
+        } else {
+            changes.put(id, new Change<>(Type.DELETED, record, ++version));
+        }
+        changed();
+    }
+
+    /**
+     * @return true if the change is an insert that isn't in a snapshot, so the record can't be in a file yet
+     */
+    private boolean isUnsavedInsert(Change<T> change) {
+        return change != null && change.type() == Type.INSERTED && change.version() > snapshotVersion;
+    }
+
+    void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Holds back the listeners until the matching endBatch(), batches can be nested.
+     */
+    void startBatch() {
+        batch.get().depth++;
+    }
+
+    /**
+     * Ends a batch, the listeners are called once if something changed during the outermost batch.
+     */
+    void endBatch() {
+        Batch current = batch.get();
+        if (--current.depth == 0 && current.changed) {
+            current.changed = false;
+            changed();
+        }
+    }
+
+    private void changed() {
+        Batch current = batch.get();
+        if (current.depth > 0) {
+            current.changed = true;
+            return;
+        }
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * @return the changes by ID in the order the records first changed
+     */
+    Map<Long, Change<T>> getChanges() {
+        return Collections.unmodifiableMap(changes);
+    }
+
+    /**
+     * Marks the current changes as part of a snapshot.
+     * @return the version of the snapshot
+     */
+    long snapshot() {
+        snapshotVersion = version;
+        return version;
+    }
+
+    /**
+     * Forgets the changes of a saved snapshot, changes made after the snapshot are kept.
+     * @param savedVersion is a long denoting the version of the saved snapshot
+     */
+    void clearUpTo(long savedVersion) {
+        changes.values().removeIf(change -> change.version() <= savedVersion);
+    }
+
+    int size() {
+        return changes.size();
+    }
+
+    boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    void clear() {
+        changes.clear();
+    }
+}
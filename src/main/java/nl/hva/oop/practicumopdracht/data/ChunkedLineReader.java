@@ -0,0 +1,150 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * ChunkedLineReader
+ * Reads a UTF-8 text file in parallel, used by the text DAO classes.
+ * The file is split into byte ranges that start right after a newline, so no line and no UTF-8 character is split.
+ * The chunks are parsed on the common ForkJoinPool and the results are merged in file order, so the result is the
+ * same as reading the file line by line with a BufferedReader. A small file is one chunk and is read on the calling
+ * thread.
+ * The lines aren't copied into Strings of their own, a LineParser gets the position of the line in the text of its
+ * chunk. Every chunk gets its own LineParser, so a parser can reuse its buffers without locking.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+final class ChunkedLineReader {
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+    private static final int PROBE_SIZE = 8 * 1024;
+
+    /**
+     * Parses the lines of one chunk, is only used by one thread.
+     */
+    interface LineParser<T> {
+        /**
+         * @param text  the text of the chunk
+         * @param start the index of the first character of the line
+         * @param end   the index after the last character of the line, without the line terminator
+         * @return the parsed line or null if the line should be skipped
+         */
+        T parse(String text, int start, int end);
+    }
+
+    private ChunkedLineReader() {
+    }
+
+    /**
+     * @param file    the text file to read
+     * @param parsers creates a parser for every chunk, the parsers are used from several threads at the same time,
+     *                so they must not change shared state
+     * @return the parsed lines in file order
+     */
+    static <T> List<T> read(File file, Supplier<LineParser<T>> parsers) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+            long[] boundaries = findBoundaries(channel);
+            int chunkCount = boundaries.length - 1;
+
+            try {
+                return IntStream.range(0, chunkCount)
+                        .parallel()
+                        .mapToObj(chunk -> readChunk(channel, boundaries[chunk], boundaries[chunk + 1], parsers.get()))
+                        .flatMap(List::stream)
+                        .toList();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * @return the start of every chunk followed by the end of the file
+     */
+    private static long[] findBoundaries(FileChannel channel) throws IOException {
+        long size = channel.size();
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+
+        long position = CHUNK_SIZE;
+        ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+        while (position < size) {
+            // Move the boundary to right after the next newline
+            long next = -1;
+            while (next < 0 && position < size) {
+                probe.clear();
+                int read = channel.read(probe, position);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        next = position + i + 1;
+                        break;
+                    }
+                }
+                if (next < 0) {
+                    position += read;
+                }
+            }
+            if (next < 0 || next >= size) {
+                break;
+            }
+            boundaries.add(next);
+            position = next + CHUNK_SIZE;
+        }
+
+        boundaries.add(size);
+        long[] result = new long[boundaries.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = boundaries.get(i);
+        }
+        return result;
+    }
+
+    private static <T> List<T> readChunk(FileChannel channel, long start, long end, LineParser<T> parser) {
+        String text;
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(end - start));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    throw new IOException("File was truncated while reading");
+                }
+            }
+            text = new String(buffer.array(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // Same line terminators as BufferedReader.readLine(): \n, \r or \r\n
+        List<T> results = new ArrayList<>();
+        int lineStart = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r') {
+                results.add(parser.parse(text, lineStart, i));
+                if (c == '\r' && i + 1 < length && text.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart < length) {
+            results.add(parser.parse(text, lineStart, length));
+        }
+
+        results.removeIf(Objects::isNull);
+        return results;
+    }
+}
@@ -0,0 +1,456 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import org.apache.commons.io.FileUtils;
+import java.io.File;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * ColumnFile
+ * A memory-mapped file with a columnar layout, used by the MappedPersonDAO and MappedTicketDAO.
+ * Opening the file only maps it and reads the header, values are read from the mapped memory when they are needed.
+ * <p>
+ * Layout (little-endian):
+ * <pre>
+ * header:  magic (int), version (int), column count (int), row count (long),
+ *          column offsets (long per column), heap offset (long), index offset (long)
+ * columns: per column the values of all rows, fixed width per type, a STRING is an offset into the heap or -1 (null)
+ * heap:    per string the UTF-8 length (int) and the UTF-8 bytes
+ * index:   per row the key (long) and the row (int), sorted by key
+ * </pre>
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+final class ColumnFile implements AutoCloseable {
+    enum Type {
+        LONG(8), INT(4), DOUBLE(8), BYTE(1), STRING(8);
+
+        private final int width;
+
+        Type(int width) {
+            this.width = width;
+        }
+    }
+
+    /**
+     * Values of the rows that are written, indexed by column and row.
+     */
+    interface Source {
+        long getLong(int column, int row);
+
+        int getInt(int column, int row);
+
+        double getDouble(int column, int row);
+
+        byte getByte(int column, int row);
+
+        String getString(int column, int row);
+    }
+
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfDouble DOUBLE =
+            ValueLayout.JAVA_DOUBLE_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final int INDEX_ENTRY_SIZE = 12;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String BACKUP_EXTENSION = ".bak";
+
+    private final Arena arena;
+    private final MemorySegment segment;
+    private final Type[] schema;
+    private final long[] columnOffsets;
+    private final long heapOffset;
+    private final long indexOffset;
+    private final int rowCount;
+
+    private ColumnFile(Arena arena, MemorySegment segment, Type[] schema, long[] columnOffsets, long heapOffset,
+                       long indexOffset, int rowCount) {
+        this.arena = arena;
+        this.segment = segment;
+        this.schema = schema;
+        this.columnOffsets = columnOffsets;
+        this.heapOffset = heapOffset;
+        this.indexOffset = indexOffset;
+        this.rowCount = rowCount;
+    }
+
+    private static long headerSize(int columnCount) {
+        return 4 + 4 + 4 + 8 + 8L * columnCount + 8 + 8;
+    }
+
+    /**
+     * Maps the file and checks the header.
+     * @throws IOException if the file can't be mapped or isn't a column file with this magic, version and schema
+     */
+    static ColumnFile open(File file, int magic, int version, Type[] schema) throws IOException {
+        Arena arena = Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+            MemorySegment segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+            if (segment.byteSize() < headerSize(schema.length)) {
+                throw new IOException("File is too small: " + file.getName());
+            }
+            if (segment.get(INT, 0) != magic) {
+                throw new IOException("Not a column file: " + file.getName());
+            }
+            int fileVersion = segment.get(INT, 4);
+            if (fileVersion > version) {
+                throw new IOException(String.format("Unsupported file version %d: %s", fileVersion, file.getName()));
+            }
+            if (segment.get(INT, 8) != schema.length) {
+                throw new IOException("Unexpected number of columns: " + file.getName());
+            }
+
+            long rowCount = segment.get(LONG, 12);
+            long[] columnOffsets = new long[schema.length];
+            long position = 20;
+            for (int column = 0; column < schema.length; column++, position += 8) {
+                columnOffsets[column] = segment.get(LONG, position);
+            }
+            long heapOffset = segment.get(LONG, position);
+            long indexOffset = segment.get(LONG, position + 8);
+            if (rowCount > Integer.MAX_VALUE ||
+                    indexOffset + rowCount * INDEX_ENTRY_SIZE > segment.byteSize()) {
+                throw new IOException("File is truncated: " + file.getName());
+            }
+
+            return new ColumnFile(arena, segment, schema, columnOffsets, heapOffset, indexOffset, (int) rowCount);
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Replaces the file with a file written by write() and maps the new file. A mapped file can't be replaced on every
+     * OS, so the mapping of the old file is closed first. The old file is kept as a backup until the new file is
+     * mapped, if the new file can't be mapped the old file is put back.
+     * @param current the mapping of the old file or null, it is closed
+     * @return the mapping of the new file
+     * @throws IOException if the file couldn't be replaced or the new file couldn't be mapped, the old file is in place
+     *                     then and the caller maps it again
+     */
+    static ColumnFile replace(ColumnFile current, File tempFile, File file, int magic, int version, Type[] schema)
+            throws IOException {
+        Path backup = new File(file.getPath() + BACKUP_EXTENSION).toPath();
+        Files.deleteIfExists(backup);
+        boolean hasBackup = file.exists();
+        if (hasBackup) {
+            try {
+                Files.createLink(backup, file.toPath());
+            } catch (IOException | UnsupportedOperationException e) {
+                // Not every file system has hard links
+                Files.copy(file.toPath(), backup);
+            }
+        }
+
+        if (current != null) {
+            current.close();
+        }
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(backup);
+            throw e;
+        }
+
+        try {
+            ColumnFile replaced = open(file, magic, version, schema);
+            FileUtils.deleteQuietly(backup.toFile());
+            return replaced;
+        } catch (IOException | RuntimeException e) {
+            if (hasBackup) {
+                Files.move(backup, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            throw e instanceof IOException ioException ? ioException : new IOException(e);
+        }
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    long getLong(int column, int row) {
+        return segment.get(LONG, address(column, row));
+    }
+
+    int getInt(int column, int row) {
+        return segment.get(INT, address(column, row));
+    }
+
+    double getDouble(int column, int row) {
+        return segment.get(DOUBLE, address(column, row));
+    }
+
+    byte getByte(int column, int row) {
+        return segment.get(ValueLayout.JAVA_BYTE, address(column, row));
+    }
+
+    String getString(int column, int row) {
+        long offset = getLong(column, row);
+        if (offset < 0) {
+            return null;
+        }
+        long position = heapOffset + offset;
+        int length = segment.get(INT, position);
+        byte[] bytes = segment.asSlice(position + 4, length).toArray(ValueLayout.JAVA_BYTE);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private long address(int column, int row) {
+        return columnOffsets[column] + (long) row * schema[column].width;
+    }
+
+    /**
+     * @param key is a long denoting the key to search for
+     * @return the first row with this key or -1 if there is no row with this key
+     */
+    int findRow(long key) {
+        int index = lowerBound(key);
+        if (index < rowCount && indexKey(index) == key) {
+            return indexRow(index);
+        }
+        return -1;
+    }
+
+    /**
+     * @param key is a long denoting the key to search for
+     * @return all rows with this key, in file order
+     */
+    int[] findRows(long key) {
+        int first = lowerBound(key);
+        int last = first;
+        while (last < rowCount && indexKey(last) == key) {
+            last++;
+        }
+
+        int[] rows = new int[last - first];
+        for (int i = first; i < last; i++) {
+            rows[i - first] = indexRow(i);
+        }
+        return rows;
+    }
+
+    /**
+     * @return the highest key in the index or 0 if the file has no rows
+     */
+    long getMaxKey() {
+        return rowCount == 0 ? 0 : indexKey(rowCount - 1);
+    }
+
+    private int lowerBound(long key) {
+        int low = 0;
+        int high = rowCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (indexKey(middle) < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private long indexKey(int index) {
+        return segment.get(LONG, indexOffset + (long) index * INDEX_ENTRY_SIZE);
+    }
+
+    private int indexRow(int index) {
+        return segment.get(INT, indexOffset + (long) index * INDEX_ENTRY_SIZE + 8);
+    }
+
+    /**
+     * Unmaps the file, values can't be read anymore after closing.
+     */
+    @Override
+    public void close() {
+        arena.close();
+    }
+
+    /**
+     * Writes a column file. The values are written column by column, so the source is asked for every value of a
+     * column before the next column.
+     * @param keyColumn is an int denoting the LONG column that is used as the key of the index
+     */
+    static void write(File file, int magic, int version, Type[] schema, int keyColumn, int rowCount, Source source)
+            throws IOException {
+        long[] columnOffsets = new long[schema.length];
+        long position = headerSize(schema.length);
+        for (int column = 0; column < schema.length; column++) {
+            columnOffsets[column] = position;
+            position += (long) rowCount * schema[column].width;
+        }
+        long heapOffset = position;
+        long[] keys = new long[rowCount];
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), CREATE, WRITE, TRUNCATE_EXISTING)) {
+            BlockWriter heap = new BlockWriter(channel, heapOffset);
+
+            for (int column = 0; column < schema.length; column++) {
+                BlockWriter out = new BlockWriter(channel, columnOffsets[column]);
+                for (int row = 0; row < rowCount; row++) {
+                    switch (schema[column]) {
+                        case LONG -> {
+                            long value = source.getLong(column, row);
+                            if (column == keyColumn) {
+                                keys[row] = value;
+                            }
+                            out.putLong(value);
+                        }
+                        case INT -> out.putInt(source.getInt(column, row));
+                        case DOUBLE -> out.putDouble(source.getDouble(column, row));
+                        case BYTE -> out.putByte(source.getByte(column, row));
+                        case STRING -> {
+                            String value = source.getString(column, row);
+                            if (value == null) {
+                                out.putLong(-1);
+                            } else {
+                                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                                out.putLong(heap.position() - heapOffset);
+                                heap.putInt(bytes.length);
+                                heap.putBytes(bytes);
+                            }
+                        }
+                    }
+                }
+                out.flush();
+            }
+            heap.flush();
+
+            long indexOffset = heap.position();
+            BlockWriter index = new BlockWriter(channel, indexOffset);
+            for (int row : sortedByKey(keys)) {
+                index.putLong(keys[row]);
+                index.putInt(row);
+            }
+            index.flush();
+
+            BlockWriter header = new BlockWriter(channel, 0);
+            header.putInt(magic);
+            header.putInt(version);
+            header.putInt(schema.length);
+            header.putLong(rowCount);
+            for (long columnOffset : columnOffsets) {
+                header.putLong(columnOffset);
+            }
+            header.putLong(heapOffset);
+            header.putLong(indexOffset);
+            header.flush();
+
+            channel.force(true);
+        }
+    }
+
+    /**
+     * @return the rows ordered by key, rows with the same key stay in file order
+     */
+    private static int[] sortedByKey(long[] keys) {
+        int[] rows = new int[keys.length];
+        boolean small = true;
+        for (long key : keys) {
+            if (key < 0 || key > Integer.MAX_VALUE) {
+                small = false;
+                break;
+            }
+        }
+
+        if (small) {
+            // Pack key and row in one long, so a primitive sort can be used
+            long[] packed = new long[keys.length];
+            for (int row = 0; row < keys.length; row++) {
+                packed[row] = keys[row] << 32 | row;
+            }
+            Arrays.sort(packed);
+            for (int i = 0; i < packed.length; i++) {
+                rows[i] = (int) packed[i];
+            }
+            return rows;
+        }
+
+        Integer[] boxed = new Integer[keys.length];
+        for (int row = 0; row < keys.length; row++) {
+            boxed[row] = row;
+        }
+        Arrays.sort(boxed, (a, b) -> Long.compare(keys[a], keys[b]));
+        for (int i = 0; i < boxed.length; i++) {
+            rows[i] = boxed[i];
+        }
+        return rows;
+    }
+
+    /**
+     * Buffered writer that writes to a channel starting at a fixed position.
+     */
+    private static class BlockWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long flushedPosition;
+
+        private BlockWriter(FileChannel channel, long position) {
+            this.channel = channel;
+            this.flushedPosition = position;
+        }
+
+        private long position() {
+            return flushedPosition + buffer.position();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        private void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        private void putDouble(double value) throws IOException {
+            ensure(8);
+            buffer.putDouble(value);
+        }
+
+        private void putByte(byte value) throws IOException {
+            ensure(1);
+            buffer.put(value);
+        }
+
+        private void putBytes(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                flushedPosition += channel.write(buffer, flushedPosition);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package nl.hva.oop.practicumopdracht.data;
 
 import java.io.FileNotFoundException;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * Interface for DAO abstract classes.
@@ -11,7 +14,11 @@ import java.util.List;
 public interface DAO<T> {
     List<T> getAll();
     void addOrUpdate(T object);
+    void update(T object, Consumer<? super T> edit);
     void remove(T object);
+    void addAll(Collection<? extends T> objects);
+    void removeAll(Collection<? extends T> objects);
+    boolean removeIf(Predicate<? super T> filter);
     boolean save();
     boolean load() throws FileNotFoundException;
 }
\ No newline at end of file
@@ -0,0 +1,93 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import org.apache.commons.io.FileUtils;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import static nl.hva.oop.practicumopdracht.Main.getAppDataDirectory;
+
+/**
+ * Database
+ * Opens connections to the embedded H2 database in the app data directory (Database.mv.db), used by the
+ * DatabasePersonDAO and the DatabaseTicketDAO. The database runs in the same process, there is no server.
+ * Every DAO has its own connection without auto-commit, so a save is one transaction and the saves of the two DAOs
+ * don't interfere when they run on different threads.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+final class Database {
+    private static final String DIRECTORY_NAME = getAppDataDirectory();
+    static final String NAME = "Database";
+    static final File DIRECTORY = FileUtils.getFile(DIRECTORY_NAME);
+    private static final String URL = "jdbc:h2:file:" + FileUtils.getFile(DIRECTORY, NAME).getAbsolutePath();
+    // The file H2 creates for the database, it starts with HEADER
+    static final File FILE = FileUtils.getFile(DIRECTORY, NAME + ".mv.db");
+    static final int HEADER = 0x483A322C; // "H:2,"
+    // Number of rows that are sent to the database at once
+    static final int BATCH_SIZE = 1000;
+    // Number of rows that are read at once when the list requests a row
+    static final int FETCH_SIZE = 64;
+
+    private Database() {
+    }
+
+    /**
+     * @return a new connection without auto-commit, the database is created if it doesn't exist
+     */
+    static Connection connect() throws SQLException {
+        Connection connection = DriverManager.getConnection(URL);
+        connection.setAutoCommit(false);
+        return connection;
+    }
+
+    /**
+     * Creates a table if it doesn't exist yet.
+     * @return true if the table has been created, false if it already existed
+     */
+    static boolean createTable(Connection connection, String table, String createTable) throws SQLException {
+        try (ResultSet tables = connection.getMetaData().getTables(null, null, table.toUpperCase(), null)) {
+            if (tables.next()) {
+                return false;
+            }
+        }
+        execute(connection, createTable);
+        return true;
+    }
+
+    /**
+     * Executes statements without parameters and commits them, for example CREATE INDEX statements.
+     */
+    static void execute(Connection connection, String... statements) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        }
+        connection.commit();
+    }
+
+    /**
+     * Undoes the current transaction after an error, an error of the rollback itself is only printed.
+     */
+    static void rollback(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            System.err.println("An error occurred while undoing the changes: " + e.getMessage());
+        }
+    }
+
+    static void close(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.err.println("An error occurred while closing the database: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import nl.hva.oop.practicumopdracht.models.Person;
+import org.apache.commons.io.FileUtils;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import static nl.hva.oop.practicumopdracht.Main.DEBUG;
+
+/**
+ * DatabasePersonDAO - DatabaseMasterDAO
+ * This is a DAO class which keeps the persons in the person table of the embedded database (see Database).
+ * Loading only reads the IDs, a person is read the first time the list or a lookup by ID touches it, together with the
+ * persons next to it in the list.
+ * save() writes only the persons that changed since the last load or save, in batches and in one transaction.
+ * The SSN column has an index, see getAllBySSN(). If the table doesn't exist yet, the persons are imported once from
+ * Persons.dat.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+public class DatabasePersonDAO extends PersonDAO {
+    private static final String TABLE = "person";
+    private static final String COLUMNS = "id, name, sex, birthdate, birthplace, nationality, ssn, document_number";
+    private static final String CREATE_TABLE =
+            "CREATE TABLE person (id BIGINT PRIMARY KEY, name VARCHAR, sex VARCHAR, birthdate DATE, " +
+                    "birthplace VARCHAR, nationality VARCHAR, ssn INT, document_number VARCHAR)";
+    // Created after the import, updating the indexes for every imported row is much slower
+    private static final String[] CREATE_INDEXES = {
+            "CREATE INDEX IF NOT EXISTS person_ssn ON person (ssn)"
+    };
+    private static final String DROP_TABLE = "DROP TABLE person";
+    private static final String SELECT_IDS = "SELECT id FROM person ORDER BY id";
+    private static final String SELECT_RANGE = "SELECT " + COLUMNS + " FROM person WHERE id BETWEEN ? AND ?";
+    private static final String SELECT_IDS_BY_SSN = "SELECT id FROM person WHERE ssn = ?";
+    private static final String MERGE = "MERGE INTO person (" + COLUMNS + ") KEY (id) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT = "INSERT INTO person (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String DELETE = "DELETE FROM person WHERE id = ?";
+    private Connection connection;
+    // IDs in the database at the last load, sorted, so the row of a person is the position of its ID
+    private long[] ids = new long[0];
+    // Decoded persons by row, so the list and getById() return the same object
+    private Person[] decoded = new Person[0];
+    // Persons read by readOnce() that aren't kept, from row windowStart on
+    private Person[] window = new Person[0];
+    private int windowStart;
+    // Rows of persons that are removed since the last load
+    private BitSet removedRows = new BitSet();
+
+    @Override
+    protected boolean loadLocked() throws FileNotFoundException {
+        if (DEBUG) {
+            System.out.printf("%n******** Debug info%n* App data directory: %s%n* Database: %s, table: %s%n********%n%n",
+                    Database.DIRECTORY.getAbsolutePath(), Database.NAME, TABLE);
+        }
+
+        // Ensure the directory exists
+        try {
+            FileUtils.forceMkdir(Database.DIRECTORY);
+        } catch (IOException e) {
+            System.err.println("An error occurred while creating the directory: " + e.getMessage());
+            return false;
+        }
+
+        if (DEBUG) {
+            System.out.println("Loading table: " + TABLE);
+        }
+
+        // Clear the list and close the previous connection before loading new data
+        clearAll();
+        Database.close(connection);
+        ids = new long[0];
+        decoded = new Person[0];
+        window = new Person[0];
+        removedRows = new BitSet();
+
+        try {
+            connection = Database.connect();
+            if (Database.createTable(connection, TABLE, CREATE_TABLE) && !importBinaryFile()) {
+                return false;
+            }
+            Database.execute(connection, CREATE_INDEXES);
+            readIds();
+        } catch (SQLException e) {
+            System.err.println("Something went wrong while reading the database: " + e.getMessage());
+            return false;
+        }
+
+        if (DEBUG) {
+            System.out.println("Loading complete: " + TABLE);
+        }
+        return true;
+    }
+
+    private void readIds() throws SQLException {
+        long[] readIds = new long[1024];
+        int count = 0;
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(SELECT_IDS)) {
+            while (resultSet.next()) {
+                if (count == readIds.length) {
+                    readIds = Arrays.copyOf(readIds, count * 2);
+                }
+                readIds[count++] = resultSet.getLong(1);
+            }
+        }
+        connection.commit();
+
+        ids = Arrays.copyOf(readIds, count);
+        if (count > 0) {
+            idAllocator.observe(ids[count - 1]);
+        }
+        decoded = new Person[count];
+        window = new Person[0];
+        persons = new LazyList<>(count, new LazyList.Decoder<>() {
+            @Override
+            public Person decode(int row) {
+                return DatabasePersonDAO.this.decode(row);
+            }
+
+            @Override
+            public Person getIfDecoded(int row) {
+                return decoded[row];
+            }
+
+            @Override
+            public Person readOnce(int row) {
+                return DatabasePersonDAO.this.readOnce(row);
+            }
+        });
+    }
+
+    @Override
+    protected boolean saveSnapshot(Snapshot<Person> snapshot) {
+        if (DEBUG) {
+            System.out.println("\nSaving table: " + TABLE);
+        }
+
+        try (
+                PreparedStatement merge = connection.prepareStatement(MERGE);
+                PreparedStatement delete = connection.prepareStatement(DELETE)
+        ) {
+            // Only the records that changed since the last load or save are written
+            int batched = 0;
+            for (Map.Entry<Long, ChangeTracker.Change<Person>> entry : changes.getChanges().entrySet()) {
+                if (entry.getValue().type() == ChangeTracker.Type.DELETED) {
+                    delete.setLong(1, entry.getKey());
+                    delete.addBatch();
+                } else {
+                    setPerson(merge, entry.getValue().record());
+                    merge.addBatch();
+                }
+                if (++batched % Database.BATCH_SIZE == 0) {
+                    merge.executeBatch();
+                    delete.executeBatch();
+                }
+            }
+            merge.executeBatch();
+            delete.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            Database.rollback(connection);
+            System.err.println("An error occurred while saving the database: " + e.getMessage());
+            return false;
+        }
+
+        if (DEBUG) {
+            System.out.println("Saving table complete: " + TABLE);
+        }
+        return idAllocator.save();
+    }
+
+    /**
+     * One-shot import of the persons of the BinaryPersonDAO into the new table, Persons.dat is left untouched.
+     * If the import fails the table is dropped again, so the next load tries again.
+     * @return true if the persons are imported
+     */
+    private boolean importBinaryFile() throws SQLException, FileNotFoundException {
+        if (DEBUG) {
+            System.out.println("Importing Persons.dat into table: " + TABLE);
+        }
+
+        BinaryPersonDAO binaryPersonDAO = new BinaryPersonDAO();
+        if (!binaryPersonDAO.load()) {
+            System.err.println("Couldn't import Persons.dat into table: " + TABLE);
+            Database.execute(connection, DROP_TABLE);
+            return false;
+        }
+
+        try (PreparedStatement insert = connection.prepareStatement(INSERT)) {
+            int batched = 0;
+            for (Person person : binaryPersonDAO.getAll()) {
+                setPerson(insert, person);
+                insert.addBatch();
+                // Committed per batch, a large transaction is slower and a failed import drops the table anyway
+                if (++batched % Database.BATCH_SIZE == 0) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+            }
+            insert.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            Database.rollback(connection);
+            Database.execute(connection, DROP_TABLE);
+            throw e;
+        }
+
+        if (DEBUG) {
+            System.out.printf("Import complete: %d persons%n", binaryPersonDAO.getAll().size());
+        }
+        return true;
+    }
+
+    /**
+     * Persons are decoded from the database on a lookup, so lookups take the lock exclusively.
+     */
+    @Override
+    protected boolean decodesOnRead() {
+        return true;
+    }
+
+    @Override
+    protected Person getByIdLocked(long id) {
+        Person person = super.getByIdLocked(id);
+        if (person == null) {
+            int row = Arrays.binarySearch(ids, id);
+            if (row >= 0 && !removedRows.get(row)) {
+                person = decode(row);
+            }
+        }
+        return person;
+    }
+
+    /**
+     * Looks up persons with the index on the SSN column, persons that changed since the last save are included.
+     * @param SSN is an int denoting the social security number
+     * @return the persons with this SSN, usually one
+     */
+    public List<Person> getAllBySSN(int SSN) {
+        return read(() -> getAllBySSNLocked(SSN));
+    }
+
+    private List<Person> getAllBySSNLocked(int SSN) {
+        List<Person> result = new ArrayList<>();
+        try (PreparedStatement select = connection.prepareStatement(SELECT_IDS_BY_SSN)) {
+            select.setInt(1, SSN);
+            try (ResultSet resultSet = select.executeQuery()) {
+                while (resultSet.next()) {
+                    Person person = getByIdLocked(resultSet.getLong(1));
+                    // The SSN may have been changed since the last save
+                    if (person != null && person.getSSN() == SSN) {
+                        result.add(person);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Something went wrong while reading the database: " + e.getMessage());
+        }
+
+        for (ChangeTracker.Change<Person> change : changes.getChanges().values()) {
+            Person person = change.record();
+            if (change.type() != ChangeTracker.Type.DELETED && person.getSSN() == SSN && !result.contains(person)) {
+                result.add(person);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    protected void onRemoved(Person person) {
+        int row = Arrays.binarySearch(ids, person.getId());
+        if (row >= 0 && decoded[row] == person) {
+            removedRows.set(row);
+        }
+    }
+
+    private Person decode(int row) {
+        if (decoded[row] == null) {
+            // The next persons in the list are read as well, the list usually requests them next
+            Person[] range = readRange(row);
+            for (int i = 0; i < range.length; i++) {
+                if (range[i] != null && decoded[row + i] == null) {
+                    decoded[row + i] = range[i];
+                }
+            }
+        }
+        return decoded[row];
+    }
+
+    /**
+     * Reads a person without keeping it, for forEach(). Only the last range of persons that was read is kept.
+     */
+    private Person readOnce(int row) {
+        if (decoded[row] != null) {
+            return decoded[row];
+        }
+        if (row < windowStart || row >= windowStart + window.length) {
+            window = readRange(row);
+            windowStart = row;
+        }
+        return window[row - windowStart];
+    }
+
+    /**
+     * @return the persons of the row and the next rows, at most FETCH_SIZE, null for a row that isn't in the table
+     */
+    private Person[] readRange(int row) {
+        int lastRow = Math.min(row + Database.FETCH_SIZE, ids.length) - 1;
+        Person[] range = new Person[lastRow - row + 1];
+        try (PreparedStatement select = connection.prepareStatement(SELECT_RANGE)) {
+            select.setLong(1, ids[row]);
+            select.setLong(2, ids[lastRow]);
+            try (ResultSet resultSet = select.executeQuery()) {
+                while (resultSet.next()) {
+                    int resultRow = Arrays.binarySearch(ids, resultSet.getLong(1));
+                    if (resultRow >= row && resultRow <= lastRow) {
+                        range[resultRow - row] = readPerson(resultSet);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Something went wrong while reading the database: " +
+                    e.getMessage(), e);
+        }
+        return range;
+    }
+
+    private Person readPerson(ResultSet resultSet) throws SQLException {
+        Person person = new Person(
+                resultSet.getString(2),
+                resultSet.getString(3),
+                resultSet.getObject(4, LocalDate.class),
+                resultSet.getString(5),
+                resultSet.getString(6),
+                resultSet.getInt(7),
+                resultSet.getString(8)
+        );
+        person.setId(resultSet.getLong(1));
+        // These records don't go through addLoaded()
+        canonicalize(person);
+        return person;
+    }
+
+    private static void setPerson(PreparedStatement statement, Person person) throws SQLException {
+        statement.setLong(1, person.getId());
+        statement.setString(2, person.getName());
+        statement.setString(3, person.getSex());
+        statement.setObject(4, person.getBirthdate(), Types.DATE);
+        statement.setString(5, person.getBirthplace());
+        statement.setString(6, person.getNationality());
+        statement.setInt(7, person.getSSN());
+        statement.setString(8, person.getDocumentNumber());
+    }
+}
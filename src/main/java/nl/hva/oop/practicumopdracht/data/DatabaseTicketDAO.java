@@ -0,0 +1,386 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import nl.hva.oop.practicumopdracht.models.Person;
+import nl.hva.oop.practicumopdracht.models.Ticket;
+import org.apache.commons.io.FileUtils;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static nl.hva.oop.practicumopdracht.Main.DEBUG;
+import static nl.hva.oop.practicumopdracht.MainApplication.getPersonDAO;
+
+/**
+ * DatabaseTicketDAO - DatabaseDetailDAO
+ * This is a DAO class which keeps the tickets in the ticket table of the embedded database (see Database).
+ * Loading only reads the IDs, a ticket is read the first time the list touches it, together with the tickets next to
+ * it in the list. getAllFor() reads the tickets of the person with the index on the owner column.
+ * save() writes only the tickets that changed since the last load or save, in batches and in one transaction.
+ * The start and end date columns have an index, see getAllBetween(). If the table doesn't exist yet, the tickets are
+ * imported once from Tickets.dat.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+public class DatabaseTicketDAO extends TicketDAO {
+    private static final String TABLE = "ticket";
+    private static final String COLUMNS = "id, owner, destination, start_date, end_date, cost, checked_in, description";
+    private static final String CREATE_TABLE =
+            "CREATE TABLE ticket (id BIGINT PRIMARY KEY, owner BIGINT, destination VARCHAR, start_date DATE, " +
+                    "end_date DATE, cost DOUBLE PRECISION, checked_in BOOLEAN, description VARCHAR)";
+    // Created after the import, updating the indexes for every imported row is much slower
+    private static final String[] CREATE_INDEXES = {
+            "CREATE INDEX IF NOT EXISTS ticket_owner ON ticket (owner)",
+            "CREATE INDEX IF NOT EXISTS ticket_start_date ON ticket (start_date)",
+            "CREATE INDEX IF NOT EXISTS ticket_end_date ON ticket (end_date)"
+    };
+    private static final String DROP_TABLE = "DROP TABLE ticket";
+    private static final String SELECT_IDS = "SELECT id FROM ticket ORDER BY id";
+    private static final String SELECT_RANGE = "SELECT " + COLUMNS + " FROM ticket WHERE id BETWEEN ? AND ?";
+    private static final String SELECT_BY_OWNER = "SELECT " + COLUMNS + " FROM ticket WHERE owner = ?";
+    private static final String SELECT_WITHOUT_OWNER = "SELECT " + COLUMNS + " FROM ticket WHERE owner IS NULL";
+    private static final String SELECT_BETWEEN = "SELECT " + COLUMNS + " FROM ticket " +
+            "WHERE start_date <= ? AND end_date >= ?";
+    private static final String MERGE = "MERGE INTO ticket (" + COLUMNS + ") KEY (id) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT = "INSERT INTO ticket (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String DELETE = "DELETE FROM ticket WHERE id = ?";
+    private static final Comparator<Ticket> BY_ID = Comparator.comparingLong(Ticket::getId);
+    private Connection connection;
+    // IDs in the database at the last load, sorted, so the row of a ticket is the position of its ID
+    private long[] ids = new long[0];
+    // Decoded tickets by row, so the list and getAllFor() return the same object
+    private Ticket[] decoded = new Ticket[0];
+    // Tickets that are saved after the last load by ID, their IDs aren't in ids
+    private final Map<Long, Ticket> savedAfterLoad = new HashMap<>();
+
+    @Override
+    protected boolean loadLocked() throws FileNotFoundException {
+        if (DEBUG) {
+            System.out.printf("%n******** Debug info%n* App data directory: %s%n* Database: %s, table: %s%n********%n%n",
+                    Database.DIRECTORY.getAbsolutePath(), Database.NAME, TABLE);
+        }
+
+        // Ensure the directory exists
+        try {
+            FileUtils.forceMkdir(Database.DIRECTORY);
+        } catch (IOException e) {
+            System.err.println("An error occurred while creating the directory: " + e.getMessage());
+            return false;
+        }
+
+        if (DEBUG) {
+            System.out.println("Loading table: " + TABLE);
+        }
+
+        // Clear the list and close the previous connection before loading new data
+        clearAll();
+        Database.close(connection);
+        ids = new long[0];
+        decoded = new Ticket[0];
+        savedAfterLoad.clear();
+
+        try {
+            connection = Database.connect();
+            if (Database.createTable(connection, TABLE, CREATE_TABLE) && !importBinaryFile()) {
+                return false;
+            }
+            Database.execute(connection, CREATE_INDEXES);
+            readIds();
+        } catch (SQLException e) {
+            System.err.println("Something went wrong while reading the database: " + e.getMessage());
+            return false;
+        }
+
+        if (DEBUG) {
+            System.out.println("Loading complete: " + TABLE);
+        }
+        return true;
+    }
+
+    private void readIds() throws SQLException {
+        long[] readIds = new long[1024];
+        int count = 0;
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(SELECT_IDS)) {
+            while (resultSet.next()) {
+                if (count == readIds.length) {
+                    readIds = Arrays.copyOf(readIds, count * 2);
+                }
+                readIds[count++] = resultSet.getLong(1);
+            }
+        }
+        connection.commit();
+
+        ids = Arrays.copyOf(readIds, count);
+        if (count > 0) {
+            idAllocator.observe(ids[count - 1]);
+        }
+        decoded = new Ticket[count];
+        tickets = new LazyList<>(count, new LazyList.Decoder<>() {
+            @Override
+            public Ticket decode(int row) {
+                return DatabaseTicketDAO.this.decode(row);
+            }
+
+            @Override
+            public Ticket getIfDecoded(int row) {
+                return decoded[row];
+            }
+        });
+    }
+
+    @Override
+    protected boolean saveSnapshot(Snapshot<Ticket> snapshot) {
+        if (DEBUG) {
+            System.out.println("\nSaving table: " + TABLE);
+        }
+
+        try (
+                PreparedStatement merge = connection.prepareStatement(MERGE);
+                PreparedStatement delete = connection.prepareStatement(DELETE)
+        ) {
+            // Only the records that changed since the last load or save are written
+            int batched = 0;
+            for (Map.Entry<Long, ChangeTracker.Change<Ticket>> entry : changes.getChanges().entrySet()) {
+                if (entry.getValue().type() == ChangeTracker.Type.DELETED) {
+                    delete.setLong(1, entry.getKey());
+                    delete.addBatch();
+                } else {
+                    setTicket(merge, entry.getValue().record());
+                    merge.addBatch();
+                }
+                if (++batched % Database.BATCH_SIZE == 0) {
+                    merge.executeBatch();
+                    delete.executeBatch();
+                }
+            }
+            merge.executeBatch();
+            delete.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            Database.rollback(connection);
+            System.err.println("An error occurred while saving the database: " + e.getMessage());
+            return false;
+        }
+
+        for (Map.Entry<Long, ChangeTracker.Change<Ticket>> entry : changes.getChanges().entrySet()) {
+            if (entry.getValue().type() == ChangeTracker.Type.DELETED) {
+                savedAfterLoad.remove(entry.getKey());
+            } else if (Arrays.binarySearch(ids, entry.getKey()) < 0) {
+                savedAfterLoad.put(entry.getKey(), entry.getValue().record());
+            }
+        }
+
+        if (DEBUG) {
+            System.out.println("Saving table complete: " + TABLE);
+        }
+        return idAllocator.save();
+    }
+
+    /**
+     * One-shot import of the tickets of the BinaryTicketDAO into the new table, Tickets.dat is left untouched.
+     * If the import fails the table is dropped again, so the next load tries again.
+     * @return true if the tickets are imported
+     */
+    private boolean importBinaryFile() throws SQLException, FileNotFoundException {
+        if (DEBUG) {
+            System.out.println("Importing Tickets.dat into table: " + TABLE);
+        }
+
+        // The BinaryTicketDAO looks up the owners itself
+        awaitPersons();
+        BinaryTicketDAO binaryTicketDAO = new BinaryTicketDAO();
+        if (!binaryTicketDAO.load()) {
+            System.err.println("Couldn't import Tickets.dat into table: " + TABLE);
+            Database.execute(connection, DROP_TABLE);
+            return false;
+        }
+
+        try (PreparedStatement insert = connection.prepareStatement(INSERT)) {
+            int batched = 0;
+            for (Ticket ticket : binaryTicketDAO.getAll()) {
+                setTicket(insert, ticket);
+                insert.addBatch();
+                // Committed per batch, a large transaction is slower and a failed import drops the table anyway
+                if (++batched % Database.BATCH_SIZE == 0) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+            }
+            insert.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            Database.rollback(connection);
+            Database.execute(connection, DROP_TABLE);
+            throw e;
+        }
+
+        if (DEBUG) {
+            System.out.printf("Import complete: %d tickets%n", binaryTicketDAO.getAll().size());
+        }
+        return true;
+    }
+
+    /**
+     * Tickets are read from the database on a lookup and added to the owner index, so lookups take the lock
+     * exclusively.
+     */
+    @Override
+    protected boolean decodesOnRead() {
+        return true;
+    }
+
+    /**
+     * Reads the tickets of the person that haven't been read yet with the index on the owner column, the tickets
+     * that changed since the last save are in the owner index of the TicketDAO already.
+     * @return the tickets of the person, in the order of their ID
+     */
+    @Override
+    protected List<Ticket> getAllForLocked(Person person) {
+        decodeAllFor(person);
+        List<Ticket> ticketsForPerson = super.getAllForLocked(person);
+        ticketsForPerson.sort(BY_ID);
+        return ticketsForPerson;
+    }
+
+    @Override
+    protected void removeAllForLocked(Person person) {
+        // The index of the TicketDAO only has the tickets that have been read
+        decodeAllFor(person);
+        super.removeAllForLocked(person);
+    }
+
+    /**
+     * Looks up the tickets with the indexes on the date columns, tickets that changed since the last save are
+     * included.
+     * @return the tickets of which the period from start to end date overlaps the period from one date to the other,
+     * in the order of their ID
+     */
+    public List<Ticket> getAllBetween(LocalDate from, LocalDate to) {
+        return read(() -> getAllBetweenLocked(from, to));
+    }
+
+    private List<Ticket> getAllBetweenLocked(LocalDate from, LocalDate to) {
+        List<Ticket> result = new ArrayList<>();
+        try (PreparedStatement select = connection.prepareStatement(SELECT_BETWEEN)) {
+            select.setObject(1, to, Types.DATE);
+            select.setObject(2, from, Types.DATE);
+            decodeAll(select, result);
+        } catch (SQLException e) {
+            System.err.println("Something went wrong while reading the database: " + e.getMessage());
+        }
+        // The dates may have been changed since the last save
+        Map<Long, ChangeTracker.Change<Ticket>> changedTickets = changes.getChanges();
+        result.removeIf(ticket -> changedTickets.containsKey(ticket.getId()) || !isBetween(ticket, from, to));
+
+        for (ChangeTracker.Change<Ticket> change : changedTickets.values()) {
+            if (change.type() != ChangeTracker.Type.DELETED && isBetween(change.record(), from, to)) {
+                result.add(change.record());
+            }
+        }
+        result.sort(BY_ID);
+        return result;
+    }
+
+    private static boolean isBetween(Ticket ticket, LocalDate from, LocalDate to) {
+        return !ticket.getStartDate().isAfter(to) && !ticket.getEndDate().isBefore(from);
+    }
+
+    private void decodeAllFor(Person person) {
+        try (PreparedStatement select = connection.prepareStatement(person == null ? SELECT_WITHOUT_OWNER :
+                SELECT_BY_OWNER)) {
+            if (person != null) {
+                select.setLong(1, person.getId());
+            }
+            decodeAll(select, null);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Something went wrong while reading the database: " + e.getMessage(), e);
+        }
+    }
+
+    private Ticket decode(int row) {
+        if (decoded[row] == null) {
+            // The next tickets in the list are read as well, the list usually requests them next
+            int lastRow = Math.min(row + Database.FETCH_SIZE, ids.length) - 1;
+            try (PreparedStatement select = connection.prepareStatement(SELECT_RANGE)) {
+                select.setLong(1, ids[row]);
+                select.setLong(2, ids[lastRow]);
+                decodeAll(select, null);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Something went wrong while reading the database: " +
+                        e.getMessage(), e);
+            }
+        }
+        return decoded[row];
+    }
+
+    /**
+     * Decodes the selected tickets that haven't been decoded yet and adds them to the owner index.
+     * @param result gets the selected tickets, decoded now or before, can be null
+     */
+    private void decodeAll(PreparedStatement select, List<Ticket> result) throws SQLException {
+        try (ResultSet resultSet = select.executeQuery()) {
+            while (resultSet.next()) {
+                long id = resultSet.getLong(1);
+                int row = Arrays.binarySearch(ids, id);
+                if (row < 0) {
+                    // Saved after the last load, the ticket is already in the list and the owner index
+                    Ticket ticket = savedAfterLoad.get(id);
+                    if (ticket != null && result != null) {
+                        result.add(ticket);
+                    }
+                    continue;
+                }
+                if (decoded[row] == null) {
+                    decoded[row] = readTicket(resultSet);
+                    index(decoded[row]);
+                }
+                if (result != null) {
+                    result.add(decoded[row]);
+                }
+            }
+        }
+    }
+
+    private Ticket readTicket(ResultSet resultSet) throws SQLException {
+        long owner = resultSet.getLong(2);
+        Ticket ticket = new Ticket(
+                resultSet.wasNull() ? null : getPersonDAO().getById(owner),
+                resultSet.getString(3),
+                resultSet.getObject(4, LocalDate.class),
+                resultSet.getObject(5, LocalDate.class),
+                resultSet.getDouble(6),
+                resultSet.getBoolean(7),
+                resultSet.getString(8)
+        );
+        ticket.setId(resultSet.getLong(1));
+        // These records don't go through addLoaded()
+        canonicalize(ticket);
+        return ticket;
+    }
+
+    private static void setTicket(PreparedStatement statement, Ticket ticket) throws SQLException {
+        statement.setLong(1, ticket.getId());
+        if (ticket.getBelongsTo() == null) {
+            statement.setNull(2, Types.BIGINT);
+        } else {
+            statement.setLong(2, ticket.getBelongsTo().getId());
+        }
+        statement.setString(3, ticket.getDestination());
+        statement.setObject(4, ticket.getStartDate(), Types.DATE);
+        statement.setObject(5, ticket.getEndDate(), Types.DATE);
+        statement.setDouble(6, ticket.getCost());
+        statement.setBoolean(7, ticket.isCheckedIn());
+        statement.setString(8, ticket.getDescription());
+    }
+}
@@ -14,48 +14,48 @@ import static nl.hva.oop.practicumopdracht.MainApplication.getDateTimeFormatter;
 
 public class DummyPersonDAO extends PersonDAO {
     @Override
-    public boolean load() {
+    protected boolean loadLocked() {
         // Clear the current list to avoid duplicates on reloading
-        persons.clear();
+        clearAll();
 
         // Name, Sex, Birthdate, Birthplace, Nationality, SSN, Document number
-        persons.add(new Person("Remzi Cavdar", "Man",
+        addLoaded(new Person("Remzi Cavdar", "Man",
                 LocalDate.parse("11-06-1993", getDateTimeFormatter()), "Amsterdam",
                 "Nederlandse", 987654, "HGJH3864"));
 
-        persons.add(new Person("Jeroen van der Heijden", "Man",
+        addLoaded(new Person("Jeroen van der Heijden", "Man",
                 LocalDate.parse("11-06-1993", getDateTimeFormatter()), "Hoofddorp",
                 "Nederlandse", 423555, "IJHVE23864"));
 
-        persons.add(new Person("Berkant de Jong", "Man",
+        addLoaded(new Person("Berkant de Jong", "Man",
                 LocalDate.parse("11-06-1993", getDateTimeFormatter()), "Hoofddorp",
                 "Nederlandse", 423555, "IJHVE23864"));
 
-        persons.add(new Person("Ali de Groot", "Man",
+        addLoaded(new Person("Ali de Groot", "Man",
                 LocalDate.parse("11-06-1993", getDateTimeFormatter()), "VerwegistanDorp",
                 "Verwegistan", 6575676, "VGHJEE23864"));
 
-        persons.add(new Person("Mohamed de Veteraan", "Man",
+        addLoaded(new Person("Mohamed de Veteraan", "Man",
                 LocalDate.parse("11-06-1993", getDateTimeFormatter()), "Volendam",
                 "Nederlandse", 9756589, "MHFDEE23864"));
 
-        persons.add(new Person("Abdulrahman Moon", "Man",
+        addLoaded(new Person("Abdulrahman Moon", "Man",
                 LocalDate.parse("11-06-1993", getDateTimeFormatter()), "VerwegistanDorp",
                 "British", 6744646, "CERGVTHBE23864"));
 
-        persons.add(new Person("Rhodri Barr", "Man",
+        addLoaded(new Person("Rhodri Barr", "Man",
                 LocalDate.parse("11-06-1993", getDateTimeFormatter()), "UK",
                 "British", 3456787, "THJE23864"));
 
-        persons.add(new Person("Aldoor van Hagen", "Man",
+        addLoaded(new Person("Aldoor van Hagen", "Man",
                 LocalDate.parse("11-06-1993", getDateTimeFormatter()), "UK",
                 "British", 3456787, "THJE23864"));
 
-        persons.add(new Person("Magna van Hoog", "Man",
+        addLoaded(new Person("Magna van Hoog", "Man",
                 LocalDate.parse("11-06-1993", getDateTimeFormatter()), "UK",
                 "British", 3456787, "THJE23864"));
 
-        persons.add(new Person("Siechske van der Domme", "Man",
+        addLoaded(new Person("Siechske van der Domme", "Man",
                 LocalDate.parse("11-06-1993", getDateTimeFormatter()), "UK",
                 "British", 3456787, "THJE23864"));
 
@@ -63,7 +63,7 @@ public class DummyPersonDAO extends PersonDAO {
     }
 
     @Override
-    public boolean save() {
+    protected boolean saveSnapshot(Snapshot<Person> snapshot) {
         return false;
     }
 }
\ No newline at end of file
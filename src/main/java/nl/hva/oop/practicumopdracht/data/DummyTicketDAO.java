@@ -15,52 +15,54 @@ import static nl.hva.oop.practicumopdracht.MainApplication.getPersonDAO;
 
 public class DummyTicketDAO extends TicketDAO {
     @Override
-    public boolean load() {
+    protected boolean loadLocked() {
         // Clear the current list to avoid duplicates on reloading
-        tickets.clear();
+        clearAll();
+        // The tickets belong to the loaded dummy persons
+        awaitPersons();
 
         // belongsTo, destination, startDate, endDate, cost, checkedIn, description
-        tickets.add(new Ticket(getPersonDAO().getById(0), "Ankara, Turkije",
+        addLoaded(new Ticket(getPersonDAO().getAll().get(0), "Ankara, Turkije",
                 LocalDate.parse("23-07-2022", getDateTimeFormatter()),
                 LocalDate.parse("23-07-2022", getDateTimeFormatter()), 446, true,
                 "Vlucht van Amsterdam naar Ankara. Vluchtcode TK 1234"));
 
-        tickets.add(new Ticket(getPersonDAO().getById(0), "İzmir, Turkije",
+        addLoaded(new Ticket(getPersonDAO().getAll().get(0), "İzmir, Turkije",
                 LocalDate.parse("23-07-2022", getDateTimeFormatter()),
                 LocalDate.parse("23-07-2022", getDateTimeFormatter()), 446, true,
                 "Vlucht van Amsterdam naar İzmir. Vluchtcode TK 6479"));
 
-        tickets.add(new Ticket(getPersonDAO().getById(0), "Amaroo, Australië",
+        addLoaded(new Ticket(getPersonDAO().getAll().get(0), "Amaroo, Australië",
                 LocalDate.parse("23-07-2022", getDateTimeFormatter()),
                 LocalDate.parse("23-07-2022", getDateTimeFormatter()), 446, true,
                 "Vlucht van Amsterdam naar Amaroo. Vluchtcode TK 8542"));
 
-        tickets.add(new Ticket(getPersonDAO().getById(1), "Tenerife, Spanje",
+        addLoaded(new Ticket(getPersonDAO().getAll().get(1), "Tenerife, Spanje",
                 LocalDate.parse("23-07-2022", getDateTimeFormatter()),
                 LocalDate.parse("23-07-2022", getDateTimeFormatter()), 446, true,
                 "Vlucht van Amsterdam naar Tenerife. Vluchtcode TK 6433"));
 
-        tickets.add(new Ticket(getPersonDAO().getById(2), "Madrid, Spanje",
+        addLoaded(new Ticket(getPersonDAO().getAll().get(2), "Madrid, Spanje",
                 LocalDate.parse("23-07-2022", getDateTimeFormatter()),
                 LocalDate.parse("23-07-2022", getDateTimeFormatter()), 446, true,
                 "Vlucht van Amsterdam naar Madrid. Vluchtcode TK 6354"));
 
-        tickets.add(new Ticket(getPersonDAO().getById(3), "Barcelona, Spanje",
+        addLoaded(new Ticket(getPersonDAO().getAll().get(3), "Barcelona, Spanje",
                 LocalDate.parse("23-07-2022", getDateTimeFormatter()),
                 LocalDate.parse("23-07-2022", getDateTimeFormatter()), 446, true,
                 "Vlucht van Amsterdam naar Barcelona. Vluchtcode TK 3524"));
 
-        tickets.add(new Ticket(getPersonDAO().getById(4), "Marrakesh, Marokko",
+        addLoaded(new Ticket(getPersonDAO().getAll().get(4), "Marrakesh, Marokko",
                 LocalDate.parse("23-07-2022", getDateTimeFormatter()),
                 LocalDate.parse("23-07-2022", getDateTimeFormatter()), 446, true,
                 "Vlucht van Amsterdam naar Marrakesh. Vluchtcode TK 4534"));
 
-        tickets.add(new Ticket(getPersonDAO().getById(5), "Rabat, Marokko",
+        addLoaded(new Ticket(getPersonDAO().getAll().get(5), "Rabat, Marokko",
                 LocalDate.parse("23-07-2022", getDateTimeFormatter()),
                 LocalDate.parse("23-07-2022", getDateTimeFormatter()), 446, true,
                 "Vlucht van Amsterdam naar Amaroo. Vluchtcode TK 1234"));
 
-        tickets.add(new Ticket(getPersonDAO().getById(6), "Istanboel, Turkije",
+        addLoaded(new Ticket(getPersonDAO().getAll().get(6), "Istanboel, Turkije",
                 LocalDate.parse("23-07-2022", getDateTimeFormatter()),
                 LocalDate.parse("23-07-2022", getDateTimeFormatter()), 446, true,
                 "Vlucht van Amsterdam naar Amaroo. Vluchtcode TK 1234"));
@@ -69,7 +71,7 @@ public class DummyTicketDAO extends TicketDAO {
     }
 
     @Override
-    public boolean save() {
+    protected boolean saveSnapshot(Snapshot<Ticket> snapshot) {
         return false;
     }
 }
\ No newline at end of file
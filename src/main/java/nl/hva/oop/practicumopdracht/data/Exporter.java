@@ -0,0 +1,377 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import nl.hva.oop.practicumopdracht.models.Person;
+import nl.hva.oop.practicumopdracht.models.Ticket;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import static java.nio.file.StandardOpenOption.*;
+import static nl.hva.oop.practicumopdracht.Main.DEBUG;
+
+/**
+ * Exporter
+ * Exports the persons joined with their tickets to CSV or JSON Lines for reporting, optionally compressed with gzip.
+ * Every ticket is a row with the columns of its owner, a person without tickets is one row without ticket columns and
+ * tickets without an owner are at the end without person columns.
+ * The rows are written one at a time through a buffer to a FileChannel and the persons are read with
+ * PersonDAO.forEach() instead of a copy of the list, so the export only needs memory for a batch of persons, the
+ * tickets of one person and the buffer. Dates are written as yyyy-MM-dd and costs with a decimal point, the way other
+ * tools read them. A cost that is NaN or infinite has no value, empty in CSV and null in JSON.
+ * export() measures the number of rows, the size of the file and the time it took.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+public class Exporter {
+    /**
+     * The formats of the export, with the file extension of the format.
+     */
+    public enum Format {
+        CSV(".csv"), JSON_LINES(".jsonl");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    public static final String GZIP_EXTENSION = ".gz";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // The CSV header and the names in the JSON objects
+    private static final String[] COLUMNS = {"person_id", "name", "sex", "birthdate", "birthplace", "nationality",
+            "ssn", "document_number", "ticket_id", "destination", "start_date", "end_date", "cost", "checked_in",
+            "description"};
+    private final PersonDAO personDAO;
+    private final TicketDAO ticketDAO;
+    private final File file;
+    private final Format format;
+    private final boolean gzip;
+    private long rowCount;
+    private long byteCount;
+    private long nanos;
+
+    /**
+     * @param file   is a File denoting the file to write, it is replaced if it exists
+     * @param format is a Format denoting the format of the rows
+     * @param gzip   is a boolean denoting whether the file is compressed with gzip
+     */
+    public Exporter(PersonDAO personDAO, TicketDAO ticketDAO, File file, Format format, boolean gzip) {
+        this.personDAO = personDAO;
+        this.ticketDAO = ticketDAO;
+        this.file = file;
+        this.format = format;
+        this.gzip = gzip;
+    }
+
+    /**
+     * Writes the export, the DAOs must not be changed in the meantime.
+     * @return true if the export is complete
+     */
+    public boolean export() {
+        if (DEBUG) {
+            System.out.printf("%nExporting data: %s (%s%s)%n", file.getAbsolutePath(), format,
+                    gzip ? ", gzip" : "");
+        }
+
+        rowCount = 0;
+        long start = System.nanoTime();
+        try (RowWriter writer = new RowWriter(openChannel())) {
+            if (format == Format.CSV) {
+                for (int i = 0; i < COLUMNS.length; i++) {
+                    writer.startField(i);
+                    writer.append(COLUMNS[i]);
+                }
+                writer.endRow();
+            }
+
+            try {
+                personDAO.forEach(person -> {
+                    try {
+                        writeRows(writer, person);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            for (Ticket ticket : ticketDAO.getAllFor(null)) {
+                writeRow(writer, null, ticket);
+            }
+        } catch (IOException e) {
+            System.err.println("An error occurred while exporting the data: " + e.getMessage());
+            return false;
+        }
+        nanos = System.nanoTime() - start;
+        byteCount = file.length();
+
+        if (DEBUG) {
+            System.out.println("Export complete: " + this);
+        }
+        return true;
+    }
+
+    private WritableByteChannel openChannel() throws IOException {
+        FileChannel fileChannel = FileChannel.open(file.toPath(), CREATE, WRITE, TRUNCATE_EXISTING);
+        if (!gzip) {
+            return fileChannel;
+        }
+        try {
+            return Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(fileChannel), BUFFER_SIZE));
+        } catch (IOException e) {
+            fileChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the rows of a person, one per ticket or one without ticket columns.
+     */
+    private void writeRows(RowWriter writer, Person person) throws IOException {
+        List<Ticket> tickets = ticketDAO.getAllFor(person);
+        if (tickets.isEmpty()) {
+            writeRow(writer, person, null);
+        }
+        for (Ticket ticket : tickets) {
+            writeRow(writer, person, ticket);
+        }
+    }
+
+    private void writeRow(RowWriter writer, Person person, Ticket ticket) throws IOException {
+        if (format == Format.JSON_LINES) {
+            writer.append('{');
+        }
+
+        int column = 0;
+        if (person != null) {
+            writer.field(column++, person.getId());
+            writer.field(column++, person.getName());
+            writer.field(column++, person.getSex());
+            writer.field(column++, person.getBirthdate());
+            writer.field(column++, person.getBirthplace());
+            writer.field(column++, person.getNationality());
+            writer.field(column++, person.getSSN());
+            writer.field(column++, person.getDocumentNumber());
+        } else {
+            column = writer.emptyFields(column, 8);
+        }
+
+        if (ticket != null) {
+            writer.field(column++, ticket.getId());
+            writer.field(column++, ticket.getDestination());
+            writer.field(column++, ticket.getStartDate());
+            writer.field(column++, ticket.getEndDate());
+            if (Double.isFinite(ticket.getCost())) {
+                writer.startField(column++);
+                writer.append(BigDecimal.valueOf(ticket.getCost()).toPlainString());
+            } else {
+                // BigDecimal has no NaN or Infinity and neither has JSON
+                column = writer.emptyFields(column, 1);
+            }
+            writer.startField(column++);
+            writer.append(String.valueOf(ticket.isCheckedIn()));
+            writer.field(column, ticket.getDescription());
+        } else {
+            writer.emptyFields(column, 7);
+        }
+
+        if (format == Format.JSON_LINES) {
+            writer.append('}');
+        }
+        writer.endRow();
+        rowCount++;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return the size of the written file in bytes, compressed if gzip is used
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    public Duration getDuration() {
+        return Duration.ofNanos(nanos);
+    }
+
+    public double getRowsPerSecond() {
+        return nanos == 0 ? 0 : rowCount * 1e9 / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows, %d bytes in %d ms (%.0f rows/s)", rowCount, byteCount, nanos / 1_000_000,
+                getRowsPerSecond());
+    }
+
+    /**
+     * Collects the fields of a row and writes the rows through a buffer to the channel, escapes the fields for the
+     * format of the export.
+     */
+    private final class RowWriter implements Closeable {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final StringBuilder row = new StringBuilder(256);
+
+        RowWriter(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Writes the separator and, for JSON Lines, the name of the column.
+         */
+        void startField(int column) {
+            if (column > 0) {
+                row.append(',');
+            }
+            if (format == Format.JSON_LINES) {
+                row.append('"').append(COLUMNS[column]).append("\":");
+            }
+        }
+
+        void append(String text) {
+            row.append(text);
+        }
+
+        void append(char c) {
+            row.append(c);
+        }
+
+        void field(int column, long value) {
+            startField(column);
+            row.append(value);
+        }
+
+        void field(int column, LocalDate date) {
+            field(column, date == null ? null : date.toString());
+        }
+
+        void field(int column, String value) {
+            startField(column);
+            if (format == Format.CSV) {
+                appendCsv(value);
+            } else {
+                appendJson(value);
+            }
+        }
+
+        /**
+         * Writes fields without a value, empty in CSV and null in JSON.
+         * @return the column after the empty fields
+         */
+        int emptyFields(int column, int count) {
+            for (int i = 0; i < count; i++) {
+                startField(column + i);
+                if (format == Format.JSON_LINES) {
+                    row.append("null");
+                }
+            }
+            return column + count;
+        }
+
+        // RFC 4180: a field with a separator, a quote or a line break is quoted and the quotes are doubled
+        private void appendCsv(String value) {
+            if (value == null) {
+                return;
+            }
+            boolean quoted = false;
+            for (int i = 0; i < value.length() && !quoted; i++) {
+                char c = value.charAt(i);
+                quoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quoted) {
+                row.append(value);
+                return;
+            }
+            row.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    row.append('"');
+                }
+                row.append(c);
+            }
+            row.append('"');
+        }
+
+        private void appendJson(String value) {
+            if (value == null) {
+                row.append("null");
+                return;
+            }
+            row.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"' -> row.append("\\\"");
+                    case '\\' -> row.append("\\\\");
+                    case '\n' -> row.append("\\n");
+                    case '\r' -> row.append("\\r");
+                    case '\t' -> row.append("\\t");
+                    default -> {
+                        if (c < ' ') {
+                            row.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            row.append(c);
+                        }
+                    }
+                }
+            }
+            row.append('"');
+        }
+
+        void endRow() throws IOException {
+            row.append('\n');
+            byte[] bytes = row.toString().getBytes(StandardCharsets.UTF_8);
+            row.setLength(0);
+
+            if (bytes.length > buffer.remaining()) {
+                flush();
+            }
+            if (bytes.length > buffer.capacity()) {
+                write(ByteBuffer.wrap(bytes));
+            } else {
+                buffer.put(bytes);
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            write(buffer);
+            buffer.clear();
+        }
+
+        private void write(ByteBuffer bytes) throws IOException {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
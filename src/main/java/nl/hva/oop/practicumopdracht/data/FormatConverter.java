@@ -0,0 +1,699 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import nl.hva.oop.practicumopdracht.models.Person;
+import nl.hva.oop.practicumopdracht.models.Ticket;
+import org.apache.commons.io.FileUtils;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import static nl.hva.oop.practicumopdracht.Main.DEBUG;
+
+/**
+ * FormatConverter
+ * Converts the files of the text, binary and object DAO classes into each other, for example Persons.txt into
+ * Persons.dat. The records are read and written one at a time, so a conversion doesn't need the whole dataset in
+ * memory and doesn't need the DAO classes.
+ * The object files start with the number of records, so the source is read twice for this format: once to count the
+ * records and once to convert them. The binary files are written in blocks (see BlockFile), a block is written when it
+ * is full.
+ * The owner of a ticket is only converted as the ID of the person, the persons don't have to be loaded. Files saved
+ * before persons had an ID are converted too: the persons get an ID by their position in the file, and the owners of
+ * these tickets (the position of the person) are translated to an ID with one pass over the persons file.
+ * The target is written to a temporary file that replaces the target when the conversion is complete, so a failed
+ * conversion leaves the target untouched.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+public final class FormatConverter {
+    /**
+     * The file formats of the DAO classes, persons have no OBJECT format.
+     */
+    public enum Format {
+        TEXT, BINARY, OBJECT
+    }
+
+    // First bytes of a file of an ObjectOutputStream
+    private static final short OBJECT_STREAM_MAGIC = (short) 0xACED;
+    // Number of bytes that are checked by detect()
+    private static final int PROBE_SIZE = 512;
+    // Smallest person in a persons file of version 1: six empty Strings of writeUTF() and the SSN
+    private static final int MIN_LEGACY_PERSON_SIZE = 6 * Short.BYTES + Integer.BYTES;
+
+    private FormatConverter() {
+    }
+
+    /**
+     * Reads the records of a file one at a time.
+     */
+    private interface RecordReader<T> extends Closeable {
+        /**
+         * @return the next record or null at the end of the file
+         */
+        T read() throws IOException;
+    }
+
+    /**
+     * Writes records one at a time.
+     */
+    private interface RecordWriter<T> extends Closeable {
+        void write(T record) throws IOException;
+    }
+
+    /**
+     * Reads and writes the records of one model. count() is called for every record before the writer is opened.
+     */
+    private abstract static class Records<T> {
+        private final String name;
+        int count;
+
+        Records(String name) {
+            this.name = name;
+        }
+
+        abstract RecordReader<T> openReader(InputStream inputStream, Format format) throws IOException;
+
+        /**
+         * @return true if the writer needs the number of records
+         */
+        boolean needsCount(Format format) {
+            return format == Format.OBJECT;
+        }
+
+        void count(T record) {
+            count++;
+        }
+
+        abstract RecordWriter<T> openWriter(OutputStream outputStream, Format format) throws IOException;
+    }
+
+    /**
+     * Recognizes the format of a file by its first bytes.
+     * @return the format of the file or null if the file doesn't exist, is empty or has an unknown format
+     */
+    public static Format detect(File file) {
+        if (!file.isFile() || file.length() == 0) {
+            return null;
+        }
+
+        byte[] probe;
+        try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+            probe = inputStream.readNBytes(PROBE_SIZE);
+        } catch (IOException e) {
+            return null;
+        }
+
+        if (probe.length >= Short.BYTES && (short) ((probe[0] & 0xFF) << 8 | probe[1] & 0xFF) == OBJECT_STREAM_MAGIC) {
+            return Format.OBJECT;
+        }
+        if (probe.length >= Integer.BYTES) {
+            int magic = (probe[0] & 0xFF) << 24 | (probe[1] & 0xFF) << 16 | (probe[2] & 0xFF) << 8 | probe[3] & 0xFF;
+            if (magic == BinaryPersonDAO.MAGIC || magic == BinaryTicketDAO.MAGIC) {
+                return Format.BINARY;
+            }
+        }
+        // The text files contain no control characters other than line breaks and tabs
+        for (byte b : probe) {
+            if (b >= 0 && b < ' ' && b != '\n' && b != '\r' && b != '\t' || b == 0x7F) {
+                return isLegacyPersons(probe, file.length()) ? Format.BINARY : null;
+            }
+        }
+        return Format.TEXT;
+    }
+
+    /**
+     * Persons.dat version 1 has no header, it starts with the number of persons followed by the name of the first
+     * person in the layout of writeUTF(): the length (unsigned short) and modified UTF-8 without zero bytes.
+     */
+    private static boolean isLegacyPersons(byte[] probe, long length) {
+        if (probe.length < Integer.BYTES) {
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(probe);
+        int count = buffer.getInt(0);
+        if (count == 0) {
+            return length == Integer.BYTES;
+        }
+        if (count < 0 || (long) count * MIN_LEGACY_PERSON_SIZE > length - Integer.BYTES
+                || probe.length < Integer.BYTES + Short.BYTES) {
+            return false;
+        }
+        int nameEnd = Integer.BYTES + Short.BYTES + Short.toUnsignedInt(buffer.getShort(Integer.BYTES));
+        for (int i = Integer.BYTES + Short.BYTES; i < Math.min(nameEnd, probe.length); i++) {
+            if (probe[i] == 0) {
+                return false;
+            }
+        }
+        return nameEnd <= length;
+    }
+
+    /**
+     * Converts a persons file, for example Persons.txt into the format of Persons.dat.
+     * @param source is a File denoting the persons file that is converted, its format is detected
+     * @param target is a File denoting the file that is written, it is replaced if it exists
+     * @param format is a Format denoting the format of the target, TEXT or BINARY
+     * @return true if the conversion succeeded
+     */
+    public static boolean convertPersons(File source, File target, Format format) {
+        if (format == Format.OBJECT) {
+            System.err.println("Persons can't be converted to objects");
+            return false;
+        }
+        return convert(source, target, format, new PersonRecords());
+    }
+
+    /**
+     * Converts a tickets file, for example Tickets.obj into the format of Tickets.dat. The owners of a file saved
+     * before persons had an ID are looked up in Persons.txt next to a text file or Persons.dat next to the other
+     * formats.
+     * @param source is a File denoting the tickets file that is converted, its format is detected
+     * @param target is a File denoting the file that is written, it is replaced if it exists
+     * @param format is a Format denoting the format of the target
+     * @return true if the conversion succeeded
+     */
+    public static boolean convertTickets(File source, File target, Format format) {
+        return convertTickets(source, target, format, null);
+    }
+
+    /**
+     * Converts a tickets file like convertTickets(source, target, format) with the persons file of the owners.
+     * @param persons is a File denoting the persons file the owners of an old tickets file refer to, null for the
+     *                persons file next to the source
+     */
+    public static boolean convertTickets(File source, File target, Format format, File persons) {
+        if (persons == null) {
+            String name = detect(source) == Format.TEXT ? TextPersonDAO.FILE_NAME : BinaryPersonDAO.FILE_NAME;
+            persons = new File(source.getAbsoluteFile().getParentFile(), name);
+        }
+        return convert(source, target, format, new TicketRecords(persons));
+    }
+
+    private static <T> boolean convert(File source, File target, Format format, Records<T> records) {
+        if (!source.isFile()) {
+            System.err.println("File not found! - " + source.getName());
+            return false;
+        }
+        // An empty file is an empty dataset in every format
+        Format sourceFormat = source.length() == 0 ? Format.TEXT : detect(source);
+        if (sourceFormat == null) {
+            System.err.println("Unknown file format: " + source.getName());
+            return false;
+        }
+
+        if (DEBUG) {
+            System.out.printf("Converting %s (%s) to %s (%s)%n", source.getName(), sourceFormat, target.getName(),
+                    format);
+        }
+
+        File tempFile = new File(target.getAbsoluteFile().getParentFile(), target.getName() + ".tmp");
+        try {
+            if (records.needsCount(format)) {
+                try (RecordReader<T> reader = records.openReader(openInputStream(source), sourceFormat)) {
+                    for (T record = reader.read(); record != null; record = reader.read()) {
+                        records.count(record);
+                    }
+                }
+            }
+
+            int converted = 0;
+            try (
+                    RecordReader<T> reader = records.openReader(openInputStream(source), sourceFormat);
+                    RecordWriter<T> writer = records.openWriter(FileUtils.openOutputStream(tempFile), format)
+            ) {
+                for (T record = reader.read(); record != null; record = reader.read()) {
+                    writer.write(record);
+                    converted++;
+                }
+            }
+            if (records.needsCount(format) && converted != records.count) {
+                throw new IOException(source.getName() + " changed during the conversion");
+            }
+
+            Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+
+            if (DEBUG) {
+                System.out.printf("Conversion complete: %d %s%n", converted, records.name);
+            }
+            return true;
+        } catch (IOException | ClassCastException e) {
+            System.err.println("An error occurred while converting the file: " + e.getMessage());
+            FileUtils.deleteQuietly(tempFile);
+        }
+
+        return false;
+    }
+
+    private static InputStream openInputStream(File file) throws IOException {
+        return new BufferedInputStream(FileUtils.openInputStream(file));
+    }
+
+    /**
+     * Stands in for the owner of a ticket, only the ID of the owner is written.
+     */
+    private static Person owner(long id) {
+        Person person = new Person(null, null, null, null, null, 0, null);
+        person.setId(id);
+        return person;
+    }
+
+    /**
+     * Reads the IDs of the persons in file order, the persons of an old file get the IDs that convertPersons() gives
+     * them.
+     */
+    private static long[] readPersonIds(File persons) throws IOException {
+        if (!persons.isFile()) {
+            throw new IOException("The owners are positions in " + persons.getName() + ", which is not found");
+        }
+        Format format = persons.length() == 0 ? Format.TEXT : detect(persons);
+        if (format == null) {
+            throw new IOException("Unknown file format: " + persons.getName());
+        }
+
+        long[] ids = new long[1024];
+        int count = 0;
+        try (RecordReader<Person> reader = new PersonRecords().openReader(openInputStream(persons), format)) {
+            for (Person person = reader.read(); person != null; person = reader.read()) {
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, count * 2);
+                }
+                ids[count++] = person.getId();
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    private static final class PersonRecords extends Records<Person> {
+        PersonRecords() {
+            super("persons");
+        }
+
+        /**
+         * Reads the persons, the persons of a file saved before persons had an ID get their position in the file
+         * (starting at 1) as ID.
+         */
+        @Override
+        RecordReader<Person> openReader(InputStream inputStream, Format format) throws IOException {
+            RecordReader<Person> reader = openFileReader(inputStream, format);
+            return new RecordReader<>() {
+                private int position;
+                private Boolean withoutIds;
+
+                @Override
+                public Person read() throws IOException {
+                    Person person = reader.read();
+                    if (person == null) {
+                        return null;
+                    }
+                    position++;
+                    // A file has IDs for all persons or for none, otherwise the IDs could be the same
+                    if (withoutIds != null && withoutIds != (person.getId() == 0)) {
+                        throw new IOException("Rows with and without an ID can only be loaded by the PersonDAO");
+                    }
+                    withoutIds = person.getId() == 0;
+                    if (withoutIds) {
+                        person.setId(position);
+                    }
+                    return person;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    reader.close();
+                }
+            };
+        }
+
+        private RecordReader<Person> openFileReader(InputStream inputStream, Format format) throws IOException {
+            return switch (format) {
+                case TEXT -> new TextReader<>(inputStream) {
+                    private final RowDecoder decoder = new RowDecoder(TextPersonDAO.SEPARATOR);
+
+                    @Override
+                    Person parse(String line) {
+                        return TextPersonDAO.parsePerson(decoder, line, 0, line.length());
+                    }
+                };
+                // Version 1 files have no header, they start with the number of persons
+                case BINARY -> new BinaryReader<>(inputStream, BinaryPersonDAO.MAGIC, BinaryPersonDAO.VERSION, true) {
+                    private int fileVersion;
+                    private BinaryPersonDAO.Dictionaries fileDictionaries;
+
+                    @Override
+                    void readDictionaries(DataInput input, int version) throws IOException {
+                        fileVersion = version;
+                        // Version 2 and 3 have no dictionaries
+                        if (version >= 4) {
+                            fileDictionaries = BinaryPersonDAO.Dictionaries.read(input);
+                        }
+                    }
+
+                    @Override
+                    Person readRecord(DataInput input) throws IOException {
+                        return fileVersion >= 4 ? BinaryPersonDAO.readPerson(input, fileDictionaries) :
+                                BinaryPersonDAO.readPerson(input, fileVersion);
+                    }
+
+                    @Override
+                    List<Person> readBlock(DataInput input, int count) throws IOException {
+                        return BinaryPersonDAO.readBlock(input, count);
+                    }
+                };
+                case OBJECT -> throw new IOException("Persons aren't saved as objects");
+            };
+        }
+
+        @Override
+        RecordWriter<Person> openWriter(OutputStream outputStream, Format format) throws IOException {
+            if (format == Format.TEXT) {
+                RowEncoder encoder = new RowEncoder(outputStream, TextPersonDAO.SEPARATOR);
+                return new RecordWriter<>() {
+                    @Override
+                    public void write(Person person) throws IOException {
+                        TextPersonDAO.writePerson(encoder, person);
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        encoder.close();
+                    }
+                };
+            }
+
+            BlockFile.Writer<Person> writer = new BlockFile.Writer<>(outputStream, BinaryPersonDAO.MAGIC,
+                    BinaryPersonDAO.VERSION, BinaryPersonDAO::writeBlock);
+            return new RecordWriter<>() {
+                @Override
+                public void write(Person person) throws IOException {
+                    writer.write(person);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    writer.close();
+                }
+            };
+        }
+    }
+
+    private static final class TicketRecords extends Records<Ticket> {
+        private final File persons;
+        // The IDs of the persons by their position in the persons file, read when the first old owner is converted
+        private long[] legacyOwners;
+
+        TicketRecords(File persons) {
+            super("tickets");
+            this.persons = persons;
+        }
+
+        /**
+         * Stands in for the owner of a ticket saved before persons had an ID.
+         * @param position is an int denoting the position of the owner in the persons file
+         * @return the owner or null if the position is not in the persons file
+         */
+        Person legacyOwner(int position) throws IOException {
+            if (legacyOwners == null) {
+                legacyOwners = readPersonIds(persons);
+            }
+            if (position < 0 || position >= legacyOwners.length) {
+                System.err.println("ID is not in the list");
+                return null;
+            }
+            return owner(legacyOwners[position]);
+        }
+
+        @Override
+        RecordReader<Ticket> openReader(InputStream inputStream, Format format) throws IOException {
+            return switch (format) {
+                case TEXT -> new TextReader<>(inputStream) {
+                    private final RowDecoder decoder = new RowDecoder(TextTicketDAO.SEPARATOR);
+
+                    @Override
+                    Ticket parse(String line) throws IOException {
+                        TextTicketDAO.ParsedTicket parsedTicket = TextTicketDAO.parseTicket(decoder, line, 0,
+                                line.length());
+                        if (parsedTicket == null) {
+                            return null;
+                        }
+                        Ticket ticket = parsedTicket.ticket();
+                        // The owner of the rows without an ID is the position of the person in the persons file
+                        if (parsedTicket.legacyIndex()) {
+                            ticket.setBelongsTo(legacyOwner((int) parsedTicket.belongsTo()));
+                        } else {
+                            ticket.setBelongsTo(parsedTicket.belongsTo() == 0 ? null :
+                                    owner(parsedTicket.belongsTo()));
+                        }
+                        return ticket;
+                    }
+                };
+                case BINARY -> new BinaryReader<>(inputStream, BinaryTicketDAO.MAGIC, BinaryTicketDAO.VERSION, false) {
+                    private StringDictionary fileDestinations;
+
+                    @Override
+                    void readDictionaries(DataInput input, int version) throws IOException {
+                        // Version 1 files have no dictionary
+                        fileDestinations = version >= 2 ? StringDictionary.read(input) : null;
+                    }
+
+                    @Override
+                    Ticket readRecord(DataInput input) throws IOException {
+                        return BinaryTicketDAO.readTicket(input, fileDestinations, FormatConverter::owner);
+                    }
+
+                    @Override
+                    List<Ticket> readBlock(DataInput input, int count) throws IOException {
+                        return BinaryTicketDAO.readBlock(input, count, FormatConverter::owner);
+                    }
+                };
+                case OBJECT -> new ObjectReader(inputStream, this);
+            };
+        }
+
+        @Override
+        RecordWriter<Ticket> openWriter(OutputStream outputStream, Format format) throws IOException {
+            switch (format) {
+                case TEXT -> {
+                    RowEncoder encoder = new RowEncoder(outputStream, TextTicketDAO.SEPARATOR);
+                    return new RecordWriter<>() {
+                        @Override
+                        public void write(Ticket ticket) throws IOException {
+                            TextTicketDAO.writeTicket(encoder, ticket);
+                        }
+
+                        @Override
+                        public void close() throws IOException {
+                            encoder.close();
+                        }
+                    };
+                }
+                case BINARY -> {
+                    BlockFile.Writer<Ticket> writer = new BlockFile.Writer<>(outputStream, BinaryTicketDAO.MAGIC,
+                            BinaryTicketDAO.VERSION, BinaryTicketDAO::writeBlock);
+                    return new RecordWriter<>() {
+                        @Override
+                        public void write(Ticket ticket) throws IOException {
+                            writer.write(ticket);
+                        }
+
+                        @Override
+                        public void close() throws IOException {
+                            writer.close();
+                        }
+                    };
+                }
+                default -> {
+                    ObjectOutputStream objectOutputStream = new ObjectOutputStream(
+                            new BufferedOutputStream(outputStream));
+                    objectOutputStream.writeInt(ObjectTicketDAO.MAGIC);
+                    objectOutputStream.writeInt(ObjectTicketDAO.VERSION);
+                    objectOutputStream.writeInt(count);
+                    return new RecordWriter<>() {
+                        private int written;
+
+                        @Override
+                        public void write(Ticket ticket) throws IOException {
+                            ObjectTicketDAO.writeTicket(objectOutputStream, ticket);
+                            if (++written % ObjectTicketDAO.RESET_INTERVAL == 0) {
+                                objectOutputStream.reset();
+                            }
+                        }
+
+                        @Override
+                        public void close() throws IOException {
+                            objectOutputStream.close();
+                        }
+                    };
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the rows of a text file line by line, rows that can't be parsed are skipped like the text DAO classes do.
+     */
+    private abstract static class TextReader<T> implements RecordReader<T> {
+        private final BufferedReader reader;
+
+        TextReader(InputStream inputStream) {
+            reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        }
+
+        /**
+         * @return the record or null if the row is invalid
+         */
+        abstract T parse(String line) throws IOException;
+
+        @Override
+        public T read() throws IOException {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                T record = parse(line);
+                if (record != null) {
+                    return record;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads a file with MAGIC and the version. The current version is read block by block (see BlockFile), a damaged
+     * block stops the conversion. Older versions have the number of records and dictionaries, followed by the records.
+     * A file of version 1 may have no header, it starts with the number of records.
+     */
+    private abstract static class BinaryReader<T> implements RecordReader<T> {
+        private final DataInputStream input;
+        private final int magic;
+        private final int maxVersion;
+        private final boolean headerless;
+        private int remaining = -1;
+        private BlockFile.Reader blocks;
+        private Iterator<T> block = Collections.emptyIterator();
+
+        /**
+         * @param headerless is a boolean denoting if a file of version 1 starts with the number of records
+         */
+        BinaryReader(InputStream inputStream, int magic, int maxVersion, boolean headerless) {
+            input = new DataInputStream(inputStream);
+            this.magic = magic;
+            this.maxVersion = maxVersion;
+            this.headerless = headerless;
+        }
+
+        abstract void readDictionaries(DataInput input, int version) throws IOException;
+
+        abstract T readRecord(DataInput input) throws IOException;
+
+        abstract List<T> readBlock(DataInput input, int count) throws IOException;
+
+        @Override
+        public T read() throws IOException {
+            // The header is read by the first read(), so the subclass is initialized
+            if (remaining < 0 && blocks == null) {
+                int header = input.readInt();
+                if (header != magic) {
+                    if (!headerless || header < 0) {
+                        throw new IOException("The file doesn't contain the expected records");
+                    }
+                    remaining = header;
+                    readDictionaries(input, 1);
+                    return read();
+                }
+                int version = input.readInt();
+                if (version > maxVersion) {
+                    throw new IOException("Unsupported file version " + version);
+                }
+                if (version == maxVersion) {
+                    blocks = new BlockFile.Reader(input);
+                } else {
+                    remaining = input.readInt();
+                    readDictionaries(input, version);
+                }
+            }
+            if (blocks != null) {
+                while (!block.hasNext()) {
+                    DataInput data = blocks.next();
+                    if (data == null) {
+                        return null;
+                    }
+                    block = readBlock(data, blocks.getRecordCount()).iterator();
+                }
+                return block.next();
+            }
+            if (remaining == 0) {
+                return null;
+            }
+            remaining--;
+            return readRecord(input);
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+
+    /**
+     * Reads the tickets of Tickets.obj. The ObjectTicketDAO and this class reset the stream every RESET_INTERVAL
+     * tickets, so the ObjectInputStream only keeps the tickets since the last reset. Files saved before the resets
+     * were added are kept in memory until the end.
+     */
+    private static final class ObjectReader implements RecordReader<Ticket> {
+        private final ObjectInputStream input;
+        private final TicketRecords records;
+        private final int version;
+        private final int count;
+        private int read;
+
+        ObjectReader(InputStream inputStream, TicketRecords records) throws IOException {
+            input = new ObjectInputStream(inputStream);
+            this.records = records;
+            // Version 1 files start with the number of tickets and refer to the position of the owner
+            int header = input.readInt();
+            if (header != ObjectTicketDAO.MAGIC) {
+                version = 1;
+                count = header;
+                return;
+            }
+            version = input.readInt();
+            if (version > ObjectTicketDAO.VERSION) {
+                throw new IOException("Unsupported file version " + version);
+            }
+            count = input.readInt();
+        }
+
+        @Override
+        public Ticket read() throws IOException {
+            if (read == count) {
+                return null;
+            }
+            read++;
+            long belongsTo = version >= 2 ? input.readLong() : input.readInt();
+            try {
+                Ticket ticket = (Ticket) input.readObject();
+                if (version >= 2) {
+                    ticket.setBelongsTo(belongsTo == 0 ? null : owner(belongsTo));
+                } else {
+                    ticket.setBelongsTo(records.legacyOwner((int) belongsTo));
+                }
+                return ticket;
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Class not found while deserializing the object", e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+}
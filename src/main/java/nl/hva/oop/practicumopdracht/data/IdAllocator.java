@@ -0,0 +1,126 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import org.apache.commons.io.FileUtils;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import static nl.hva.oop.practicumopdracht.Main.DEBUG;
+import static nl.hva.oop.practicumopdracht.Main.getAppDataDirectory;
+
+/**
+ * IdAllocator
+ * Hands out stable IDs for a model (Person or Ticket). The last handed out ID is stored in a properties file in the
+ * app data directory, so an ID is never handed out twice, not even after a restart or after deleting the newest record.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+public class IdAllocator {
+    private static final String DIRECTORY_NAME = getAppDataDirectory();
+    private static final String FILE_NAME = "ids.properties";
+    private static final File DIRECTORY = FileUtils.getFile(DIRECTORY_NAME);
+    private static final File FILE = FileUtils.getFile(DIRECTORY, FILE_NAME);
+    // Both allocators share the same file
+    private static final Object FILE_LOCK = new Object();
+    private final String name;
+    private long lastId;
+    private boolean loaded;
+
+    /**
+     * @param name is a String denoting the key under which the last ID is stored, for example "person"
+     */
+    public IdAllocator(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return a new ID, IDs start at 1 so 0 can be used as "no ID yet"
+     */
+    public synchronized long next() {
+        loadIfNeeded();
+        return ++lastId;
+    }
+
+    /**
+     * Makes sure an ID that was read from a file will never be handed out again.
+     * @param id is a long denoting an ID that is already in use
+     */
+    public synchronized void observe(long id) {
+        loadIfNeeded();
+        if (id > lastId) {
+            lastId = id;
+        }
+    }
+
+    /**
+     * Stores the last handed out ID, should be called after the data of the DAO has been saved. The file is written in
+     * the SaveTransaction of this thread, so it is published together with the data files. Outside a save, for example
+     * after a load that converted a file, the file is published by a transaction of its own.
+     * @return true if the ID is stored successfully
+     */
+    public synchronized boolean save() {
+        loadIfNeeded();
+
+        synchronized (FILE_LOCK) {
+            try (SaveTransaction transaction = SaveTransaction.begin()) {
+                Properties properties = readProperties();
+                properties.setProperty(name, String.valueOf(lastId));
+
+                try (
+                        OutputStream outputStream = SaveTransaction.openOutputStream(FILE);
+                        OutputStreamWriter outputStreamWriter = new OutputStreamWriter(outputStream,
+                                StandardCharsets.UTF_8)
+                ) {
+                    properties.store(outputStreamWriter, "Last handed out IDs");
+                }
+                return transaction.commit();
+            } catch (IOException e) {
+                System.err.println("An error occurred while saving the IDs: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    private void loadIfNeeded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+
+        synchronized (FILE_LOCK) {
+            String value = readProperties().getProperty(name);
+            if (value == null) {
+                return;
+            }
+
+            try {
+                lastId = Math.max(lastId, Long.parseLong(value));
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid last ID for " + name + ": " + value);
+            }
+        }
+    }
+
+    /**
+     * Reads the file as it is written in the SaveTransaction of this thread, the IDs of the other allocator may have
+     * been saved in the same transaction.
+     */
+    private static Properties readProperties() {
+        Properties properties = new Properties();
+        File file = SaveTransaction.getWrittenFile(FILE);
+        if (!file.exists()) {
+            return properties;
+        }
+
+        try (
+                InputStream inputStream = FileUtils.openInputStream(file);
+                InputStreamReader inputStreamReader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)
+        ) {
+            properties.load(inputStreamReader);
+        } catch (IOException e) {
+            if (DEBUG) {
+                System.err.println("Couldn't read " + FILE_NAME + ": " + e.getMessage());
+            }
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,394 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import org.apache.commons.io.FileUtils;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static java.nio.file.StandardOpenOption.*;
+import static nl.hva.oop.practicumopdracht.Main.DEBUG;
+
+/**
+ * Journal
+ * Append-only write-ahead log with a snapshot, used by the JournalPersonDAO and JournalTicketDAO.
+ * The changes of a save are appended to the log as small records, so a save costs the number of changes instead of
+ * the number of records.
+ * Opening the journal replays the snapshot and the log. Once the log passes COMPACT_THRESHOLD it is set aside and a
+ * background thread folds it into a new snapshot, new changes go to a fresh log in the meantime.
+ * <p>
+ * A record is the output of the binary codec of the model and must start with the ID (long) of the model.
+ * <pre>
+ * snapshot:   MAGIC, VERSION, number of records and per record the length (varint) and the record
+ * log:        MAGIC, VERSION and per change PUT, length (varint) and record or DELETE and ID (long)
+ * </pre>
+ * Replaying a log twice gives the same result, so a crash during compaction never loses or duplicates a change.
+ * A log that ends with an incomplete change (crash while appending) is truncated to the last complete change.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+final class Journal {
+    private static final int VERSION = 1;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final int HEADER_SIZE = 8;
+    private static final long COMPACT_THRESHOLD = 512 * 1024;
+    // One thread for the compaction of all journals, it doesn't keep the application running
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Journal compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final String name;
+    private final int magic;
+    private final File snapshotFile;
+    private final File logFile;
+    // The log that is being folded into the snapshot
+    private final File compactingFile;
+    private final File tempFile;
+    private FileChannel log;
+    private long logSize;
+    private Future<?> compaction;
+    // First error while appending, reported by sync() so save() can return false
+    private IOException failure;
+
+    /**
+     * @param directory is a File denoting the directory of the journal files
+     * @param name      is a String denoting the name of the files, for example "Persons"
+     * @param magic     is an int denoting the first bytes of the files
+     */
+    Journal(File directory, String name, int magic) {
+        this.name = name;
+        this.magic = magic;
+        snapshotFile = FileUtils.getFile(directory, name + ".snapshot");
+        logFile = FileUtils.getFile(directory, name + ".log");
+        compactingFile = FileUtils.getFile(directory, name + ".log.compacting");
+        tempFile = FileUtils.getFile(directory, name + ".snapshot.tmp");
+    }
+
+    /**
+     * @return true if there is a snapshot or a log, false if the journal has never been used
+     */
+    boolean exists() {
+        return snapshotFile.exists() || logFile.exists() || compactingFile.exists();
+    }
+
+    /**
+     * @return the time of the last change of the snapshot or the log, 0 if there is no journal or a file doesn't start
+     * with the magic number of this journal
+     */
+    long lastModified() {
+        long lastModified = 0;
+        for (File file : new File[]{snapshotFile, logFile}) {
+            if (file.exists()) {
+                if (!Storage.startsWith(file, magic)) {
+                    return 0;
+                }
+                lastModified = Math.max(lastModified, file.lastModified());
+            }
+        }
+        return lastModified;
+    }
+
+    /**
+     * Creates the journal with these records as its snapshot, for the import of another storage. The snapshot is
+     * written to a temporary file and renamed into place, so the journal only exists once all records are written.
+     * @param records are byte arrays denoting the encoded models, starting with the ID
+     */
+    synchronized void create(Collection<byte[]> records) throws IOException {
+        if (exists()) {
+            throw new IOException("Journal already exists: " + name);
+        }
+        try {
+            writeSnapshot(records);
+        } finally {
+            FileUtils.deleteQuietly(tempFile);
+        }
+    }
+
+    /**
+     * Replays the snapshot and the logs and opens the log for appending.
+     * @return the records in the order they were first added
+     */
+    synchronized List<byte[]> open() throws IOException {
+        close();
+        awaitCompaction();
+        failure = null;
+
+        Map<Long, byte[]> records = new LinkedHashMap<>();
+        readSnapshot(snapshotFile, records);
+        if (compactingFile.exists()) {
+            replayLog(compactingFile, records);
+        }
+        long validSize = logFile.exists() ? replayLog(logFile, records) : 0;
+
+        log = FileChannel.open(logFile.toPath(), CREATE, WRITE);
+        if (validSize < HEADER_SIZE) {
+            log.truncate(0);
+            writeHeader(log);
+            validSize = HEADER_SIZE;
+        } else if (validSize < log.size()) {
+            System.err.printf("Incomplete change at the end of %s is ignored%n", logFile.getName());
+            log.truncate(validSize);
+        }
+        log.position(validSize);
+        logSize = validSize;
+
+        // A compaction that didn't finish last time
+        if (compactingFile.exists()) {
+            startCompaction();
+        }
+        return new ArrayList<>(records.values());
+    }
+
+    /**
+     * Appends an added or updated record.
+     * @param record is a byte array denoting the encoded model, starting with the ID
+     */
+    synchronized void put(byte[] record) {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(record.length + 6);
+        try (DataOutputStream dataOutputStream = new DataOutputStream(byteArrayOutputStream)) {
+            dataOutputStream.writeByte(PUT);
+            BinaryFormat.writeVarInt(dataOutputStream, record.length);
+            dataOutputStream.write(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        append(byteArrayOutputStream.toByteArray());
+    }
+
+    /**
+     * Appends a removed record.
+     * @param id is a long denoting the ID of the removed model
+     */
+    synchronized void delete(long id) {
+        ByteBuffer buffer = ByteBuffer.allocate(9);
+        buffer.put(DELETE).putLong(id);
+        append(buffer.array());
+    }
+
+    private void append(byte[] change) {
+        if (log == null) {
+            failure = new IOException("Journal is not opened: " + name);
+            return;
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(change);
+            while (buffer.hasRemaining()) {
+                log.write(buffer);
+            }
+            logSize += change.length;
+            if (logSize > COMPACT_THRESHOLD && (compaction == null || compaction.isDone())) {
+                rotate();
+            }
+        } catch (IOException e) {
+            System.err.println("An error occurred while writing to the journal: " + e.getMessage());
+            if (failure == null) {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * Forces the appended changes to disk.
+     * @throws IOException if a change couldn't be appended since the journal was opened or the log can't be forced
+     */
+    synchronized void sync() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        if (log != null) {
+            log.force(false);
+        }
+    }
+
+    /**
+     * Closes the log, a running compaction continues in the background.
+     */
+    synchronized void close() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+        }
+    }
+
+    /**
+     * Sets the current log aside for compaction and starts a new log. If the previous compaction failed, the log that
+     * was set aside then is compacted first.
+     */
+    private void rotate() throws IOException {
+        if (!compactingFile.exists()) {
+            log.force(false);
+            log.close();
+            try {
+                Files.move(logFile.toPath(), compactingFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                // A new log if the move succeeded, otherwise continue with the current log
+                log = FileChannel.open(logFile.toPath(), CREATE, WRITE);
+                if (log.size() == 0) {
+                    writeHeader(log);
+                }
+                logSize = log.size();
+                log.position(logSize);
+            }
+        }
+        startCompaction();
+    }
+
+    private void startCompaction() {
+        compaction = COMPACTOR.submit(() -> {
+            try {
+                compact();
+            } catch (IOException e) {
+                System.err.println("An error occurred while compacting the journal: " + e.getMessage());
+                FileUtils.deleteQuietly(tempFile);
+            }
+        });
+    }
+
+    /**
+     * Folds the log that is set aside into a new snapshot. Only the snapshot and the log that is set aside are used,
+     * so the current log can be appended to in the meantime.
+     */
+    private void compact() throws IOException {
+        if (DEBUG) {
+            System.out.println("Compacting journal: " + name);
+        }
+
+        Map<Long, byte[]> records = new LinkedHashMap<>();
+        readSnapshot(snapshotFile, records);
+        replayLog(compactingFile, records);
+
+        // The log that is set aside is only deleted after the new snapshot is in place
+        writeSnapshot(records.values());
+        Files.delete(compactingFile.toPath());
+
+        if (DEBUG) {
+            System.out.printf("Compaction complete: %s, %d records%n", name, records.size());
+        }
+    }
+
+    private void writeSnapshot(Collection<byte[]> records) throws IOException {
+        try (
+                FileOutputStream outputStream = FileUtils.openOutputStream(tempFile);
+                BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(outputStream);
+                DataOutputStream dataOutputStream = new DataOutputStream(bufferedOutputStream)
+        ) {
+            dataOutputStream.writeInt(magic);
+            dataOutputStream.writeInt(VERSION);
+            dataOutputStream.writeInt(records.size());
+            for (byte[] record : records) {
+                BinaryFormat.writeVarInt(dataOutputStream, record.length);
+                dataOutputStream.write(record);
+            }
+            dataOutputStream.flush();
+            outputStream.getChannel().force(true);
+        }
+        Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void awaitCompaction() {
+        if (compaction == null) {
+            return;
+        }
+        try {
+            compaction.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("An error occurred while compacting the journal: " + e.getCause().getMessage());
+        }
+        compaction = null;
+    }
+
+    private void writeHeader(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+        buffer.putInt(magic).putInt(VERSION).flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void checkHeader(DataInput input, File file) throws IOException {
+        if (input.readInt() != magic) {
+            throw new IOException("Not a journal file: " + file.getName());
+        }
+        int version = input.readInt();
+        if (version > VERSION) {
+            throw new IOException(String.format("Unsupported file version %d: %s", version, file.getName()));
+        }
+    }
+
+    private void readSnapshot(File file, Map<Long, byte[]> records) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+
+        try (
+                InputStream inputStream = FileUtils.openInputStream(file);
+                BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream);
+                DataInputStream dataInputStream = new DataInputStream(bufferedInputStream)
+        ) {
+            checkHeader(dataInputStream, file);
+            int count = dataInputStream.readInt();
+            for (int i = 0; i < count; i++) {
+                byte[] record = new byte[BinaryFormat.readVarInt(dataInputStream)];
+                dataInputStream.readFully(record);
+                records.put(idOf(record), record);
+            }
+        }
+    }
+
+    /**
+     * Applies the changes of a log to the records.
+     * @return the size of the log up to and including the last complete change, 0 if the log has no header
+     */
+    private long replayLog(File file, Map<Long, byte[]> records) throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        if (bytes.length < HEADER_SIZE) {
+            return 0;
+        }
+
+        ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(bytes);
+        DataInputStream dataInputStream = new DataInputStream(byteArrayInputStream);
+        checkHeader(dataInputStream, file);
+
+        long validSize = HEADER_SIZE;
+        try {
+            while (byteArrayInputStream.available() > 0) {
+                byte operation = dataInputStream.readByte();
+                if (operation == PUT) {
+                    byte[] record = new byte[BinaryFormat.readVarInt(dataInputStream)];
+                    dataInputStream.readFully(record);
+                    records.put(idOf(record), record);
+                } else if (operation == DELETE) {
+                    records.remove(dataInputStream.readLong());
+                } else {
+                    throw new IOException("Unknown change in " + file.getName() + ": " + operation);
+                }
+                validSize = bytes.length - byteArrayInputStream.available();
+            }
+        } catch (EOFException e) {
+            // Incomplete change at the end, everything before it is valid
+        }
+        return validSize;
+    }
+
+    private static long idOf(byte[] record) throws IOException {
+        if (record.length < 8) {
+            throw new IOException("Record is too short");
+        }
+        return ByteBuffer.wrap(record).getLong();
+    }
+}
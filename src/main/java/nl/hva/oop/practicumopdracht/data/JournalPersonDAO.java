@@ -0,0 +1,151 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import nl.hva.oop.practicumopdracht.models.Person;
+import org.apache.commons.io.FileUtils;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import static nl.hva.oop.practicumopdracht.Main.DEBUG;
+import static nl.hva.oop.practicumopdracht.Main.getAppDataDirectory;
+
+/**
+ * JournalPersonDAO - JournalMasterDAO
+ * This is a DAO class which keeps the persons in a journal (see Journal) instead of rewriting a file on every save.
+ * save() appends only the persons that changed since the last load or save to Persons.log and forces the log to disk.
+ * The records have the same layout as the persons in version 2 of Persons.dat, this layout stays the same when
+ * Persons.dat gets a new version, so existing journals remain readable. If there is no journal yet, the persons are
+ * imported once from Persons.dat.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+public class JournalPersonDAO extends PersonDAO {
+    private static final String DIRECTORY_NAME = getAppDataDirectory();
+    static final String NAME = "Persons";
+    static final File DIRECTORY = FileUtils.getFile(DIRECTORY_NAME);
+    static final int MAGIC = 0x504A4E4C; // "PJNL"
+    private static final int RECORD_VERSION = 2;
+    private final Journal journal = new Journal(DIRECTORY, NAME, MAGIC);
+
+    @Override
+    protected boolean loadLocked() throws FileNotFoundException {
+        if (DEBUG) {
+            System.out.printf("%n******** Debug info%n* App data directory: %s%n* Journal: %s%n********%n%n",
+                    DIRECTORY.getAbsolutePath(), NAME);
+        }
+
+        // Ensure the directory exists
+        try {
+            FileUtils.forceMkdir(DIRECTORY);
+        } catch (IOException e) {
+            System.err.println("An error occurred while creating the directory: " + e.getMessage());
+            return false;
+        }
+
+        if (DEBUG) {
+            System.out.println("Loading journal: " + NAME);
+        }
+
+        // The import creates the journal, an import that fails is tried again at the next load
+        boolean importBinaryFile = !journal.exists();
+        if (importBinaryFile && !importBinaryFile()) {
+            return false;
+        }
+        try {
+            // Clear the list before loading new data
+            clearAll();
+            for (byte[] record : journal.open()) {
+                addLoaded(BinaryPersonDAO.readPerson(new DataInputStream(new ByteArrayInputStream(record)),
+                        RECORD_VERSION));
+            }
+        } catch (IOException e) {
+            System.err.println("Something went wrong while reading the journal: " + e.getMessage());
+            return false;
+        }
+
+        if (importBinaryFile) {
+            if (DEBUG) {
+                System.out.printf("Import complete: %d persons%n", persons.size());
+            }
+            return idAllocator.save();
+        }
+
+        if (DEBUG) {
+            System.out.println("Loading complete: " + NAME);
+        }
+        return true;
+    }
+
+    @Override
+    protected boolean saveSnapshot(Snapshot<Person> snapshot) {
+        if (DEBUG) {
+            System.out.println("\nSaving journal: " + NAME);
+        }
+
+        try {
+            // Only the records that changed since the last load or save are appended
+            for (Map.Entry<Long, ChangeTracker.Change<Person>> entry : snapshot.changes().entrySet()) {
+                if (entry.getValue().type() == ChangeTracker.Type.DELETED) {
+                    journal.delete(entry.getKey());
+                } else {
+                    journal.put(encode(entry.getValue().record()));
+                }
+            }
+            journal.sync();
+        } catch (IOException e) {
+            System.err.println("An error occurred while saving the journal: " + e.getMessage());
+            return false;
+        }
+
+        if (DEBUG) {
+            System.out.println("Saving journal complete: " + NAME);
+        }
+        return idAllocator.save();
+    }
+
+    /**
+     * Only the changes are appended to the journal, so a save doesn't need a copy of every record.
+     */
+    @Override
+    protected boolean savesChangesOnly() {
+        return true;
+    }
+
+    private static byte[] encode(Person person) {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (DataOutputStream dataOutputStream = new DataOutputStream(byteArrayOutputStream)) {
+            BinaryPersonDAO.writePerson(dataOutputStream, person, RECORD_VERSION);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    /**
+     * One-shot import of the persons of the BinaryPersonDAO into the new journal, Persons.dat is left untouched.
+     * The journal is only created once all persons are written.
+     * @return true if the persons are imported
+     */
+    private boolean importBinaryFile() throws FileNotFoundException {
+        if (DEBUG) {
+            System.out.println("Importing Persons.dat into journal: " + NAME);
+        }
+
+        BinaryPersonDAO binaryPersonDAO = new BinaryPersonDAO();
+        if (!binaryPersonDAO.load()) {
+            System.err.println("Couldn't import Persons.dat into journal: " + NAME);
+            return false;
+        }
+        List<byte[]> records = new ArrayList<>();
+        for (Person person : binaryPersonDAO.getAll()) {
+            records.add(encode(person));
+        }
+        try {
+            journal.create(records);
+        } catch (IOException e) {
+            System.err.println("An error occurred while importing Persons.dat into the journal: " + e.getMessage());
+            return false;
+        }
+        return true;
+    }
+}
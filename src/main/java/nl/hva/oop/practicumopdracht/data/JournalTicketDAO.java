@@ -0,0 +1,151 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import nl.hva.oop.practicumopdracht.models.Ticket;
+import org.apache.commons.io.FileUtils;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import static nl.hva.oop.practicumopdracht.Main.DEBUG;
+import static nl.hva.oop.practicumopdracht.Main.getAppDataDirectory;
+
+/**
+ * JournalTicketDAO - JournalDetailDAO
+ * This is a DAO class which keeps the tickets in a journal (see Journal) instead of rewriting a file on every save.
+ * save() appends only the tickets that changed since the last load or save to Tickets.log and forces the log to disk.
+ * The records have the same layout as the tickets in Tickets.dat. If there is no journal yet, the tickets are
+ * imported once with the BinaryTicketDAO.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+public class JournalTicketDAO extends TicketDAO {
+    private static final String DIRECTORY_NAME = getAppDataDirectory();
+    static final String NAME = "Tickets";
+    static final File DIRECTORY = FileUtils.getFile(DIRECTORY_NAME);
+    static final int MAGIC = 0x544A4E4C; // "TJNL"
+    private final Journal journal = new Journal(DIRECTORY, NAME, MAGIC);
+
+    @Override
+    protected boolean loadLocked() throws FileNotFoundException {
+        if (DEBUG) {
+            System.out.printf("%n******** Debug info%n* App data directory: %s%n* Journal: %s%n********%n%n",
+                    DIRECTORY.getAbsolutePath(), NAME);
+        }
+
+        // Ensure the directory exists
+        try {
+            FileUtils.forceMkdir(DIRECTORY);
+        } catch (IOException e) {
+            System.err.println("An error occurred while creating the directory: " + e.getMessage());
+            return false;
+        }
+
+        if (DEBUG) {
+            System.out.println("Loading journal: " + NAME);
+        }
+
+        // The import creates the journal, an import that fails is tried again at the next load
+        boolean importBinaryFile = !journal.exists();
+        if (importBinaryFile && !importBinaryFile()) {
+            return false;
+        }
+        try {
+            // Clear the list before loading new data
+            clearAll();
+            for (byte[] record : journal.open()) {
+                addLoaded(BinaryTicketDAO.readTicket(new DataInputStream(new ByteArrayInputStream(record)), null,
+                        this::getOwner));
+            }
+        } catch (IOException e) {
+            System.err.println("Something went wrong while reading the journal: " + e.getMessage());
+            return false;
+        }
+
+        if (importBinaryFile) {
+            if (DEBUG) {
+                System.out.printf("Import complete: %d tickets%n", tickets.size());
+            }
+            return idAllocator.save();
+        }
+
+        if (DEBUG) {
+            System.out.println("Loading complete: " + NAME);
+        }
+        return true;
+    }
+
+    @Override
+    protected boolean saveSnapshot(Snapshot<Ticket> snapshot) {
+        if (DEBUG) {
+            System.out.println("\nSaving journal: " + NAME);
+        }
+
+        try {
+            // Only the records that changed since the last load or save are appended
+            for (Map.Entry<Long, ChangeTracker.Change<Ticket>> entry : snapshot.changes().entrySet()) {
+                if (entry.getValue().type() == ChangeTracker.Type.DELETED) {
+                    journal.delete(entry.getKey());
+                } else {
+                    journal.put(encode(entry.getValue().record()));
+                }
+            }
+            journal.sync();
+        } catch (IOException e) {
+            System.err.println("An error occurred while saving the journal: " + e.getMessage());
+            return false;
+        }
+
+        if (DEBUG) {
+            System.out.println("Saving journal complete: " + NAME);
+        }
+        return idAllocator.save();
+    }
+
+    /**
+     * Only the changes are appended to the journal, so a save doesn't need a copy of every record.
+     */
+    @Override
+    protected boolean savesChangesOnly() {
+        return true;
+    }
+
+    private static byte[] encode(Ticket ticket) {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (DataOutputStream dataOutputStream = new DataOutputStream(byteArrayOutputStream)) {
+            BinaryTicketDAO.writeTicket(dataOutputStream, ticket);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    /**
+     * One-shot import of the tickets of the BinaryTicketDAO into the new journal, Tickets.dat is left untouched.
+     * The journal is only created once all tickets are written.
+     * @return true if the tickets are imported
+     */
+    private boolean importBinaryFile() throws FileNotFoundException {
+        if (DEBUG) {
+            System.out.println("Importing Tickets.dat into journal: " + NAME);
+        }
+
+        // The BinaryTicketDAO looks up the owners itself
+        awaitPersons();
+        BinaryTicketDAO binaryTicketDAO = new BinaryTicketDAO();
+        if (!binaryTicketDAO.load()) {
+            System.err.println("Couldn't import Tickets.dat into journal: " + NAME);
+            return false;
+        }
+        List<byte[]> records = new ArrayList<>();
+        for (Ticket ticket : binaryTicketDAO.getAll()) {
+            records.add(encode(ticket));
+        }
+        try {
+            journal.create(records);
+        } catch (IOException e) {
+            System.err.println("An error occurred while importing Tickets.dat into the journal: " + e.getMessage());
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,262 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.RandomAccess;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * LazyList
+ * List of records from a file where a record is only decoded when it's requested with get().
+ * Every position remembers the row in the file it came from, added elements have no row (-1).
+ * The decoder keeps the decoded records, so a record decoded through another lookup is the same object in this list.
+ * Elements are compared by identity, the models don't override equals().
+ *
+ * @param <T> model Person or Ticket
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+final class LazyList<T> extends AbstractList<T> implements RandomAccess {
+    /**
+     * Decodes the records of a file and keeps the decoded records.
+     */
+    interface Decoder<T> {
+        /**
+         * @return the record of this row, decoded once
+         */
+        T decode(int row);
+
+        /**
+         * @return the record of this row if it has been decoded already, otherwise null
+         */
+        T getIfDecoded(int row);
+
+        /**
+         * @return the record of this row, a record that hasn't been decoded yet is decoded without keeping it
+         */
+        default T readOnce(int row) {
+            return decode(row);
+        }
+    }
+
+    private final Decoder<T> decoder;
+    // Added elements, positions with a row get their element from the decoder
+    private Object[] elements;
+    private int[] rows;
+    private int size;
+
+    /**
+     * @param rowCount is an int denoting the number of rows in the file
+     * @param decoder  decodes the record of a row
+     */
+    LazyList(int rowCount, Decoder<T> decoder) {
+        this.decoder = decoder;
+        elements = new Object[Math.max(rowCount, 10)];
+        rows = new int[elements.length];
+        for (int row = 0; row < rowCount; row++) {
+            rows[row] = row;
+        }
+        size = rowCount;
+    }
+
+    /**
+     * @param rows    the rows of the file in the order of the list, for example sorted
+     * @param decoder decodes the record of a row
+     */
+    LazyList(int[] rows, Decoder<T> decoder) {
+        this.decoder = decoder;
+        elements = new Object[Math.max(rows.length, 10)];
+        this.rows = Arrays.copyOf(rows, elements.length);
+        size = rows.length;
+    }
+
+    /**
+     * Adds the record of a row at the end, the record is decoded when it's requested.
+     */
+    void addRow(int row) {
+        add(size, null);
+        rows[size - 1] = row;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        checkIndex(index, size);
+        return rows[index] >= 0 ? decoder.decode(rows[index]) : (T) elements[index];
+    }
+
+    /**
+     * @return the element at this position if it has been decoded or added, otherwise null
+     */
+    T getIfDecoded(int index) {
+        checkIndex(index, size);
+        return peek(index);
+    }
+
+    /**
+     * @return the element at this position, an element that hasn't been decoded yet isn't kept (see Decoder)
+     */
+    @SuppressWarnings("unchecked")
+    T readOnce(int index) {
+        checkIndex(index, size);
+        return rows[index] >= 0 ? decoder.readOnce(rows[index]) : (T) elements[index];
+    }
+
+    /**
+     * @return the row in the file of the element at this position or -1 if it wasn't read from the file
+     */
+    int getRow(int index) {
+        checkIndex(index, size);
+        return rows[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    private T peek(int index) {
+        return rows[index] >= 0 ? decoder.getIfDecoded(rows[index]) : (T) elements[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public T set(int index, T element) {
+        T previous = get(index);
+        elements[index] = element;
+        rows[index] = -1;
+        return previous;
+    }
+
+    @Override
+    public void add(int index, T element) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (size == elements.length) {
+            int capacity = elements.length + (elements.length >> 1);
+            elements = Arrays.copyOf(elements, capacity);
+            rows = Arrays.copyOf(rows, capacity);
+        }
+        System.arraycopy(elements, index, elements, index + 1, size - index);
+        System.arraycopy(rows, index, rows, index + 1, size - index);
+        elements[index] = element;
+        rows[index] = -1;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public T remove(int index) {
+        T previous = get(index);
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+        System.arraycopy(rows, index + 1, rows, index, size - index - 1);
+        size--;
+        elements[size] = null;
+        modCount++;
+        return previous;
+    }
+
+    /**
+     * Only decoded and added elements are compared, an element that hasn't been decoded yet can't be the object.
+     */
+    @Override
+    public int indexOf(Object object) {
+        if (object == null) {
+            return -1;
+        }
+        for (int i = 0; i < size; i++) {
+            if (peek(i) == object) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object object) {
+        if (object == null) {
+            return -1;
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            if (peek(i) == object) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        return indexOf(object) >= 0;
+    }
+
+    @Override
+    public boolean remove(Object object) {
+        int index = indexOf(object);
+        if (index < 0) {
+            return false;
+        }
+        remove(index);
+        return true;
+    }
+
+    /**
+     * Removes the elements in the collection without decoding the other elements.
+     */
+    @Override
+    public boolean removeAll(Collection<?> collection) {
+        return removeDecodedIf(collection::contains);
+    }
+
+    /**
+     * Removes the decoded and added elements that match the filter in one pass, the other elements aren't decoded and
+     * aren't tested.
+     */
+    boolean removeDecodedIf(Predicate<? super T> filter) {
+        return compact(i -> {
+            T element = peek(i);
+            return element != null && filter.test(element);
+        });
+    }
+
+    /**
+     * Removes the elements that were read from one of these rows, decoded or not.
+     */
+    boolean removeRows(BitSet removedRows) {
+        return compact(i -> rows[i] >= 0 && removedRows.get(rows[i]));
+    }
+
+    private boolean compact(IntPredicate removed) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (!removed.test(i)) {
+                elements[kept] = elements[i];
+                rows[kept] = rows[i];
+                kept++;
+            }
+        }
+        if (kept == size) {
+            return false;
+        }
+        Arrays.fill(elements, kept, size, null);
+        size = kept;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(elements, 0, size, null);
+        size = 0;
+        modCount++;
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
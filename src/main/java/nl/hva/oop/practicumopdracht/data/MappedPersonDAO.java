@@ -0,0 +1,268 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import nl.hva.oop.practicumopdracht.models.Person;
+import org.apache.commons.io.FileUtils;
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import static nl.hva.oop.practicumopdracht.Main.DEBUG;
+import static nl.hva.oop.practicumopdracht.Main.getAppDataDirectory;
+import static nl.hva.oop.practicumopdracht.data.ColumnFile.Type.*;
+
+/**
+ * MappedPersonDAO - MappedMasterDAO
+ * This is a DAO class which keeps the persons in a memory-mapped column file (see ColumnFile).
+ * Loading only maps the file, a person is decoded the first time the list or a lookup by ID touches it.
+ * The index of the file is sorted by ID, so getById() is a binary search in the mapped file.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+public class MappedPersonDAO extends PersonDAO {
+    private static final String DIRECTORY_NAME = getAppDataDirectory();
+    private static final String FILE_NAME = "Persons.col";
+    private static final File DIRECTORY = FileUtils.getFile(DIRECTORY_NAME);
+    static final File FILE = FileUtils.getFile(DIRECTORY, FILE_NAME);
+    private static final File TEMP_FILE = FileUtils.getFile(DIRECTORY, FILE_NAME + ".tmp");
+    static final int MAGIC = 0x50434F4C; // "PCOL"
+    private static final int VERSION = 1;
+    // Columns
+    private static final int ID = 0, NAME = 1, SEX = 2, BIRTHDATE = 3, BIRTHPLACE = 4, NATIONALITY = 5, SSN = 6,
+            DOCUMENT_NUMBER = 7;
+    private static final ColumnFile.Type[] SCHEMA = {LONG, STRING, STRING, INT, STRING, STRING, INT, STRING};
+    private ColumnFile columnFile;
+    // Decoded persons by row, so the list and getById() return the same object
+    private Person[] decoded;
+    // Rows of persons that are removed since the file was mapped
+    private BitSet removedRows;
+
+    @Override
+    protected boolean loadLocked() {
+        if (DEBUG) {
+            System.out.printf("%n******** Debug info%n* App data directory: %s%n* Full path to file: %s%n********%n%n",
+                    DIRECTORY.getAbsolutePath(), FILE.getAbsolutePath());
+        }
+
+        // Ensure the directory and file exist
+        try {
+            FileUtils.forceMkdir(DIRECTORY);
+            if (!FILE.exists()) {
+                FileUtils.touch(FILE);
+                if (DEBUG) {
+                    System.out.println("File created: " + FILE_NAME);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("An error occurred while creating the directory or file: " + e.getMessage());
+            return false;
+        }
+
+        if (DEBUG) {
+            System.out.println("Loading data: " + FILE_NAME);
+        }
+
+        // Clear the list and unmap the previous file before loading new data
+        clearAll();
+        unmap();
+
+        if (FILE.length() == 0) {
+            if (DEBUG) {
+                System.out.println("File is empty");
+            }
+            persons = new ArrayList<>();
+            return true;
+        }
+
+        try {
+            map(ColumnFile.open(FILE, MAGIC, VERSION, SCHEMA));
+            idAllocator.observe(columnFile.getMaxKey());
+        } catch (IOException e) {
+            System.err.println("Something went wrong while reading the file: " + e.getMessage());
+            return false;
+        }
+
+        if (DEBUG) {
+            System.out.println("Loading complete: " + FILE_NAME);
+        }
+        return true;
+    }
+
+    @Override
+    protected boolean saveSnapshot(Snapshot<Person> snapshot) {
+        if (DEBUG) {
+            System.out.println("\nSaving data: " + FILE_NAME);
+        }
+
+        try {
+            // Persons that haven't been decoded are copied from the mapped file
+            ColumnFile.write(TEMP_FILE, MAGIC, VERSION, SCHEMA, ID, persons.size(), new ColumnFile.Source() {
+                @Override
+                public long getLong(int column, int row) {
+                    Person person = decodedAt(row);
+                    return person != null ? person.getId() : columnFile.getLong(column, rowAt(row));
+                }
+
+                @Override
+                public int getInt(int column, int row) {
+                    Person person = decodedAt(row);
+                    if (person == null) {
+                        return columnFile.getInt(column, rowAt(row));
+                    }
+                    return column == BIRTHDATE ? (int) person.getBirthdate().toEpochDay() : person.getSSN();
+                }
+
+                @Override
+                public double getDouble(int column, int row) {
+                    throw new IllegalArgumentException("No double column: " + column);
+                }
+
+                @Override
+                public byte getByte(int column, int row) {
+                    throw new IllegalArgumentException("No byte column: " + column);
+                }
+
+                @Override
+                public String getString(int column, int row) {
+                    Person person = decodedAt(row);
+                    if (person == null) {
+                        return columnFile.getString(column, rowAt(row));
+                    }
+                    return switch (column) {
+                        case NAME -> person.getName();
+                        case SEX -> person.getSex();
+                        case BIRTHPLACE -> person.getBirthplace();
+                        case NATIONALITY -> person.getNationality();
+                        default -> person.getDocumentNumber();
+                    };
+                }
+            });
+
+            // Keep the decoded persons, their position in the list is their row in the new file
+            Person[] decodedPersons = new Person[persons.size()];
+            for (int i = 0; i < decodedPersons.length; i++) {
+                decodedPersons[i] = decodedAt(i);
+            }
+
+            ColumnFile replaced;
+            try {
+                replaced = ColumnFile.replace(columnFile, TEMP_FILE, FILE, MAGIC, VERSION, SCHEMA);
+            } catch (IOException e) {
+                // The old file is in place again, the rows of the list still refer to it
+                if (columnFile != null) {
+                    columnFile = ColumnFile.open(FILE, MAGIC, VERSION, SCHEMA);
+                }
+                throw e;
+            }
+            map(replaced);
+            for (int i = 0; i < decodedPersons.length; i++) {
+                if (decodedPersons[i] != null) {
+                    decoded[i] = decodedPersons[i];
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("An error occurred while saving the file: " + e.getMessage());
+            FileUtils.deleteQuietly(TEMP_FILE);
+            return false;
+        }
+
+        if (DEBUG) {
+            System.out.println("Saving data complete: " + FILE_NAME);
+        }
+        return idAllocator.save();
+    }
+
+    /**
+     * Persons are decoded from the mapped file on a lookup, so lookups take the lock exclusively.
+     */
+    @Override
+    protected boolean decodesOnRead() {
+        return true;
+    }
+
+    @Override
+    protected Person getByIdLocked(long id) {
+        Person person = super.getByIdLocked(id);
+        if (person == null && columnFile != null) {
+            int row = columnFile.findRow(id);
+            if (row >= 0 && !removedRows.get(row)) {
+                person = decode(row);
+            }
+        }
+        return person;
+    }
+
+    @Override
+    protected void onRemoved(Person person) {
+        if (columnFile != null) {
+            int row = columnFile.findRow(person.getId());
+            if (row >= 0 && decoded[row] == person) {
+                removedRows.set(row);
+            }
+        }
+    }
+
+    private Person decode(int row) {
+        Person person = decoded[row];
+        if (person == null) {
+            person = readPerson(row);
+            decoded[row] = person;
+        }
+        return person;
+    }
+
+    private Person readPerson(int row) {
+        Person person = new Person(
+                columnFile.getString(NAME, row),
+                columnFile.getString(SEX, row),
+                LocalDate.ofEpochDay(columnFile.getInt(BIRTHDATE, row)),
+                columnFile.getString(BIRTHPLACE, row),
+                columnFile.getString(NATIONALITY, row),
+                columnFile.getInt(SSN, row),
+                columnFile.getString(DOCUMENT_NUMBER, row)
+        );
+        person.setId(columnFile.getLong(ID, row));
+        // These records don't go through addLoaded()
+        canonicalize(person);
+        return person;
+    }
+
+    private Person decodedAt(int index) {
+        return persons instanceof LazyList<Person> lazyList ? lazyList.getIfDecoded(index) : persons.get(index);
+    }
+
+    private int rowAt(int index) {
+        return ((LazyList<Person>) persons).getRow(index);
+    }
+
+    private void map(ColumnFile file) {
+        columnFile = file;
+        decoded = new Person[columnFile.getRowCount()];
+        removedRows = new BitSet();
+        persons = new LazyList<>(columnFile.getRowCount(), new LazyList.Decoder<>() {
+            @Override
+            public Person decode(int row) {
+                return MappedPersonDAO.this.decode(row);
+            }
+
+            @Override
+            public Person getIfDecoded(int row) {
+                return decoded[row];
+            }
+
+            @Override
+            public Person readOnce(int row) {
+                return decoded[row] != null ? decoded[row] : readPerson(row);
+            }
+        });
+    }
+
+    private void unmap() {
+        if (columnFile != null) {
+            columnFile.close();
+            columnFile = null;
+            decoded = null;
+            removedRows = null;
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import nl.hva.oop.practicumopdracht.models.Person;
+import nl.hva.oop.practicumopdracht.models.Ticket;
+import org.apache.commons.io.FileUtils;
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import static nl.hva.oop.practicumopdracht.Main.DEBUG;
+import static nl.hva.oop.practicumopdracht.Main.getAppDataDirectory;
+import static nl.hva.oop.practicumopdracht.MainApplication.getPersonDAO;
+import static nl.hva.oop.practicumopdracht.data.ColumnFile.Type.*;
+
+/**
+ * MappedTicketDAO - MappedDetailDAO
+ * This is a DAO class which keeps the tickets in a memory-mapped column file (see ColumnFile).
+ * Loading only maps the file, a ticket is decoded the first time the list or getAllFor() touches it.
+ * The index of the file is sorted by owner ID, so getAllFor() only decodes the tickets of that person.
+ * Tickets that are added or that get another owner are kept in the owner index of the TicketDAO until the next save.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+public class MappedTicketDAO extends TicketDAO {
+    private static final String DIRECTORY_NAME = getAppDataDirectory();
+    private static final String FILE_NAME = "Tickets.col";
+    private static final File DIRECTORY = FileUtils.getFile(DIRECTORY_NAME);
+    static final File FILE = FileUtils.getFile(DIRECTORY, FILE_NAME);
+    private static final File TEMP_FILE = FileUtils.getFile(DIRECTORY, FILE_NAME + ".tmp");
+    static final int MAGIC = 0x54434F4C; // "TCOL"
+    private static final int VERSION = 1;
+    private static final int FLAG_CHECKED_IN = 1;
+    // Columns
+    private static final int ID = 0, OWNER = 1, START_DATE = 2, END_DATE = 3, COST = 4, FLAGS = 5, DESTINATION = 6,
+            DESCRIPTION = 7;
+    private static final ColumnFile.Type[] SCHEMA = {LONG, LONG, INT, INT, DOUBLE, BYTE, STRING, STRING};
+    private ColumnFile columnFile;
+    // Decoded tickets by row and the other way around
+    private Ticket[] decoded;
+    private Map<Ticket, Integer> decodedRows;
+    // Rows that are removed or have another owner since the file was mapped
+    private BitSet detachedRows;
+
+    @Override
+    protected boolean loadLocked() {
+        if (DEBUG) {
+            System.out.printf("%n******** Debug info%n* App data directory: %s%n* Full path to file: %s%n********%n%n",
+                    DIRECTORY.getAbsolutePath(), FILE.getAbsolutePath());
+        }
+
+        // Ensure the directory and file exist
+        try {
+            FileUtils.forceMkdir(DIRECTORY);
+            if (!FILE.exists()) {
+                FileUtils.touch(FILE);
+                if (DEBUG) {
+                    System.out.println("File created: " + FILE_NAME);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("An error occurred while creating the directory or file: " + e.getMessage());
+            return false;
+        }
+
+        if (DEBUG) {
+            System.out.println("Loading data: " + FILE_NAME);
+        }
+
+        // Clear the list and unmap the previous file before loading new data
+        clearAll();
+        unmap();
+
+        if (FILE.length() == 0) {
+            if (DEBUG) {
+                System.out.println("File is empty");
+            }
+            tickets = new ArrayList<>();
+            return true;
+        }
+
+        try {
+            map(ColumnFile.open(FILE, MAGIC, VERSION, SCHEMA));
+            // The index is sorted by owner, so find the highest ticket ID in the ID column
+            for (int row = 0; row < columnFile.getRowCount(); row++) {
+                idAllocator.observe(columnFile.getLong(ID, row));
+            }
+        } catch (IOException e) {
+            System.err.println("Something went wrong while reading the file: " + e.getMessage());
+            return false;
+        }
+
+        if (DEBUG) {
+            System.out.println("Loading complete: " + FILE_NAME);
+        }
+        return true;
+    }
+
+    @Override
+    protected boolean saveSnapshot(Snapshot<Ticket> snapshot) {
+        if (DEBUG) {
+            System.out.println("\nSaving data: " + FILE_NAME);
+        }
+
+        try {
+            // Tickets that haven't been decoded are copied from the mapped file
+            ColumnFile.write(TEMP_FILE, MAGIC, VERSION, SCHEMA, OWNER, tickets.size(), new ColumnFile.Source() {
+                @Override
+                public long getLong(int column, int row) {
+                    Ticket ticket = decodedAt(row);
+                    if (ticket == null) {
+                        return columnFile.getLong(column, rowAt(row));
+                    }
+                    return column == ID ? ticket.getId() : ownerId(ticket);
+                }
+
+                @Override
+                public int getInt(int column, int row) {
+                    Ticket ticket = decodedAt(row);
+                    if (ticket == null) {
+                        return columnFile.getInt(column, rowAt(row));
+                    }
+                    LocalDate date = column == START_DATE ? ticket.getStartDate() : ticket.getEndDate();
+                    return (int) date.toEpochDay();
+                }
+
+                @Override
+                public double getDouble(int column, int row) {
+                    Ticket ticket = decodedAt(row);
+                    return ticket != null ? ticket.getCost() : columnFile.getDouble(column, rowAt(row));
+                }
+
+                @Override
+                public byte getByte(int column, int row) {
+                    Ticket ticket = decodedAt(row);
+                    if (ticket == null) {
+                        return columnFile.getByte(column, rowAt(row));
+                    }
+                    return (byte) (ticket.isCheckedIn() ? FLAG_CHECKED_IN : 0);
+                }
+
+                @Override
+                public String getString(int column, int row) {
+                    Ticket ticket = decodedAt(row);
+                    if (ticket == null) {
+                        return columnFile.getString(column, rowAt(row));
+                    }
+                    return column == DESTINATION ? ticket.getDestination() : ticket.getDescription();
+                }
+            });
+
+            // Keep the decoded tickets, their position in the list is their row in the new file
+            Ticket[] decodedTickets = new Ticket[tickets.size()];
+            for (int i = 0; i < decodedTickets.length; i++) {
+                decodedTickets[i] = decodedAt(i);
+            }
+
+            ColumnFile replaced;
+            try {
+                replaced = ColumnFile.replace(columnFile, TEMP_FILE, FILE, MAGIC, VERSION, SCHEMA);
+            } catch (IOException e) {
+                // The old file is in place again, the rows of the list still refer to it
+                if (columnFile != null) {
+                    columnFile = ColumnFile.open(FILE, MAGIC, VERSION, SCHEMA);
+                }
+                throw e;
+            }
+
+            // All tickets are in the file now, so the owner index of the TicketDAO isn't needed anymore
+            clearAll();
+            map(replaced);
+            for (int i = 0; i < decodedTickets.length; i++) {
+                if (decodedTickets[i] != null) {
+                    decoded[i] = decodedTickets[i];
+                    decodedRows.put(decodedTickets[i], i);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("An error occurred while saving the file: " + e.getMessage());
+            FileUtils.deleteQuietly(TEMP_FILE);
+            return false;
+        }
+
+        if (DEBUG) {
+            System.out.println("Saving data complete: " + FILE_NAME);
+        }
+        return idAllocator.save();
+    }
+
+    /**
+     * Tickets are decoded from the mapped file on a lookup, so lookups take the lock exclusively.
+     */
+    @Override
+    protected boolean decodesOnRead() {
+        return true;
+    }
+
+    @Override
+    protected List<Ticket> getAllForLocked(Person person) {
+        List<Ticket> ticketsForPerson = super.getAllForLocked(person);
+        if (columnFile != null) {
+            for (int row : columnFile.findRows(ownerId(person))) {
+                if (!detachedRows.get(row)) {
+                    ticketsForPerson.add(decode(row));
+                }
+            }
+        }
+        return ticketsForPerson;
+    }
+
+    @Override
+    protected void removeAllForLocked(Person person) {
+        super.removeAllForLocked(person);
+        if (columnFile != null) {
+            BitSet removedRows = new BitSet();
+            for (int row : columnFile.findRows(ownerId(person))) {
+                if (!detachedRows.get(row)) {
+                    detachedRows.set(row);
+                    removedRows.set(row);
+                    changes.deleted(columnFile.getLong(ID, row), decoded[row]);
+                }
+            }
+            ((LazyList<Ticket>) tickets).removeRows(removedRows);
+        }
+    }
+
+    @Override
+    protected void addOrUpdateLocked(Ticket ticket) {
+        Integer row = decodedRows == null ? null : decodedRows.get(ticket);
+        if (row == null || detachedRows.get(row)) {
+            super.addOrUpdateLocked(ticket);
+            return;
+        }
+
+        // A ticket from the file that got another owner moves to the owner index of the TicketDAO
+        if (ownerId(ticket) != columnFile.getLong(OWNER, row)) {
+            detachedRows.set(row);
+            index(ticket);
+        }
+        changes.updated(ticket.getId(), ticket);
+    }
+
+    @Override
+    protected boolean unlink(Ticket ticket) {
+        Integer row = decodedRows == null ? null : decodedRows.get(ticket);
+        if (row == null || detachedRows.get(row)) {
+            return super.unlink(ticket);
+        }
+
+        detachedRows.set(row);
+        changes.deleted(ticket.getId(), ticket);
+        return true;
+    }
+
+    private Ticket decode(int row) {
+        Ticket ticket = decoded[row];
+        if (ticket == null) {
+            long belongsTo = columnFile.getLong(OWNER, row);
+            ticket = new Ticket(
+                    belongsTo == 0 ? null : getPersonDAO().getById(belongsTo),
+                    columnFile.getString(DESTINATION, row),
+                    LocalDate.ofEpochDay(columnFile.getInt(START_DATE, row)),
+                    LocalDate.ofEpochDay(columnFile.getInt(END_DATE, row)),
+                    columnFile.getDouble(COST, row),
+                    (columnFile.getByte(FLAGS, row) & FLAG_CHECKED_IN) != 0,
+                    columnFile.getString(DESCRIPTION, row)
+            );
+            ticket.setId(columnFile.getLong(ID, row));
+            // These records don't go through addLoaded()
+            canonicalize(ticket);
+            decoded[row] = ticket;
+            decodedRows.put(ticket, row);
+        }
+        return ticket;
+    }
+
+    private static long ownerId(Ticket ticket) {
+        return ownerId(ticket.getBelongsTo());
+    }
+
+    private static long ownerId(Person person) {
+        return person == null ? 0 : person.getId();
+    }
+
+    private Ticket decodedAt(int index) {
+        return tickets instanceof LazyList<Ticket> lazyList ? lazyList.getIfDecoded(index) : tickets.get(index);
+    }
+
+    private int rowAt(int index) {
+        return ((LazyList<Ticket>) tickets).getRow(index);
+    }
+
+    private void map(ColumnFile file) {
+        columnFile = file;
+        decoded = new Ticket[columnFile.getRowCount()];
+        decodedRows = new IdentityHashMap<>();
+        detachedRows = new BitSet();
+        tickets = new LazyList<>(columnFile.getRowCount(), new LazyList.Decoder<>() {
+            @Override
+            public Ticket decode(int row) {
+                return MappedTicketDAO.this.decode(row);
+            }
+
+            @Override
+            public Ticket getIfDecoded(int row) {
+                return decoded[row];
+            }
+        });
+    }
+
+    private void unmap() {
+        if (columnFile != null) {
+            columnFile.close();
+            columnFile = null;
+            decoded = null;
+            decodedRows = null;
+            detachedRows = null;
+        }
+    }
+}
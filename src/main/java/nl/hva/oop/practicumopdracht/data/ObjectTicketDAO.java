@@ -1,5 +1,6 @@
 package nl.hva.oop.practicumopdracht.data;
 
+import nl.hva.oop.practicumopdracht.models.Person;
 import nl.hva.oop.practicumopdracht.models.Ticket;
 import org.apache.commons.io.FileUtils;
 import java.io.*;
@@ -12,6 +13,9 @@ import static nl.hva.oop.practicumopdracht.MainApplication.getPersonDAO;
  * ObjectTicketDAO - ObjectDetailDAO
  * This class handles loading and saving Ticket objects to a file using serialization and deserialization.
  * Refactored to use Apache Commons IO for file handling.
+ * Serialized objects can't be checked block by block like Tickets.dat (see BlockFile). If the file is damaged or
+ * truncated, the tickets before the damage are loaded and a copy of the file is kept in the quarantine directory
+ * before the next save replaces it.
  *
  * @author Remzi Cavdar
  */
@@ -19,10 +23,20 @@ public class ObjectTicketDAO extends TicketDAO {
     private static final String DIRECTORY_NAME = getAppDataDirectory();
     private static final String FILE_NAME = "Tickets.obj";
     private static final File DIRECTORY = FileUtils.getFile(DIRECTORY_NAME);
-    private static final File FILE = FileUtils.getFile(DIRECTORY, FILE_NAME);
+    static final File FILE = FileUtils.getFile(DIRECTORY, FILE_NAME);
+    /*
+     * Files start with MAGIC and a format version. Version 1 files have no header and start with the number of
+     * tickets, the owner of a ticket was saved as the position of the person in the persons file.
+     * Version 2 - the owner is saved as the ID of the person, the ticket object contains the ID of the ticket
+     */
+    static final int MAGIC = 0x54434B54; // "TCKT"
+    static final int VERSION = 2;
+    // The ObjectOutputStream forgets the written tickets after this many tickets, otherwise the stream and the
+    // ObjectInputStream that reads the file keep all of them
+    static final int RESET_INTERVAL = 1000;
 
     @Override
-    public boolean load() {
+    protected boolean loadLocked() {
         if (DEBUG) {
             System.out.printf("%n******** Debug info%n* App data directory: %s%n* Full path to file: %s%n********%n%n",
                     DIRECTORY.getAbsolutePath(), FILE.getAbsolutePath());
@@ -46,45 +60,55 @@ public class ObjectTicketDAO extends TicketDAO {
             System.out.println("Loading data: " + FILE_NAME);
         }
 
+        // Clear the list before loading new data
+        clearAll();
+        if (FILE.length() == 0) {
+            if (DEBUG) {
+                System.out.println("File is empty");
+            }
+            return true;
+        }
+
+        // The number of tickets in the header, for the error message if the file is damaged
+        int expected = 0;
         try (
                 FileInputStream fileInputStream = FileUtils.openInputStream(FILE);
                 ObjectInputStream objectInputStream = new ObjectInputStream(fileInputStream)
         ) {
-            if (objectInputStream.available() == 0) {
-                if (DEBUG) {
-                    System.out.println("File is empty");
-                }
-                return true;
-            }
-
-            // Clear the list before loading new data
-            tickets.clear();
-
+            int version = 1;
             int arraySize = objectInputStream.readInt();
-            if (arraySize == 0) {
+            if (arraySize == MAGIC) {
+                version = objectInputStream.readInt();
+                arraySize = objectInputStream.readInt();
+            }
+            if (version > VERSION) {
+                System.err.printf("Unsupported file version %d: %s%n", version, FILE_NAME);
                 return false;
             }
+            expected = arraySize;
 
+            // Version 1 has the position of the owner in the persons file, which needs the loaded persons
+            if (version < 2) {
+                awaitPersons();
+            }
             for (int i = 0; i < arraySize; i++) {
-                int belongsTo = objectInputStream.readInt();
+                Person belongsTo = version >= 2 ? getOwner(objectInputStream.readLong()) :
+                        getPersonDAO().getByLegacyIndex(objectInputStream.readInt());
                 Ticket ticket = (Ticket) objectInputStream.readObject();
-                ticket.setBelongsTo(getPersonDAO().getById(belongsTo));
-                tickets.add(ticket);
+                ticket.setBelongsTo(belongsTo);
+                addLoaded(ticket);
             }
 
             if (DEBUG) {
                 System.out.println("Loading complete: " + FILE_NAME);
             }
             return true;
-        } catch (EOFException e) {
-            if (DEBUG) {
-                System.out.println("File is empty");
-            }
         } catch (FileNotFoundException e) {
             System.err.println("File not found! - " + FILE_NAME);
-        } catch (IOException e) {
-            System.err.println("Something went wrong while reading the file: " + e.getMessage());
-            e.printStackTrace();
+            return false;
+        } catch (IOException | ClassCastException e) {
+            // EOFException if the file is truncated, StreamCorruptedException if it's damaged
+            return recover(expected, e);
         } catch (ClassNotFoundException e) {
             System.err.println("Class not found while deserializing the object.");
             e.printStackTrace();
@@ -93,36 +117,46 @@ public class ObjectTicketDAO extends TicketDAO {
         return false;
     }
 
+    /**
+     * Keeps the tickets that were loaded before the damaged part of the file.
+     * @param expected is an int denoting the number of tickets in the header, 0 if the header couldn't be read
+     */
+    private boolean recover(int expected, Exception e) {
+        System.err.printf("%s is damaged: %s, %d of %d tickets recovered%n", FILE_NAME, e, tickets.size(),
+                expected);
+        if (expected == 0 || Quarantine.store(FILE) == null) {
+            clearAll();
+            return false;
+        }
+        return true;
+    }
+
     @Override
-    public boolean save() {
+    protected boolean saveSnapshot(Snapshot<Ticket> snapshot) {
         if (DEBUG) {
             System.out.println("\nSaving data: " + FILE_NAME);
         }
 
         try (
-                FileOutputStream fileOutputStream = FileUtils.openOutputStream(FILE);
+                OutputStream fileOutputStream = SaveTransaction.openOutputStream(FILE);
                 ObjectOutputStream objectOutputStream = new ObjectOutputStream(fileOutputStream)
         ) {
-            objectOutputStream.writeInt(tickets.size());
-
-            for (Ticket ticket : tickets) {
-                Ticket ticketObj = new Ticket(
-                        ticket.getDestination(),
-                        ticket.getStartDate(),
-                        ticket.getEndDate(),
-                        ticket.getCost(),
-                        ticket.isCheckedIn(),
-                        ticket.getDescription()
-                );
-                // Save belongsTo as person ID
-                objectOutputStream.writeInt(getPersonDAO().getIdFor(ticket.getBelongsTo()));
-                objectOutputStream.writeObject(ticketObj); // Serialize the Ticket object
+            objectOutputStream.writeInt(MAGIC);
+            objectOutputStream.writeInt(VERSION);
+            objectOutputStream.writeInt(snapshot.records().size());
+
+            int written = 0;
+            for (Ticket ticket : snapshot.records()) {
+                writeTicket(objectOutputStream, ticket);
+                if (++written % RESET_INTERVAL == 0) {
+                    objectOutputStream.reset();
+                }
             }
 
             if (DEBUG) {
                 System.out.println("Saving data complete: " + FILE_NAME);
             }
-            return true;
+            return idAllocator.save();
         } catch (FileNotFoundException e) {
             System.err.println("File not found! - " + FILE_NAME);
         } catch (IOException e) {
@@ -132,4 +166,22 @@ public class ObjectTicketDAO extends TicketDAO {
 
         return false;
     }
-}
\ No newline at end of file
+
+    /**
+     * Writes the ID of the owner and a copy of the ticket without the owner, so the person isn't serialized.
+     */
+    static void writeTicket(ObjectOutputStream objectOutputStream, Ticket ticket) throws IOException {
+        Ticket ticketObj = new Ticket(
+                ticket.getDestination(),
+                ticket.getStartDate(),
+                ticket.getEndDate(),
+                ticket.getCost(),
+                ticket.isCheckedIn(),
+                ticket.getDescription()
+        );
+        ticketObj.setId(ticket.getId());
+        // Save belongsTo as person ID, 0 if the ticket has no owner
+        objectOutputStream.writeLong(ticket.getBelongsTo() == null ? 0 : ticket.getBelongsTo().getId());
+        objectOutputStream.writeObject(ticketObj); // Serialize the Ticket object
+    }
+}
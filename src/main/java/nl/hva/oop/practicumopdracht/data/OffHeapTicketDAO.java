@@ -0,0 +1,16 @@
+package nl.hva.oop.practicumopdracht.data;
+
+/**
+ * OffHeapTicketDAO - OffHeapDetailDAO
+ * This is a TableTicketDAO which keeps the ticket rows and their descriptions outside the Java heap (see
+ * OffHeapTicketTable), so a large number of tickets doesn't make the garbage collection slower.
+ * Like in the TableTicketDAO, a Ticket object is only created for the tickets the list or getAllFor() requests.
+ * The tickets are saved in Tickets.dat, in the same format as the BinaryTicketDAO.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+public class OffHeapTicketDAO extends TableTicketDAO {
+    public OffHeapTicketDAO() {
+        super(OffHeapTicketTable::new);
+    }
+}
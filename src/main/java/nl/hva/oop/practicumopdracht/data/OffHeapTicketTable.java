@@ -0,0 +1,211 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemoryLayout.PathElement;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * OffHeapTicketTable
+ * TicketTable that keeps the rows outside the Java heap with the Foreign Function & Memory API, so the garbage
+ * collector never has to scan or copy them.
+ * Every row is a record with a fixed layout (ROW_LAYOUT) in one memory segment (array of structs). The descriptions
+ * are stored as UTF-8 bytes in a second segment, the string heap: a row only has the offset and the length of its
+ * description. The string heap is only appended to, an old description stays until compact() rebuilds the heap.
+ * The destination dictionary stays on the heap, it only has a few distinct values.
+ * The memory is allocated in a shared arena, because the rows are loaded on another thread than the JavaFX thread.
+ * The memory is freed by close(), or when a segment grows. The table can't be used after close().
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+final class OffHeapTicketTable extends TicketTable {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long INITIAL_HEAP_SIZE = 64 * 1024;
+    private static final int FLAG_CHECKED_IN = 1;
+    // Length of a description that is null
+    private static final int NULL_LENGTH = -1;
+    private static final StructLayout ROW_LAYOUT = MemoryLayout.structLayout(
+            ValueLayout.JAVA_LONG.withName("id"),
+            ValueLayout.JAVA_LONG.withName("owner"),
+            ValueLayout.JAVA_LONG.withName("costCents"),
+            ValueLayout.JAVA_LONG.withName("descriptionOffset"),
+            ValueLayout.JAVA_INT.withName("startDay"),
+            ValueLayout.JAVA_INT.withName("endDay"),
+            ValueLayout.JAVA_INT.withName("destination"),
+            ValueLayout.JAVA_INT.withName("descriptionLength"),
+            ValueLayout.JAVA_INT.withName("flags"),
+            MemoryLayout.paddingLayout(4)
+    );
+    private static final long ROW_SIZE = ROW_LAYOUT.byteSize();
+    private static final long ID = offset("id");
+    private static final long OWNER = offset("owner");
+    private static final long COST_CENTS = offset("costCents");
+    private static final long DESCRIPTION_OFFSET = offset("descriptionOffset");
+    private static final long START_DAY = offset("startDay");
+    private static final long END_DAY = offset("endDay");
+    private static final long DESTINATION = offset("destination");
+    private static final long DESCRIPTION_LENGTH = offset("descriptionLength");
+    private static final long FLAGS = offset("flags");
+    private Arena rowArena = Arena.ofShared();
+    private MemorySegment rows = rowArena.allocate(ROW_LAYOUT.byteSize() * INITIAL_CAPACITY, ROW_LAYOUT.byteAlignment());
+    private Arena heapArena = Arena.ofShared();
+    private MemorySegment heap = heapArena.allocate(INITIAL_HEAP_SIZE);
+    private long heapSize;
+
+    OffHeapTicketTable(StringDictionary destinationDictionary) {
+        super(destinationDictionary);
+    }
+
+    private static long offset(String name) {
+        return ROW_LAYOUT.byteOffset(PathElement.groupElement(name));
+    }
+
+    private static long address(int row) {
+        return row * ROW_SIZE;
+    }
+
+    @Override
+    protected void ensureCapacity(int rowCount) {
+        long capacity = rows.byteSize() / ROW_SIZE;
+        if (rowCount > capacity) {
+            long newCapacity = Math.max(rowCount, capacity + (capacity >> 1));
+            Arena newArena = Arena.ofShared();
+            MemorySegment newRows = newArena.allocate(newCapacity * ROW_SIZE, ROW_LAYOUT.byteAlignment());
+            MemorySegment.copy(rows, 0, newRows, 0, rows.byteSize());
+            rowArena.close();
+            rowArena = newArena;
+            rows = newRows;
+        }
+    }
+
+    /**
+     * Appends the UTF-8 bytes of a description to the string heap.
+     * @return the offset of the bytes in the string heap
+     */
+    private long appendString(byte[] bytes) {
+        if (heapSize + bytes.length > heap.byteSize()) {
+            long newSize = Math.max(heapSize + bytes.length, heap.byteSize() + (heap.byteSize() >> 1));
+            Arena newArena = Arena.ofShared();
+            MemorySegment newHeap = newArena.allocate(newSize);
+            MemorySegment.copy(heap, 0, newHeap, 0, heapSize);
+            heapArena.close();
+            heapArena = newArena;
+            heap = newHeap;
+        }
+        long offset = heapSize;
+        MemorySegment.copy(bytes, 0, heap, ValueLayout.JAVA_BYTE, offset, bytes.length);
+        heapSize += bytes.length;
+        return offset;
+    }
+
+    private void setDescription(long address, String description) {
+        if (description == null) {
+            rows.set(ValueLayout.JAVA_LONG, address + DESCRIPTION_OFFSET, 0);
+            rows.set(ValueLayout.JAVA_INT, address + DESCRIPTION_LENGTH, NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+        rows.set(ValueLayout.JAVA_LONG, address + DESCRIPTION_OFFSET, appendString(bytes));
+        rows.set(ValueLayout.JAVA_INT, address + DESCRIPTION_LENGTH, bytes.length);
+    }
+
+    @Override
+    protected void setColumns(int row, long id, long owner, int startDay, int endDay, long costCents,
+                              boolean checkedIn, int destinationCode, String description) {
+        long address = address(row);
+        rows.set(ValueLayout.JAVA_LONG, address + ID, id);
+        rows.set(ValueLayout.JAVA_LONG, address + OWNER, owner);
+        rows.set(ValueLayout.JAVA_LONG, address + COST_CENTS, costCents);
+        rows.set(ValueLayout.JAVA_INT, address + START_DAY, startDay);
+        rows.set(ValueLayout.JAVA_INT, address + END_DAY, endDay);
+        rows.set(ValueLayout.JAVA_INT, address + DESTINATION, destinationCode);
+        rows.set(ValueLayout.JAVA_INT, address + FLAGS, checkedIn ? FLAG_CHECKED_IN : 0);
+        setDescription(address, description);
+    }
+
+    @Override
+    protected void moveRow(int from, int to) {
+        MemorySegment.copy(rows, address(from), rows, address(to), ROW_SIZE);
+    }
+
+    /**
+     * Rebuilds the string heap with only the descriptions of the rows that are kept.
+     */
+    @Override
+    protected void truncate(int rowCount) {
+        Arena newArena = Arena.ofShared();
+        MemorySegment newHeap = newArena.allocate(Math.max(heapSize, 1));
+        long newHeapSize = 0;
+        for (int row = 0; row < rowCount; row++) {
+            long address = address(row);
+            int length = rows.get(ValueLayout.JAVA_INT, address + DESCRIPTION_LENGTH);
+            if (length > 0) {
+                MemorySegment.copy(heap, rows.get(ValueLayout.JAVA_LONG, address + DESCRIPTION_OFFSET),
+                        newHeap, newHeapSize, length);
+                rows.set(ValueLayout.JAVA_LONG, address + DESCRIPTION_OFFSET, newHeapSize);
+                newHeapSize += length;
+            }
+        }
+        heapArena.close();
+        heapArena = newArena;
+        heap = newHeap;
+        heapSize = newHeapSize;
+    }
+
+    @Override
+    long getId(int row) {
+        return rows.get(ValueLayout.JAVA_LONG, address(row) + ID);
+    }
+
+    @Override
+    long getOwner(int row) {
+        return rows.get(ValueLayout.JAVA_LONG, address(row) + OWNER);
+    }
+
+    @Override
+    int getStartDay(int row) {
+        return rows.get(ValueLayout.JAVA_INT, address(row) + START_DAY);
+    }
+
+    @Override
+    int getEndDay(int row) {
+        return rows.get(ValueLayout.JAVA_INT, address(row) + END_DAY);
+    }
+
+    @Override
+    long getCostCents(int row) {
+        return rows.get(ValueLayout.JAVA_LONG, address(row) + COST_CENTS);
+    }
+
+    @Override
+    boolean isCheckedIn(int row) {
+        return (rows.get(ValueLayout.JAVA_INT, address(row) + FLAGS) & FLAG_CHECKED_IN) != 0;
+    }
+
+    @Override
+    int getDestinationCode(int row) {
+        return rows.get(ValueLayout.JAVA_INT, address(row) + DESTINATION);
+    }
+
+    @Override
+    String getDescription(int row) {
+        long address = address(row);
+        int length = rows.get(ValueLayout.JAVA_INT, address + DESCRIPTION_LENGTH);
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        MemorySegment.copy(heap, ValueLayout.JAVA_BYTE, rows.get(ValueLayout.JAVA_LONG, address + DESCRIPTION_OFFSET),
+                bytes, 0, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() {
+        rowArena.close();
+        heapArena.close();
+    }
+}
@@ -3,57 +3,538 @@ package nl.hva.oop.practicumopdracht.data;
 import nl.hva.oop.practicumopdracht.models.Person;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * PersonDAO - MasterDAO
  * Abstract class for PersonDAO - subclasses will implement save and load methods.
+ * Every person gets a stable ID from the IdAllocator, tickets refer to their owner by this ID.
+ * Subclasses must use clearAll() and addLoaded() in their loadLocked() implementation to keep the ID lookup up-to-date.
+ * Inserted, updated and removed persons are tracked until a save of these changes succeeds.
+ * Loaded persons share their repeated values (see Canonicalizer).
+ * addAll(), removeAll() and removeIf() change many persons with one pass over the list and one call of the change
+ * listeners.
+ * The DAO can be used by several threads, for example the JavaFX application thread that edits and a background thread
+ * that saves. Changes take the write lock of a StampedLock, lookups first run without a lock and only run again with
+ * the read lock if a change happened in the meantime. getAll() returns a copy, so iterating is never disturbed by other
+ * threads. Subclasses implement loadLocked(), load() calls it with the write lock held. A subclass that decodes
+ * records on a lookup (see decodesOnRead()) gets the lock exclusively for lookups and saves.
+ * Saving doesn't block changes: addOrUpdate() keeps a copy of the person as its latest version (copy-on-write) and
+ * save() writes a Snapshot of these versions, and of copies of the unchanged persons, while the persons can be changed
+ * again. A version that is replaced stays reachable only through the snapshot of a running save and is reclaimed when
+ * that save is done, the versions of saved persons are dropped after the save.
  * @author Remzi Cavdar - remzi.cavdar@hva.nl
  */
 
 public abstract class PersonDAO implements DAO<Person> {
+    // Number of persons forEach() takes at a time with the lock held
+    private static final int BATCH_SIZE = 1024;
     protected List<Person> persons;
+    protected final IdAllocator idAllocator;
+    // ID to person lookup, concurrent so an optimistic lookup never sees a broken map
+    private final Map<Long, Person> personsById;
+    // Changes since the last load or save
+    protected final ChangeTracker<Person> changes;
+    private final Canonicalizer canonicalizer = new Canonicalizer();
+    // Guards the list, the ID lookup and the tracked changes, see read() and write()
+    private final StampedLock lock = new StampedLock();
+    // Latest version of the persons that changed since the last save, see takeSnapshot()
+    private final Map<Person, Person> versions = new IdentityHashMap<>();
+    // One save or load at a time, a save runs without the lock
+    private final ReentrantLock saving = new ReentrantLock();
 
     public PersonDAO() {
         persons = new ArrayList<>();
+        personsById = new ConcurrentHashMap<>();
+        idAllocator = new IdAllocator("person");
+        changes = new ChangeTracker<>();
     }
 
-    public Person getById(int id) {
-        try {
-            return persons.get(id);
-        } catch (IndexOutOfBoundsException e) {
-            System.err.println("ID is not in the list");
-            return null;
-        } catch (Exception e) {
-            System.err.println("PersonDAO getById(): Something went wrong!");
-            return null;
-        }
+    /**
+     * @param id is a long denoting the ID of the person
+     * @return the person with this ID or null if there is no person with this ID
+     */
+    public Person getById(long id) {
+        return read(() -> getByIdLocked(id));
     }
 
-    public int getIdFor(Person person) {
-        return persons.indexOf(person);
+    /**
+     * getById() with the lock held, subclasses that find persons outside the list override this.
+     */
+    protected Person getByIdLocked(long id) {
+        return personsById.get(id);
     }
 
+    /**
+     * Files written before persons had an ID refer to a person by the position in the file. This lookup is only
+     * valid while loading such a file, directly after the persons are loaded.
+     * @param index is an int denoting the position of the person in the list
+     * @return the person at this position or null if the position is not in the list
+     */
+    public Person getByLegacyIndex(int index) {
+        Person person = read(() -> index < 0 || index >= persons.size() ? null : persons.get(index));
+        if (person == null) {
+            System.err.println("ID is not in the list");
+        }
+        return person;
+    }
+
+    /**
+     * @return a copy of the list of persons, changes made after this call aren't in the copy
+     */
     @Override
     public List<Person> getAll() {
-        return persons;
+        return read(() -> List.copyOf(persons));
+    }
+
+    /**
+     * Runs the action for every person in the order of the list without copying the list. The persons are taken in
+     * batches with the lock held and the action runs without the lock, so it can use the DAOs. A decoding subclass
+     * doesn't keep the persons it decodes for forEach() (see LazyList.readOnce()), so the memory doesn't grow with the
+     * number of persons. A person that another thread adds or removes in the meantime can move to another batch and
+     * is then skipped or visited twice.
+     */
+    public void forEach(Consumer<? super Person> action) {
+        List<Person> batch = new ArrayList<>(BATCH_SIZE);
+        for (int start = 0; ; start += BATCH_SIZE) {
+            int from = start;
+            read(() -> {
+                batch.clear();
+                for (int i = from; i < Math.min(from + BATCH_SIZE, persons.size()); i++) {
+                    batch.add(persons instanceof LazyList<Person> lazyList ? lazyList.readOnce(i) : persons.get(i));
+                }
+                return null;
+            });
+            batch.forEach(action);
+            if (batch.size() < BATCH_SIZE) {
+                return;
+            }
+        }
     }
 
     @Override
     public void addOrUpdate(Person person) {
-        if(!persons.contains(person)) {
+        write(() -> addOrUpdateLocked(person));
+    }
+
+    /**
+     * Changes an existing person with its setters and updates it like addOrUpdate(). The setters run with the write
+     * lock held, so a save that runs at the same time never sees a half changed person.
+     * @param edit sets the new values of the person
+     */
+    @Override
+    public void update(Person person, Consumer<? super Person> edit) {
+        write(() -> {
+            edit.accept(person);
+            addOrUpdateLocked(person);
+        });
+    }
+
+    private void addOrUpdateLocked(Person person) {
+        if (person.getId() == 0) {
+            person.setId(idAllocator.next());
+        }
+        if (getByIdLocked(person.getId()) == null) {
             persons.add(person);
+            personsById.put(person.getId(), person);
+            changes.inserted(person.getId(), person);
+        } else {
+            changes.updated(person.getId(), person);
+        }
+        // The list and the lookups of a decoding subclass are only saved with the lock held
+        if (!decodesOnRead()) {
+            versions.put(person, copy(person));
         }
     }
 
     @Override
     public void remove(Person person) {
-        persons.remove(person);
+        write(() -> {
+            personsById.remove(person.getId(), person);
+            if (persons.remove(person)) {
+                changes.deleted(person.getId(), person);
+                versions.remove(person);
+                onRemoved(person);
+            }
+        });
     }
 
+    /**
+     * Adds or updates persons like addOrUpdate(), the change listeners are called once.
+     * @param newPersons the persons to add or update, a person that is in the collection twice is added once
+     */
     @Override
-    public abstract boolean load() throws FileNotFoundException;
+    public void addAll(Collection<? extends Person> newPersons) {
+        write(() -> {
+            if (persons instanceof ArrayList<Person> arrayList) {
+                arrayList.ensureCapacity(persons.size() + newPersons.size());
+            }
+            for (Person person : newPersons) {
+                addOrUpdateLocked(person);
+            }
+        });
+    }
+
+    /**
+     * Removes persons with one pass over the list instead of one pass per person, the change listeners are called
+     * once.
+     * @param removedPersons the persons to remove, persons that aren't in this DAO are ignored
+     */
+    @Override
+    public void removeAll(Collection<? extends Person> removedPersons) {
+        write(() -> removeAllLocked(removedPersons));
+    }
+
+    private void removeAllLocked(Collection<? extends Person> removedPersons) {
+        Set<Person> removing = Collections.newSetFromMap(new IdentityHashMap<>());
+        removing.addAll(removedPersons);
+        if (removing.isEmpty()) {
+            return;
+        }
+
+        // Only the persons that are actually in the list are tracked as removed
+        List<Person> removed = new ArrayList<>();
+        Predicate<Person> filter = person -> {
+            if (removing.contains(person)) {
+                removed.add(person);
+                return true;
+            }
+            return false;
+        };
+        // A person that hasn't been decoded yet can't be in the collection, so it doesn't have to be decoded
+        if (persons instanceof LazyList<Person> lazyList) {
+            lazyList.removeDecodedIf(filter);
+        } else {
+            persons.removeIf(filter);
+        }
+
+        for (Person person : removed) {
+            personsById.remove(person.getId(), person);
+            changes.deleted(person.getId(), person);
+            versions.remove(person);
+            onRemoved(person);
+        }
+    }
 
+    /**
+     * Removes the persons that match the filter like removeAll(), every person is tested.
+     * @return true if persons have been removed
+     */
     @Override
-    public abstract boolean save();
-}
\ No newline at end of file
+    public boolean removeIf(Predicate<? super Person> filter) {
+        List<Person> matching = new ArrayList<>();
+        write(() -> {
+            for (Person person : persons) {
+                if (filter.test(person)) {
+                    matching.add(person);
+                }
+            }
+            removeAllLocked(matching);
+        });
+        return !matching.isEmpty();
+    }
+
+    /**
+     * Called for every person that remove(), removeAll() or removeIf() removes from the list, for subclasses that keep
+     * their own state per person. Called with the lock held.
+     * @param person the removed person
+     */
+    protected void onRemoved(Person person) {
+    }
+
+    /**
+     * @return true if persons are inserted, updated or removed since the last load or save
+     */
+    public boolean hasChanges() {
+        return read(() -> !changes.isEmpty());
+    }
+
+    /**
+     * @return the number of persons that are inserted, updated or removed since the last load or save
+     */
+    public int changeCount() {
+        return read(changes::size);
+    }
+
+    /**
+     * Adds a listener that is called after every insert, update or remove, for example to save automatically.
+     * @param listener is called on the thread that changed the persons, after the lock is released
+     */
+    public void addChangeListener(Runnable listener) {
+        changes.addListener(listener);
+    }
+
+    /**
+     * @return the estimated number of bytes saved by sharing repeated values since the last load
+     */
+    public long getDeduplicatedBytes() {
+        return read(canonicalizer::getBytesSaved);
+    }
+
+    /**
+     * Clears all persons, the ID lookup and the tracked changes, should be called at the start of every loadLocked().
+     */
+    protected void clearAll() {
+        persons.clear();
+        personsById.clear();
+        changes.clear();
+        versions.clear();
+        canonicalizer.clear();
+    }
+
+    /**
+     * Adds a person to the list and the ID lookup, used by loadLocked() for every person that is read.
+     * A person without an ID (read from an old file) gets a new ID.
+     * @param person the loaded person
+     */
+    protected void addLoaded(Person person) {
+        if (person.getId() == 0) {
+            person.setId(idAllocator.next());
+        } else {
+            idAllocator.observe(person.getId());
+        }
+        canonicalize(person);
+        persons.add(person);
+        personsById.put(person.getId(), person);
+    }
+
+    /**
+     * Replaces the repeated values of a loaded person by shared instances, addLoaded() does this for every person.
+     * The name, SSN and document number are unique, so these aren't shared.
+     * @param person the loaded person
+     */
+    protected void canonicalize(Person person) {
+        person.setSex(canonicalizer.canonical(person.getSex()));
+        person.setBirthdate(canonicalizer.canonical(person.getBirthdate()));
+        person.setBirthplace(canonicalizer.canonical(person.getBirthplace()));
+        person.setNationality(canonicalizer.canonical(person.getNationality()));
+    }
+
+    /**
+     * Loads the persons with the write lock, lookups of other threads wait until the persons are loaded. A running
+     * save is finished first, as is a save that was interrupted while it published its files (see SaveTransaction).
+     */
+    @Override
+    public final boolean load() throws FileNotFoundException {
+        saving.lock();
+        try {
+            SaveTransaction.recover();
+            long stamp = lock.writeLock();
+            try {
+                return loadLocked();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        } finally {
+            saving.unlock();
+        }
+    }
+
+    /**
+     * Saves a snapshot of the persons, the lock is only held while the snapshot is taken so other threads can change
+     * the persons during the save. These changes are saved by the next save. A subclass that decodes on a lookup
+     * saves with the write lock held. The save joins the SaveTransaction of this thread, the saved changes are
+     * forgotten when the transaction has published the files.
+     */
+    @Override
+    public final boolean save() {
+        saving.lock();
+        try (SaveTransaction transaction = SaveTransaction.begin()) {
+            Snapshot<Person> snapshot;
+            if (decodesOnRead()) {
+                long stamp = lock.writeLock();
+                try {
+                    snapshot = new Snapshot<>(persons, changes.getChanges(), changes.snapshot());
+                    if (!saveSnapshot(snapshot)) {
+                        return false;
+                    }
+                } finally {
+                    lock.unlockWrite(stamp);
+                }
+            } else {
+                long stamp = lock.readLock();
+                try {
+                    snapshot = takeSnapshot();
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+                if (!saveSnapshot(snapshot)) {
+                    return false;
+                }
+            }
+
+            transaction.onCommit(() -> {
+                long stamp = lock.writeLock();
+                try {
+                    markSaved(snapshot);
+                } finally {
+                    lock.unlockWrite(stamp);
+                }
+            });
+            return transaction.commit();
+        } finally {
+            saving.unlock();
+        }
+    }
+
+    /**
+     * Saves the current persons with the write lock held, for example by a load that converts an older file. A load
+     * doesn't run in a SaveTransaction, so the file is published before this returns.
+     * @return true if the persons have been saved
+     */
+    protected final boolean saveLocked() {
+        try (SaveTransaction transaction = SaveTransaction.begin()) {
+            Snapshot<Person> snapshot = new Snapshot<>(persons, changes.getChanges(), changes.snapshot());
+            if (!saveSnapshot(snapshot)) {
+                return false;
+            }
+            transaction.onCommit(() -> markSaved(snapshot));
+            return transaction.commit();
+        }
+    }
+
+    /**
+     * Copies the list and the changes with the latest version of every person, called with the read lock held. A
+     * person that hasn't changed since the last save is copied here, so the save never reads a person of the list. The
+     * list is left empty if savesChangesOnly() is true.
+     */
+    private Snapshot<Person> takeSnapshot() {
+        // A save of the changes only doesn't need a copy of every person
+        List<Person> records = new ArrayList<>(savesChangesOnly() ? 0 : persons.size());
+        if (!savesChangesOnly()) {
+            for (Person person : persons) {
+                records.add(versionOf(person));
+            }
+        }
+        Map<Long, ChangeTracker.Change<Person>> snapshotChanges = new LinkedHashMap<>();
+        for (Map.Entry<Long, ChangeTracker.Change<Person>> entry : changes.getChanges().entrySet()) {
+            ChangeTracker.Change<Person> change = entry.getValue();
+            Person record = change.record() == null ? null : versionOf(change.record());
+            snapshotChanges.put(entry.getKey(), new ChangeTracker.Change<>(change.type(), record, change.version()));
+        }
+        return new Snapshot<>(records, snapshotChanges, changes.snapshot());
+    }
+
+    /**
+     * Forgets the changes of the saved snapshot and the versions of the persons that haven't changed since, called
+     * with the write lock held.
+     */
+    private void markSaved(Snapshot<Person> snapshot) {
+        changes.clearUpTo(snapshot.version());
+        versions.keySet().removeIf(person -> !changes.getChanges().containsKey(person.getId()));
+    }
+
+    /**
+     * @return the version of the person of the last addOrUpdate(), or a copy of a person without a version
+     */
+    private Person versionOf(Person person) {
+        Person version = versions.get(person);
+        return version != null ? version : copy(person);
+    }
+
+    /**
+     * @return a copy of the person with the same ID, used as the version of the person in a snapshot
+     */
+    private static Person copy(Person person) {
+        Person version = new Person(person.getName(), person.getSex(), person.getBirthdate(), person.getBirthplace(),
+                person.getNationality(), person.getSSN(), person.getDocumentNumber());
+        version.setId(person.getId());
+        return version;
+    }
+
+    /**
+     * @return true if a lookup can change the state of this DAO, for example by decoding persons from a file, then
+     * lookups take the lock exclusively
+     */
+    protected boolean decodesOnRead() {
+        return false;
+    }
+
+    /**
+     * @return true if saveSnapshot() only uses the changes of the snapshot, for example to append them to a journal,
+     * then the snapshot has no records and a save costs the number of changes instead of the number of persons
+     */
+    protected boolean savesChangesOnly() {
+        return false;
+    }
+
+    /**
+     * Runs a lookup with an optimistic read: the lookup runs without the lock and runs again with the read lock if
+     * the persons were changed in the meantime. The lookup may see a half-changed state, an exception caused by that
+     * state is ignored because the lookup runs again.
+     * @return the result of the lookup
+     */
+    protected <R> R read(Supplier<R> lookup) {
+        if (decodesOnRead()) {
+            long stamp = lock.writeLock();
+            try {
+                return lookup.get();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                R result = lookup.get();
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return lookup.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Runs a change with the write lock as one batch, the change listeners are called after the lock is released.
+     */
+    private void write(Runnable change) {
+        changes.startBatch();
+        try {
+            long stamp = lock.writeLock();
+            try {
+                change.run();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        } finally {
+            changes.endBatch();
+        }
+    }
+
+    /**
+     * Loads the persons, called by load() with the write lock held.
+     * @return true if the persons have been loaded
+     */
+    protected abstract boolean loadLocked() throws FileNotFoundException;
+
+    /**
+     * Saves the persons of the snapshot, called by save() one save at a time. The lock isn't held, so only the
+     * snapshot may be used, unless decodesOnRead() is true.
+     * @return true if the persons have been saved
+     */
+    protected abstract boolean saveSnapshot(Snapshot<Person> snapshot);
+}
@@ -0,0 +1,99 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import org.apache.commons.io.FileUtils;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import static java.nio.file.StandardOpenOption.READ;
+import static nl.hva.oop.practicumopdracht.Main.DEBUG;
+import static nl.hva.oop.practicumopdracht.Main.getAppDataDirectory;
+
+/**
+ * Quarantine
+ * Keeps the damaged parts of the data files in the Quarantine directory of the app data directory, before a load that
+ * recovered the intact records saves the file again. The file is named after the data file and the time, for example
+ * Persons.dat.20241018-153000.corrupt, and contains per damaged part the offset in the data file (long), the length
+ * (long) and the bytes of the part.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+final class Quarantine {
+    private static final String DIRECTORY_NAME = "Quarantine";
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private Quarantine() {
+    }
+
+    static File getDirectory() {
+        return FileUtils.getFile(getAppDataDirectory(), DIRECTORY_NAME);
+    }
+
+    /**
+     * @param file    the data file the damaged parts are read from, a part at a time
+     * @param damaged the damaged parts of the data file
+     * @return the quarantine file or null if the parts couldn't be written
+     */
+    static File store(File file, List<BlockFile.Region> damaged) {
+        File target = createFile(file);
+        try (FileChannel channel = FileChannel.open(file.toPath(), READ);
+             DataOutputStream dataOutputStream = new DataOutputStream(new BufferedOutputStream(
+                     FileUtils.openOutputStream(target)))) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            for (BlockFile.Region region : damaged) {
+                dataOutputStream.writeLong(region.offset());
+                dataOutputStream.writeLong(region.length());
+                for (long copied = 0; copied < region.length(); copied += buffer.limit()) {
+                    buffer.clear().limit((int) Math.min(BUFFER_SIZE, region.length() - copied));
+                    if (channel.read(buffer, region.offset() + copied) < 0) {
+                        throw new EOFException("The damaged part ends after the end of " + file.getName());
+                    }
+                    dataOutputStream.write(buffer.array(), 0, buffer.position());
+                    buffer.limit(buffer.position());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("An error occurred while writing the quarantine file: " + e.getMessage());
+            return null;
+        }
+
+        if (DEBUG) {
+            System.out.println("Damaged parts kept in: " + target.getAbsolutePath());
+        }
+        return target;
+    }
+
+    /**
+     * Keeps a copy of the whole data file, for a format without blocks.
+     * @return the quarantine file or null if the file couldn't be copied
+     */
+    static File store(File file) {
+        File target = createFile(file);
+        try {
+            FileUtils.copyFile(file, target);
+        } catch (IOException e) {
+            System.err.println("An error occurred while writing the quarantine file: " + e.getMessage());
+            return null;
+        }
+
+        if (DEBUG) {
+            System.out.println("Damaged file kept in: " + target.getAbsolutePath());
+        }
+        return target;
+    }
+
+    /**
+     * @return a file that doesn't exist yet, a number is added if there is already a file of the same second
+     */
+    private static File createFile(File file) {
+        String name = file.getName() + "." + LocalDateTime.now().format(TIMESTAMP);
+        File target = FileUtils.getFile(getDirectory(), name + ".corrupt");
+        for (int i = 2; target.exists(); i++) {
+            target = FileUtils.getFile(getDirectory(), name + "-" + i + ".corrupt");
+        }
+        return target;
+    }
+}
@@ -0,0 +1,327 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.Arrays;
+import static nl.hva.oop.practicumopdracht.MainApplication.getDateTimeFormatter;
+
+/**
+ * RowDecoder
+ * Decodes the rows of the text DAO classes without String.split() and without exceptions for invalid values.
+ * decode() scans a row once and only remembers where the fields start and end, the buffers are reused for every row.
+ * Numbers and dd-MM-yyyy dates are parsed directly from the characters. Values in an unusual form (for example a
+ * cost with an exponent) are parsed with the JDK, so the result is always the same as with Double.parseDouble() and
+ * LocalDate.parse() with getDateTimeFormatter().
+ * An invalid value doesn't throw: the getter returns a default value and getError() returns the first error of the
+ * row, with the same message as the exception the JDK would have thrown.
+ * Text fields are unescaped like RowEncoder escapes them: \; is the separator, \\ a backslash and \n and \r are line
+ * breaks. Any other backslash is kept, so rows from before the escaping read the same as before (unless a backslash
+ * was followed by the separator, another backslash, n or r).
+ * A decoder is not thread-safe, every thread (every chunk of ChunkedLineReader) uses its own decoder.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+final class RowDecoder {
+    private static final int DATE_LENGTH = "dd-MM-yyyy".length();
+    // Every long with at most 15 digits and every power of ten up to 10^22 is exact as a double
+    private static final int MAX_EXACT_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private final char separator;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private boolean[] escaped = new boolean[16];
+    private String text;
+    private int rowStart;
+    private int rowEnd;
+    private int fieldCount;
+    private String error;
+
+    RowDecoder(char separator) {
+        this.separator = separator;
+    }
+
+    /**
+     * Splits a row into fields, same as text.substring(start, end).split(separator, -1) but without copying.
+     * @param text  the text that contains the row
+     * @param start the index of the first character of the row
+     * @param end   the index after the last character of the row
+     * @return the number of fields
+     */
+    int decode(String text, int start, int end) {
+        this.text = text;
+        rowStart = start;
+        rowEnd = end;
+        fieldCount = 0;
+        error = null;
+
+        int fieldStart = start;
+        boolean fieldEscaped = false;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                // The next character is part of the field, even if it's the separator
+                fieldEscaped = true;
+                i++;
+            } else if (c == separator) {
+                addField(fieldStart, i, fieldEscaped);
+                fieldStart = i + 1;
+                fieldEscaped = false;
+            }
+        }
+        addField(fieldStart, end, fieldEscaped);
+        return fieldCount;
+    }
+
+    private void addField(int start, int end, boolean fieldEscaped) {
+        if (fieldCount == starts.length) {
+            starts = Arrays.copyOf(starts, fieldCount * 2);
+            ends = Arrays.copyOf(ends, fieldCount * 2);
+            escaped = Arrays.copyOf(escaped, fieldCount * 2);
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        escaped[fieldCount] = fieldEscaped;
+        fieldCount++;
+    }
+
+    int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * @return the first error of the current row or null if all values were valid
+     */
+    String getError() {
+        return error;
+    }
+
+    /**
+     * @return the current row, only used for error messages
+     */
+    String getRow() {
+        return text.substring(rowStart, rowEnd);
+    }
+
+    private void fail(String message) {
+        if (error == null) {
+            error = message;
+        }
+    }
+
+    String getString(int field) {
+        if (!escaped[field]) {
+            return text.substring(starts[field], ends[field]);
+        }
+
+        StringBuilder builder = new StringBuilder(ends[field] - starts[field]);
+        for (int i = starts[field]; i < ends[field]; i++) {
+            char c = text.charAt(i);
+            char next = i + 1 < ends[field] ? text.charAt(i + 1) : 0;
+            if (c == '\\' && (next == separator || next == '\\' || next == 'n' || next == 'r')) {
+                builder.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+                i++;
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Same as Boolean.parseBoolean(), everything except "true" (ignoring case) is false.
+     */
+    boolean getBoolean(int field) {
+        int start = starts[field];
+        return ends[field] - start == 4 && text.regionMatches(true, start, "true", 0, 4);
+    }
+
+    /**
+     * Same as Integer.parseInt() for ASCII digits.
+     * @return the value or 0 if the field isn't a valid int
+     */
+    int getInt(int field) {
+        return (int) parseLong(field, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Same as Long.parseLong() for ASCII digits.
+     * @return the value or 0 if the field isn't a valid long
+     */
+    long getLong(int field) {
+        return parseLong(field, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    private long parseLong(int field, long min, long max) {
+        int start = starts[field];
+        int end = ends[field];
+        int i = start;
+        boolean negative = false;
+        if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+        if (i == end) {
+            return invalidNumber(field);
+        }
+
+        // Accumulated negatively like Long.parseLong(), so the minimum value doesn't overflow
+        long limit = negative ? min : -max;
+        long multiplyLimit = limit / 10;
+        long result = 0;
+        for (; i < end; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < multiplyLimit) {
+                return invalidNumber(field);
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                return invalidNumber(field);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    private long invalidNumber(int field) {
+        fail("Error parsing number: For input string: \"" + getString(field) + "\"");
+        return 0;
+    }
+
+    /**
+     * Same as Double.parseDouble(), numbers like 200.99 are parsed directly and are exactly the same double.
+     * @return the value or 0 if the field isn't a valid double
+     */
+    double getDouble(int field) {
+        int start = starts[field];
+        int end = ends[field];
+        int i = start;
+        boolean negative = false;
+        if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int integerDigits = 0;
+        int fractionDigits = -1;
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (mantissa != 0 || c != '0') {
+                    digits++;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                } else {
+                    integerDigits++;
+                }
+            } else if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                break;
+            }
+            if (digits > MAX_EXACT_DIGITS) {
+                break;
+            }
+        }
+
+        // Both the mantissa and the power of ten are exact, so the division is rounded like Double.parseDouble()
+        if (i == end && integerDigits > 0 && fractionDigits != 0 && fractionDigits < POWERS_OF_TEN.length) {
+            double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+            return negative ? -value : value;
+        }
+
+        // Unusual form, for example 1e3, .5 or a number with many digits
+        try {
+            return Double.parseDouble(getString(field));
+        } catch (NumberFormatException e) {
+            fail("Error parsing number: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Same as LocalDate.parse() with getDateTimeFormatter() (dd-MM-yyyy). Like the formatter a day that doesn't exist
+     * in the month (31-04) becomes the last day of the month.
+     * @return the date or null if the field isn't a valid date
+     */
+    LocalDate getDate(int field) {
+        int start = starts[field];
+        if (ends[field] - start != DATE_LENGTH || text.charAt(start + 2) != '-' || text.charAt(start + 5) != '-') {
+            return parseDate(field);
+        }
+        int day = digits(start, 2);
+        int month = digits(start + 3, 2);
+        int year = digits(start + 6, 4);
+        if (day < 0 || month < 0 || year < 0) {
+            return parseDate(field);
+        }
+
+        if (day < 1 || day > 31) {
+            return invalidDate(field, "DayOfMonth (valid values 1 - 28/31): " + day);
+        }
+        if (month < 1 || month > 12) {
+            return invalidDate(field, "MonthOfYear (valid values 1 - 12): " + month);
+        }
+        if (year < 1) {
+            return invalidDate(field, "YearOfEra (valid values 1 - 999999999/1000000000): " + year);
+        }
+        int lengthOfMonth = switch (month) {
+            case 2 -> Year.isLeap(year) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+        return LocalDate.of(year, month, Math.min(day, lengthOfMonth));
+    }
+
+    /**
+     * @return the value of the ASCII digits or -1 if a character isn't a digit
+     */
+    private int digits(int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private LocalDate invalidDate(int field, String reason) {
+        fail("Error parsing date: Text '" + getString(field) + "' could not be parsed: Invalid value for " + reason);
+        return null;
+    }
+
+    // Unusual form, for example a year with a sign, or an invalid date
+    private LocalDate parseDate(int field) {
+        try {
+            return LocalDate.parse(getString(field), getDateTimeFormatter());
+        } catch (DateTimeException e) {
+            fail("Error parsing date: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return the fields of the current row like Arrays.toString(), only used for debug output
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (int field = 0; field < fieldCount; field++) {
+            if (field > 0) {
+                builder.append(", ");
+            }
+            builder.append(text, starts[field], ends[field]);
+        }
+        return builder.append(']').toString();
+    }
+}
@@ -0,0 +1,230 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.Locale;
+import static nl.hva.oop.practicumopdracht.MainApplication.getDateTimeFormatter;
+
+/**
+ * RowEncoder
+ * Writes the rows of the text DAO classes as UTF-8 without String.format() per row, the counterpart of RowDecoder.
+ * The fields are encoded straight into one reusable byte buffer that is written to the stream in large blocks.
+ * The separator is written before every field except the first field of a row. In text fields the separator, the
+ * backslash and line breaks are escaped with a backslash, so a description with a separator no longer corrupts the row.
+ * The output is the same as the String.format() calls this class replaces, apart from the escaping.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+final class RowEncoder implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Longest field that isn't a text field: Long.MIN_VALUE has 20 characters
+    private static final int MAX_NUMBER_LENGTH = 20;
+    // Below this value cost * 100 is precise enough to round it without the formatter (see writeCost())
+    private static final double MAX_FAST_COST = 1e7;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes();
+    private final OutputStream outputStream;
+    private final byte separator;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private boolean firstField = true;
+
+    /**
+     * @param separator an ASCII character
+     */
+    RowEncoder(OutputStream outputStream, char separator) {
+        if (separator >= 0x80 || separator == '\\') {
+            throw new IllegalArgumentException("The separator must be an ASCII character other than a backslash!");
+        }
+        this.outputStream = outputStream;
+        this.separator = (byte) separator;
+    }
+
+    private void ensureCapacity(int length) throws IOException {
+        if (BUFFER_SIZE - position < length) {
+            flush();
+        }
+    }
+
+    private void startField() throws IOException {
+        ensureCapacity(1 + MAX_NUMBER_LENGTH);
+        if (firstField) {
+            firstField = false;
+        } else {
+            buffer[position++] = separator;
+        }
+    }
+
+    /**
+     * Writes a text field, null is written as "null" like String.format() does.
+     */
+    RowEncoder writeString(String value) throws IOException {
+        startField();
+        if (value == null) {
+            value = "null";
+        }
+
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            // A character is at most 4 bytes (a surrogate pair), an escaped character 2 bytes
+            ensureCapacity(4);
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c == separator || c == '\\') {
+                    buffer[position++] = '\\';
+                    buffer[position++] = (byte) c;
+                } else if (c == '\n') {
+                    buffer[position++] = '\\';
+                    buffer[position++] = 'n';
+                } else if (c == '\r') {
+                    buffer[position++] = '\\';
+                    buffer[position++] = 'r';
+                } else {
+                    buffer[position++] = (byte) c;
+                }
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | c >> 6);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length &&
+                    Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | codePoint >> 18);
+                buffer[position++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                buffer[position++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                // Same replacement as the UTF-8 encoder of the JDK
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | c >> 12);
+                buffer[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return this;
+    }
+
+    RowEncoder writeLong(long value) throws IOException {
+        startField();
+        appendLong(value);
+        return this;
+    }
+
+    RowEncoder writeBoolean(boolean value) throws IOException {
+        startField();
+        appendAscii(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Writes a date as dd-MM-yyyy, same as getDateTimeFormatter().format(date).
+     */
+    RowEncoder writeDate(LocalDate date) throws IOException {
+        startField();
+        int year = date.getYear();
+        if (year < 1 || year > 9999) {
+            // The formatter writes these years with a sign or as year of era
+            appendAscii(getDateTimeFormatter().format(date));
+            return this;
+        }
+        appendDigits(date.getDayOfMonth(), 2);
+        buffer[position++] = '-';
+        appendDigits(date.getMonthValue(), 2);
+        buffer[position++] = '-';
+        appendDigits(year, 4);
+        return this;
+    }
+
+    /**
+     * Writes a cost with 2 decimals, same as String.format(Locale.US, "%.2f", cost).
+     * cost * 100 is within a millionth of the exact value for costs below MAX_FAST_COST, so it can be rounded directly.
+     * A cost that close to half a cent is left to the formatter, it rounds the shortest decimal form of the double
+     * (1.005 becomes 1.01) instead of the exact value.
+     */
+    RowEncoder writeCost(double cost) throws IOException {
+        startField();
+        double absolute = Math.abs(cost);
+        double cents = absolute * 100;
+        // Also true for Infinity and NaN
+        if (!(absolute < MAX_FAST_COST) || Math.abs(cents - Math.floor(cents) - 0.5) < 1e-6) {
+            appendAscii(String.format(Locale.US, "%.2f", cost));
+            return this;
+        }
+        long roundedCents = (long) Math.floor(cents + 0.5);
+
+        // The formatter keeps the sign of negative numbers that round to zero, -0.001 becomes -0.00
+        if (Double.doubleToRawLongBits(cost) < 0) {
+            buffer[position++] = '-';
+        }
+        appendLong(roundedCents / 100);
+        buffer[position++] = '.';
+        appendDigits((int) (roundedCents % 100), 2);
+        return this;
+    }
+
+    /**
+     * Ends the row with the line separator of the system, same as BufferedWriter.newLine().
+     */
+    void endRow() throws IOException {
+        ensureCapacity(LINE_SEPARATOR.length);
+        System.arraycopy(LINE_SEPARATOR, 0, buffer, position, LINE_SEPARATOR.length);
+        position += LINE_SEPARATOR.length;
+        firstField = true;
+    }
+
+    private void appendAscii(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            ensureCapacity(1);
+            buffer[position++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void appendLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            appendAscii(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int length = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            length++;
+        }
+        for (int i = position + length - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position += length;
+    }
+
+    private void appendDigits(int value, int length) {
+        for (int i = position + length - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position += length;
+    }
+
+    /**
+     * Writes the buffer to the stream.
+     */
+    void flush() throws IOException {
+        outputStream.write(buffer, 0, position);
+        position = 0;
+    }
+
+    /**
+     * Writes the buffer and closes the stream.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            outputStream.close();
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import org.apache.commons.io.FileUtils;
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static nl.hva.oop.practicumopdracht.Main.DEBUG;
+import static nl.hva.oop.practicumopdracht.Main.getAppDataDirectory;
+
+/**
+ * SaveTransaction
+ * Saves the data files of the DAOs crash-safe and together, so the tickets never refer to persons of another save.
+ * The DAOs write their files with openOutputStream(), which writes to a temporary file next to the data file, for
+ * example Persons.dat.tmp. commit() publishes all files of the transaction at once:
+ * 1. The temporary files are forced to the disk in parallel, one fsync batch for all files (group commit).
+ * 2. Save.manifest with the names of the data files is written, forced and renamed into place. Once this rename is on
+ *    the disk, the save is complete.
+ * 3. The temporary files are renamed to the data files and the manifest is deleted.
+ * If the application stops before step 2, the old data files are still intact. If it stops after step 2, recover()
+ * finishes the renames of the manifest before the next load or save. A rename that fails after step 2 is finished by
+ * recover() as well, the temporary files of a published manifest are never deleted. A transaction with one file
+ * doesn't need a manifest.
+ * save() of a DAO joins the transaction of its thread, for example the one of DAOTask.save(), or is a transaction of
+ * its own. The DAOs that save in place (mapped, journal and database) have their own way to be crash-safe and don't
+ * take part in the transaction.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+public final class SaveTransaction implements AutoCloseable {
+    private static final String MANIFEST_NAME = "Save.manifest";
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static final ThreadLocal<SaveTransaction> CURRENT = new ThreadLocal<>();
+    // One manifest at a time, recover() waits for a commit that is running
+    private static final Object MANIFEST_LOCK = new Object();
+    // The transaction this one is part of, null for the transaction that commits
+    private final SaveTransaction outer;
+    // The data files with their temporary files
+    private final Map<File, File> files = new LinkedHashMap<>();
+    private final List<Runnable> commitActions = new ArrayList<>();
+    private boolean committed;
+    // True once the manifest is in place, from then on the save is complete even if a rename fails
+    private boolean published;
+    // False if the files of an earlier published manifest couldn't be renamed, their temporary files can't be reused
+    private boolean recovered = true;
+
+    private SaveTransaction(SaveTransaction outer) {
+        this.outer = outer;
+    }
+
+    /**
+     * Starts a transaction on this thread, or joins the transaction that is already running on this thread. A joined
+     * transaction is published by the commit() of the outer transaction.
+     * Use try-with-resources: close() undoes the files of a transaction that hasn't been committed.
+     */
+    public static SaveTransaction begin() {
+        SaveTransaction current = CURRENT.get();
+        SaveTransaction transaction = new SaveTransaction(current);
+        if (current == null) {
+            // The temporary files of an unfinished manifest must be published before they are written again
+            transaction.recovered = recover();
+            CURRENT.set(transaction);
+        }
+        return transaction;
+    }
+
+    /**
+     * Opens the file of a DAO for writing, the file is written to its temporary file until the transaction of this
+     * thread is committed. Outside a transaction the file is written directly.
+     */
+    static OutputStream openOutputStream(File file) throws IOException {
+        SaveTransaction transaction = CURRENT.get();
+        if (transaction == null) {
+            return FileUtils.openOutputStream(file);
+        }
+        if (!transaction.recovered) {
+            throw new IOException("The previous save couldn't be finished, see " + MANIFEST_NAME);
+        }
+        File target = file.getAbsoluteFile();
+        File tempFile = getTempFile(target);
+        transaction.files.put(target, tempFile);
+        return FileUtils.openOutputStream(tempFile);
+    }
+
+    /**
+     * @return the temporary file of the file if the transaction of this thread has written it, otherwise the file
+     * itself, so a file that is written twice in a transaction can be read in between
+     */
+    static File getWrittenFile(File file) {
+        SaveTransaction transaction = CURRENT.get();
+        File tempFile = transaction == null ? null : transaction.files.get(file.getAbsoluteFile());
+        return tempFile == null ? file : tempFile;
+    }
+
+    /**
+     * Runs an action after the files have been published, for example to forget the saved changes.
+     */
+    void onCommit(Runnable action) {
+        if (outer != null) {
+            outer.onCommit(action);
+        } else {
+            commitActions.add(action);
+        }
+    }
+
+    /**
+     * Publishes the files of the transaction. A joined transaction returns true, its files are published by the outer
+     * transaction.
+     * @return true if the files have been published
+     */
+    public boolean commit() {
+        if (outer != null) {
+            return true;
+        }
+
+        try {
+            publish();
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("An error occurred while publishing the saved files: " + e.getMessage());
+            // After the manifest is in place the save is complete, recover() tries the renames again
+            if (!published || !recover()) {
+                return false;
+            }
+        }
+        committed = true;
+        for (Runnable action : commitActions) {
+            action.run();
+        }
+        return true;
+    }
+
+    private void publish() throws IOException {
+        if (files.isEmpty()) {
+            return;
+        }
+        if (DEBUG) {
+            System.out.println("Publishing saved files: " + files.keySet().stream().map(File::getName).toList());
+        }
+
+        // One batch of fsyncs for all files, the files are forced at the same time
+        files.values().parallelStream().forEach(tempFile -> {
+            try {
+                force(tempFile.toPath());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        if (files.size() == 1) {
+            Map.Entry<File, File> file = files.entrySet().iterator().next();
+            move(file.getValue(), file.getKey());
+            forceDirectory(file.getKey().getParentFile());
+            return;
+        }
+
+        synchronized (MANIFEST_LOCK) {
+            File manifest = getManifest();
+            File tempManifest = getTempFile(manifest);
+            try (
+                    FileOutputStream outputStream = FileUtils.openOutputStream(tempManifest);
+                    Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)
+            ) {
+                for (File file : files.keySet()) {
+                    writer.write(file.getPath());
+                    writer.write('\n');
+                }
+                writer.flush();
+                outputStream.getChannel().force(true);
+            }
+            move(tempManifest, manifest);
+            forceDirectory(manifest.getParentFile());
+            published = true;
+
+            // The save is complete, the renames are finished by recover() if the application stops now
+            for (Map.Entry<File, File> file : files.entrySet()) {
+                move(file.getValue(), file.getKey());
+            }
+            for (File directory : files.keySet().stream().map(File::getParentFile).distinct().toList()) {
+                forceDirectory(directory);
+            }
+            Files.delete(manifest.toPath());
+        }
+    }
+
+    /**
+     * Ends the transaction, the temporary files of a transaction that hasn't been committed are deleted. The files of
+     * a published manifest are kept for recover().
+     */
+    @Override
+    public void close() {
+        if (outer != null) {
+            return;
+        }
+        CURRENT.remove();
+        if (!committed && !published) {
+            for (File tempFile : files.values()) {
+                FileUtils.deleteQuietly(tempFile);
+            }
+        }
+    }
+
+    /**
+     * Finishes a save that was interrupted after its manifest was published, called before the DAOs load their files
+     * and before a save writes its temporary files.
+     * @return true if there is no unfinished save left
+     */
+    static boolean recover() {
+        synchronized (MANIFEST_LOCK) {
+            File manifest = getManifest();
+            // A manifest that wasn't renamed into place belongs to a save that didn't complete
+            FileUtils.deleteQuietly(getTempFile(manifest));
+            if (!manifest.exists()) {
+                return true;
+            }
+
+            try {
+                for (String line : Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8)) {
+                    File file = new File(line);
+                    File tempFile = getTempFile(file);
+                    if (!line.isEmpty() && tempFile.exists()) {
+                        move(tempFile, file);
+                        forceDirectory(file.getParentFile());
+                    }
+                }
+                Files.delete(manifest.toPath());
+            } catch (IOException e) {
+                System.err.println("An error occurred while finishing the last save: " + e.getMessage());
+                return false;
+            }
+
+            if (DEBUG) {
+                System.out.println("Finished the interrupted save of " + MANIFEST_NAME);
+            }
+            return true;
+        }
+    }
+
+    private static File getManifest() {
+        return FileUtils.getFile(getAppDataDirectory(), MANIFEST_NAME);
+    }
+
+    private static File getTempFile(File file) {
+        return new File(file.getParentFile(), file.getName() + TEMP_EXTENSION);
+    }
+
+    private static void move(File source, File target) throws IOException {
+        Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void force(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Forces the renames in a directory to the disk. Not every platform can open a directory, there the rename is
+     * already durable when it returns.
+     */
+    private static void forceDirectory(File directory) {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            if (DEBUG) {
+                System.out.println("Directory can't be forced: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import static nl.hva.oop.practicumopdracht.Main.DEBUG;
+
+/**
+ * Scrubber
+ * Verifies the checksums of Persons.dat and Tickets.dat in the background (see BlockFile), without loading the files
+ * into a DAO, so damage is reported before the next load has to recover from it. The blocks are read one at a time.
+ * Files of an older version have no checksums and are skipped. A file that is saved while it's verified is verified
+ * again at the next interval, the result of that check isn't reported.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+public class Scrubber {
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Scrubber");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private final long interval;
+    private ScheduledFuture<?> scheduled;
+    private volatile long damagedCount;
+
+    /**
+     * @param interval is a Duration denoting the time between two checks
+     */
+    public Scrubber(Duration interval) {
+        if (interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("The interval must be positive!");
+        }
+        this.interval = interval.toNanos();
+    }
+
+    /**
+     * Starts checking the files, the first check runs after one interval.
+     */
+    public synchronized void start() {
+        if (scheduled == null) {
+            scheduled = SCHEDULER.scheduleWithFixedDelay(this::scrub, interval, interval, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public synchronized void stop() {
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+    }
+
+    /**
+     * Verifies the files once on the calling thread.
+     * @return true if no damage has been found
+     */
+    public boolean scrub() {
+        boolean persons = verify(BinaryPersonDAO.FILE, BinaryPersonDAO.MAGIC, BinaryPersonDAO.VERSION);
+        boolean tickets = verify(BinaryTicketDAO.FILE, BinaryTicketDAO.MAGIC, BinaryTicketDAO.VERSION);
+        return persons && tickets;
+    }
+
+    /**
+     * @return the number of checks that found damage
+     */
+    public long getDamagedCount() {
+        return damagedCount;
+    }
+
+    private boolean verify(File file, int magic, int version) {
+        long lastModified = file.lastModified();
+        long length = file.length();
+        if (!hasChecksums(file, magic, version)) {
+            return true;
+        }
+
+        List<BlockFile.Region> damaged;
+        try {
+            damaged = BlockFile.verify(file);
+        } catch (IOException e) {
+            System.err.println("An error occurred while verifying the file: " + e.getMessage());
+            return true;
+        }
+        if (file.lastModified() != lastModified || file.length() != length) {
+            if (DEBUG) {
+                System.out.println("Changed while verifying: " + file.getName());
+            }
+            return true;
+        }
+
+        if (damaged.isEmpty()) {
+            if (DEBUG) {
+                System.out.println("Verified: " + file.getName());
+            }
+            return true;
+        }
+        damagedCount++;
+        System.err.printf("%s is damaged: %d damaged part(s), the intact records are recovered by the next load%n",
+                file.getName(), damaged.size());
+        return false;
+    }
+
+    /**
+     * @return true if the file starts with the magic number and the version
+     */
+    private static boolean hasChecksums(File file, int magic, int version) {
+        if (!file.isFile() || file.length() < BlockFile.HEADER_SIZE) {
+            return false;
+        }
+        try (DataInputStream dataInputStream = new DataInputStream(Files.newInputStream(file.toPath()))) {
+            return dataInputStream.readInt() == magic && dataInputStream.readInt() == version;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
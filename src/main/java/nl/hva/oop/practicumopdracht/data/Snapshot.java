@@ -0,0 +1,22 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot
+ * The records and the tracked changes of a DAO at one version, what save() writes. The DAO keeps changing while the
+ * snapshot is saved, these changes get a higher version and are saved by the next save.
+ * Every record in a snapshot is a copy made with the lock held: the version of the last addOrUpdate() of a changed
+ * record and a copy of the object in the list otherwise. The save never reads an object of the list. Setters only
+ * exclude a snapshot when they run with the lock held, so the controllers change a record with update() of the DAO.
+ *
+ * @param records the records in the order of the list, empty for a DAO that only saves the changes (see
+ *                savesChangesOnly())
+ * @param changes the changes since the last save by ID, with the same versions of the records
+ * @param version the version of the last change in the snapshot
+ * @param <T>     model Person or Ticket
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+record Snapshot<T>(List<T> records, Map<Long, ChangeTracker.Change<T>> changes, long version) {
+}
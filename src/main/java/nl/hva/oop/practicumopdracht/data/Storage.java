@@ -0,0 +1,165 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Locale;
+import static nl.hva.oop.practicumopdracht.Main.DEBUG;
+
+/**
+ * Storage
+ * The storage formats of the DAO classes, chosen in config.properties with storage.persons and storage.tickets, for
+ * example storage.tickets=off-heap.
+ * The value auto (the default) chooses the format of the newest data file in the app data directory. A file only
+ * counts if its first bytes are the header of its format (see FormatConverter.detect()). Without data files the
+ * format is BINARY. TABLE and OFF_HEAP use the file of BINARY, so these are only used when they are configured.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+public enum Storage {
+    TEXT, BINARY, OBJECT, MAPPED, JOURNAL, TABLE, OFF_HEAP, DATABASE, DUMMY;
+
+    public static final String AUTO = "auto";
+
+    /**
+     * @return the name of the format in config.properties, for example "off-heap"
+     */
+    public String getName() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+
+    /**
+     * @return a new PersonDAO of this format or null if persons can't be stored in this format
+     */
+    public PersonDAO createPersonDAO() {
+        return switch (this) {
+            case TEXT -> new TextPersonDAO();
+            case BINARY -> new BinaryPersonDAO();
+            case MAPPED -> new MappedPersonDAO();
+            case JOURNAL -> new JournalPersonDAO();
+            case DATABASE -> new DatabasePersonDAO();
+            case DUMMY -> new DummyPersonDAO();
+            case OBJECT, TABLE, OFF_HEAP -> null;
+        };
+    }
+
+    /**
+     * @return a new TicketDAO of this format
+     */
+    public TicketDAO createTicketDAO() {
+        return switch (this) {
+            case TEXT -> new TextTicketDAO();
+            case BINARY -> new BinaryTicketDAO();
+            case OBJECT -> new ObjectTicketDAO();
+            case MAPPED -> new MappedTicketDAO();
+            case JOURNAL -> new JournalTicketDAO();
+            case TABLE -> new TableTicketDAO();
+            case OFF_HEAP -> new OffHeapTicketDAO();
+            case DATABASE -> new DatabaseTicketDAO();
+            case DUMMY -> new DummyTicketDAO();
+        };
+    }
+
+    /**
+     * @param name is a String denoting the value in config.properties, auto or the name of a format
+     * @return the format for the persons, BINARY if the name isn't a format for persons
+     */
+    public static Storage forPersons(String name) {
+        Storage storage = name.equalsIgnoreCase(AUTO) ? detect(
+                new Candidate(TEXT, TextPersonDAO.FILE, FormatConverter.Format.TEXT),
+                new Candidate(BINARY, BinaryPersonDAO.FILE, FormatConverter.Format.BINARY),
+                new Candidate(MAPPED, MappedPersonDAO.FILE, MappedPersonDAO.MAGIC),
+                new Candidate(JOURNAL, new Journal(JournalPersonDAO.DIRECTORY, JournalPersonDAO.NAME,
+                        JournalPersonDAO.MAGIC)),
+                new Candidate(DATABASE, Database.FILE, Database.HEADER)
+        ) : parse(name);
+
+        if (storage == null || storage.createPersonDAO() == null) {
+            System.err.printf("Unknown storage for persons: %s, using %s%n", name, BINARY.getName());
+            return BINARY;
+        }
+        if (DEBUG) {
+            System.out.printf("Storage for persons: %s (%s)%n", storage.getName(), name);
+        }
+        return storage;
+    }
+
+    /**
+     * @param name is a String denoting the value in config.properties, auto or the name of a format
+     * @return the format for the tickets, BINARY if the name isn't a format
+     */
+    public static Storage forTickets(String name) {
+        Storage storage = name.equalsIgnoreCase(AUTO) ? detect(
+                new Candidate(TEXT, TextTicketDAO.FILE, FormatConverter.Format.TEXT),
+                new Candidate(BINARY, BinaryTicketDAO.FILE, FormatConverter.Format.BINARY),
+                new Candidate(OBJECT, ObjectTicketDAO.FILE, FormatConverter.Format.OBJECT),
+                new Candidate(MAPPED, MappedTicketDAO.FILE, MappedTicketDAO.MAGIC),
+                new Candidate(JOURNAL, new Journal(JournalTicketDAO.DIRECTORY, JournalTicketDAO.NAME,
+                        JournalTicketDAO.MAGIC)),
+                new Candidate(DATABASE, Database.FILE, Database.HEADER)
+        ) : parse(name);
+
+        if (storage == null) {
+            System.err.printf("Unknown storage for tickets: %s, using %s%n", name, BINARY.getName());
+            return BINARY;
+        }
+        if (DEBUG) {
+            System.out.printf("Storage for tickets: %s (%s)%n", storage.getName(), name);
+        }
+        return storage;
+    }
+
+    /**
+     * @return the format with this name, for example "off-heap", or null if there is no format with this name
+     */
+    public static Storage parse(String name) {
+        for (Storage storage : values()) {
+            if (storage.getName().equalsIgnoreCase(name.trim())) {
+                return storage;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A data file of a format with the time of its last change, 0 if the file doesn't exist or has another header.
+     */
+    private record Candidate(Storage storage, long lastModified) {
+        Candidate(Storage storage, File file, FormatConverter.Format format) {
+            this(storage, FormatConverter.detect(file) == format ? file.lastModified() : 0);
+        }
+
+        Candidate(Storage storage, File file, int magic) {
+            this(storage, startsWith(file, magic) ? file.lastModified() : 0);
+        }
+
+        Candidate(Storage storage, Journal journal) {
+            this(storage, journal.lastModified());
+        }
+    }
+
+    private static Storage detect(Candidate... candidates) {
+        Candidate newest = null;
+        for (Candidate candidate : candidates) {
+            if (candidate.lastModified() > 0 && (newest == null || candidate.lastModified() > newest.lastModified())) {
+                newest = candidate;
+            }
+        }
+        return newest == null ? BINARY : newest.storage();
+    }
+
+    /**
+     * @return true if the file exists and starts with the magic number
+     */
+    static boolean startsWith(File file, int magic) {
+        if (!file.isFile() || file.length() < Integer.BYTES) {
+            return false;
+        }
+        try (DataInputStream dataInputStream = new DataInputStream(Files.newInputStream(file.toPath()))) {
+            return dataInputStream.readInt() == magic;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
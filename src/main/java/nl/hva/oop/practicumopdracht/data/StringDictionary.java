@@ -0,0 +1,100 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * StringDictionary
+ * Dictionary of the distinct values of a String column in the binary file formats, used for columns with few distinct
+ * values like the nationality of a person or the destination of a ticket.
+ * Before saving, every value is added and the dictionary is written once at the start of the file. The records then
+ * contain the code of the value (a varint) instead of the value itself. After loading, every distinct value is one
+ * String that is shared by all records with that value.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+final class StringDictionary {
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    /**
+     * Adds a value if it isn't in the dictionary yet.
+     * @param value is a String, can be null
+     * @return the code of the value
+     */
+    int add(String value) {
+        return codes.computeIfAbsent(value, _ -> {
+            values.add(value);
+            return values.size() - 1;
+        });
+    }
+
+    /**
+     * @return the value of a code, every code returns the same String instance
+     */
+    String get(int code) {
+        return values.get(code);
+    }
+
+    int size() {
+        return values.size();
+    }
+
+    /**
+     * Writes the code of a value that has been added to the dictionary.
+     */
+    void writeCode(DataOutput output, String value) throws IOException {
+        Integer code = codes.get(value);
+        if (code == null) {
+            throw new IllegalStateException("Value isn't in the dictionary: " + value);
+        }
+        BinaryFormat.writeVarInt(output, code);
+    }
+
+    /**
+     * Reads a code and returns the value, every code returns the same String instance.
+     */
+    String readValue(DataInput input) throws IOException {
+        return values.get(readCode(input));
+    }
+
+    /**
+     * Reads a code and checks that it's in the dictionary.
+     */
+    int readCode(DataInput input) throws IOException {
+        int code = BinaryFormat.readVarInt(input);
+        if (code < 0 || code >= values.size()) {
+            throw new IOException("Invalid dictionary code: " + code);
+        }
+        return code;
+    }
+
+    /**
+     * Writes the number of values followed by the values in the order of their codes.
+     */
+    void write(DataOutput output) throws IOException {
+        BinaryFormat.writeVarInt(output, values.size());
+        for (String value : values) {
+            BinaryFormat.writeString(output, value);
+        }
+    }
+
+    static StringDictionary read(DataInput input) throws IOException {
+        StringDictionary dictionary = new StringDictionary();
+        int size = BinaryFormat.readVarInt(input);
+        if (size < 0) {
+            throw new IOException("Invalid dictionary size: " + size);
+        }
+        for (int i = 0; i < size; i++) {
+            String value = BinaryFormat.readString(input);
+            dictionary.codes.putIfAbsent(value, i);
+            dictionary.values.add(value);
+        }
+        return dictionary;
+    }
+}
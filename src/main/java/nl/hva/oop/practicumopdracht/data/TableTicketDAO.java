@@ -0,0 +1,458 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import nl.hva.oop.practicumopdracht.models.Person;
+import nl.hva.oop.practicumopdracht.models.Ticket;
+import org.apache.commons.io.FileUtils;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.ConcurrentModificationException;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import static nl.hva.oop.practicumopdracht.Main.DEBUG;
+import static nl.hva.oop.practicumopdracht.Main.getAppDataDirectory;
+import static nl.hva.oop.practicumopdracht.MainApplication.getPersonDAO;
+
+/**
+ * TableTicketDAO - TableDetailDAO
+ * This is a DAO class which keeps the tickets in primitive columns (see TicketTable) instead of a list of Ticket
+ * objects, so a large number of tickets costs little memory and little garbage collection.
+ * A Ticket object is only created when the list or getAllFor() requests the ticket, and is then kept so the same
+ * ticket is always the same object. Changes are written to the columns by addOrUpdate().
+ * Sorting, filtering and aggregation (see the methods below getAllFor()) run directly over the columns. A sorted list
+ * is a snapshot, it doesn't change with the tickets and can't be used after the next load or save.
+ * The tickets are saved in Tickets.dat, in the same format as the BinaryTicketDAO.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+public class TableTicketDAO extends TicketDAO {
+    private static final String DIRECTORY_NAME = getAppDataDirectory();
+    private static final String FILE_NAME = "Tickets.dat";
+    private static final File DIRECTORY = FileUtils.getFile(DIRECTORY_NAME);
+    private static final File FILE = FileUtils.getFile(DIRECTORY, FILE_NAME);
+    private final Function<StringDictionary, TicketTable> tableFactory;
+    private TicketTable table;
+    // Created tickets by row and the other way around
+    private Ticket[] materialized = new Ticket[0];
+    private final Map<Ticket, Integer> materializedRows = new IdentityHashMap<>();
+    // Set by a load that skipped damaged blocks, the tickets are then saved again
+    private boolean recovered;
+    // Counts the loads and compactions, after these the rows of a sorted list are other tickets
+    private int generation;
+
+    public TableTicketDAO() {
+        this(ArrayTicketTable::new);
+    }
+
+    /**
+     * @param tableFactory creates the table for a destination dictionary, see OffHeapTicketDAO
+     */
+    TableTicketDAO(Function<StringDictionary, TicketTable> tableFactory) {
+        this.tableFactory = tableFactory;
+        table = tableFactory.apply(new StringDictionary());
+    }
+
+    @Override
+    protected boolean loadLocked() throws FileNotFoundException {
+        if (DEBUG) {
+            System.out.printf("%n******** Debug info%n* App data directory: %s%n* Full path to file: %s%n********%n%n",
+                    DIRECTORY.getAbsolutePath(), FILE.getAbsolutePath());
+        }
+
+        // Ensure the directory exists
+        try {
+            FileUtils.forceMkdir(DIRECTORY);
+        } catch (IOException e) {
+            System.err.println("An error occurred while creating the directory: " + e.getMessage());
+            return false;
+        }
+
+        // The BinaryTicketDAO creates the file or migrates Tickets.obj, it looks up the owners itself
+        if (!FILE.exists()) {
+            awaitPersons();
+            if (!new BinaryTicketDAO().load()) {
+                return false;
+            }
+        }
+
+        if (DEBUG) {
+            System.out.println("Loading data: " + FILE_NAME);
+        }
+
+        // Clear the list before loading new data
+        clearAll();
+        replaceTable(new StringDictionary());
+        materializedRows.clear();
+
+        try (DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(
+                FileUtils.openInputStream(FILE)))) {
+            // The rows are decoded into the columns while the file is read
+            if (FILE.length() > 0 && !readTable(dataInputStream)) {
+                replaceTable(new StringDictionary());
+                return false;
+            }
+        } catch (IOException e) {
+            System.err.println("Something went wrong while reading the file: " + e.getMessage());
+            replaceTable(new StringDictionary());
+            return false;
+        } finally {
+            materialized = new Ticket[table.getRowCount()];
+            tickets = new LazyList<>(table.getRowCount(), decoder());
+        }
+
+        if (DEBUG) {
+            System.out.println("Loading complete: " + FILE_NAME);
+        }
+        if (recovered) {
+            recovered = false;
+            return saveLocked();
+        }
+        return true;
+    }
+
+    private boolean readTable(DataInputStream dataInputStream) throws IOException {
+        if (dataInputStream.readInt() != BinaryTicketDAO.MAGIC) {
+            System.err.println("Not a tickets file: " + FILE_NAME);
+            return false;
+        }
+        int version = dataInputStream.readInt();
+        if (version > BinaryTicketDAO.VERSION) {
+            System.err.printf("Unsupported file version %d: %s%n", version, FILE_NAME);
+            return false;
+        }
+        if (version == BinaryTicketDAO.VERSION) {
+            return readBlocks();
+        }
+
+        int arraySize = dataInputStream.readInt();
+        // Version 1 files have no dictionary, the destinations are added to a new one
+        StringDictionary destinations = version >= 2 ? StringDictionary.read(dataInputStream) : null;
+        replaceTable(destinations == null ? new StringDictionary() : destinations);
+        // The table uses the dictionary of the file, so the codes are the same
+        int[] destinationCodes = destinations == null ? null : IntStream.range(0, destinations.size()).toArray();
+        for (int i = 0; i < arraySize; i++) {
+            readRow(dataInputStream, destinationCodes);
+        }
+        return true;
+    }
+
+    /**
+     * Reads the blocks of Tickets.dat version 3 into the table. The blocks are read and verified one at a time (see
+     * BlockFile) and the rows are decoded into the table, damaged blocks are handled like the BinaryTicketDAO does.
+     */
+    private boolean readBlocks() throws IOException {
+        try (BlockFile.Contents contents = BlockFile.read(FILE)) {
+            contents.forEach((dataInputStream, recordCount) -> {
+                // The codes of the block are translated to the codes of the table
+                StringDictionary destinations = StringDictionary.read(dataInputStream);
+                int[] codes = new int[destinations.size()];
+                for (int code = 0; code < codes.length; code++) {
+                    codes[code] = table.getDestinationDictionary().add(destinations.get(code));
+                }
+                for (int i = 0; i < recordCount; i++) {
+                    readRow(dataInputStream, codes);
+                }
+            });
+            if (!contents.isDamaged()) {
+                return true;
+            }
+
+            System.err.printf("%s is damaged: %s, %d tickets recovered%n", FILE_NAME, contents.describeDamage(),
+                    table.getRowCount());
+            // The tickets are saved again without the damaged blocks when the load is complete, see loadLocked()
+            recovered = contents.quarantine(FILE) != null;
+            return true;
+        }
+    }
+
+    /**
+     * Reads one row in the layout of Tickets.dat and adds it to the table.
+     * @param codes the codes of the table by the codes in the file or null if the destination itself is in the file
+     */
+    private void readRow(DataInput input, int[] codes) throws IOException {
+        long id = input.readLong();
+        long owner = input.readLong();
+        int startDay = input.readInt();
+        int endDay = input.readInt();
+        double cost = input.readDouble();
+        int flags = input.readUnsignedByte();
+        int destination;
+        if (codes == null) {
+            destination = table.getDestinationDictionary().add(BinaryFormat.readString(input));
+        } else {
+            int code = BinaryFormat.readVarInt(input);
+            if (code < 0 || code >= codes.length) {
+                throw new IOException("Invalid dictionary code: " + code);
+            }
+            destination = codes[code];
+        }
+        String description = BinaryFormat.readString(input);
+
+        int row = table.addRow();
+        table.set(row, id == 0 ? idAllocator.next() : id, owner, startDay, endDay, cost,
+                (flags & BinaryTicketDAO.FLAG_CHECKED_IN) != 0, destination, description);
+        idAllocator.observe(table.getId(row));
+    }
+
+    /**
+     * Replaces the table by a new empty table and frees the memory of the old table.
+     */
+    private void replaceTable(StringDictionary destinations) {
+        table.close();
+        table = tableFactory.apply(destinations);
+        generation++;
+    }
+
+    @Override
+    protected boolean saveSnapshot(Snapshot<Ticket> snapshot) {
+        if (DEBUG) {
+            System.out.println("\nSaving data: " + FILE_NAME);
+        }
+
+        // Tickets changed with a setter but not with addOrUpdate() are saved as well, like in the other DAO classes
+        for (Map.Entry<Ticket, Integer> entry : materializedRows.entrySet()) {
+            if (!table.isDeleted(entry.getValue())) {
+                table.set(entry.getValue(), entry.getKey());
+            }
+        }
+        compact();
+
+        try (BlockFile.Writer<Integer> writer = new BlockFile.Writer<>(SaveTransaction.openOutputStream(FILE),
+                BinaryTicketDAO.MAGIC, BinaryTicketDAO.VERSION, this::writeBlock)) {
+            for (int row = 0; row < table.getRowCount(); row++) {
+                writer.write(row);
+            }
+
+            if (DEBUG) {
+                System.out.println("Saving data complete: " + FILE_NAME);
+            }
+        } catch (IOException e) {
+            System.err.println("An error occurred while saving the file: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+
+        return idAllocator.save();
+    }
+
+    /**
+     * Writes the rows of a block in the layout of Tickets.dat version 3, with a dictionary of the destinations of these
+     * rows.
+     */
+    private void writeBlock(DataOutput output, List<Integer> rows) throws IOException {
+        StringDictionary destinations = new StringDictionary();
+        for (int row : rows) {
+            destinations.add(table.getDestination(row));
+        }
+        destinations.write(output);
+
+        for (int row : rows) {
+            output.writeLong(table.getId(row));
+            output.writeLong(table.getOwner(row));
+            output.writeInt(table.getStartDay(row));
+            output.writeInt(table.getEndDay(row));
+            output.writeDouble(table.getCost(row));
+            output.writeByte(table.isCheckedIn(row) ? BinaryTicketDAO.FLAG_CHECKED_IN : 0);
+            destinations.writeCode(output, table.getDestination(row));
+            BinaryFormat.writeString(output, table.getDescription(row));
+        }
+    }
+
+    /**
+     * Removes the deleted rows from the table, the list keeps its order because rows are only added at the end.
+     */
+    private void compact() {
+        int[] newRows = table.compact();
+        Ticket[] compacted = new Ticket[table.getRowCount()];
+        materializedRows.clear();
+        for (int row = 0; row < newRows.length; row++) {
+            if (newRows[row] >= 0 && materialized[row] != null) {
+                compacted[newRows[row]] = materialized[row];
+                materializedRows.put(materialized[row], newRows[row]);
+            }
+        }
+        materialized = compacted;
+        tickets = new LazyList<>(table.getRowCount(), decoder());
+        generation++;
+    }
+
+    /**
+     * Tickets are created from the columns on a lookup, so lookups take the lock exclusively.
+     */
+    @Override
+    protected boolean decodesOnRead() {
+        return true;
+    }
+
+    @Override
+    protected List<Ticket> getAllForLocked(Person person) {
+        return materialize(table.findRows(ownerId(person)));
+    }
+
+    /**
+     * @return all tickets sorted by start date and then by destination, the tickets are created when requested. A save
+     * or load renumbers the rows, after that get() of the list throws a ConcurrentModificationException.
+     */
+    public List<Ticket> getAllSortedByDate(boolean ascending) {
+        return read(() -> {
+            int[] rows = table.liveRows();
+            table.sortByStartDate(rows, ascending);
+            return new LazyList<>(rows, lockingDecoder(generation));
+        });
+    }
+
+    /**
+     * @return all tickets sorted by cost, the tickets are created when requested. A save or load renumbers the rows,
+     * after that get() of the list throws a ConcurrentModificationException.
+     */
+    public List<Ticket> getAllSortedByCost(boolean ascending) {
+        return read(() -> {
+            int[] rows = table.liveRows();
+            table.sortByCost(rows, ascending);
+            return new LazyList<>(rows, lockingDecoder(generation));
+        });
+    }
+
+    /**
+     * @return the total cost of the tickets of the person, every cost rounded to whole cents
+     */
+    public double getTotalCost(Person person) {
+        return read(() -> table.sumCostCents(table.findRows(ownerId(person))) / 100.0);
+    }
+
+    /**
+     * @return the number of tickets of the person that are checked in
+     */
+    public int getCheckedInCount(Person person) {
+        return read(() -> table.countCheckedIn(table.findRows(ownerId(person))));
+    }
+
+    @Override
+    protected void removeAllForLocked(Person person) {
+        BitSet removedRows = new BitSet();
+        for (int row : table.findRows(ownerId(person))) {
+            table.delete(row);
+            removedRows.set(row);
+            changes.deleted(table.getId(row), materialized[row]);
+        }
+        ((LazyList<Ticket>) tickets).removeRows(removedRows);
+    }
+
+    @Override
+    protected void addOrUpdateLocked(Ticket ticket) {
+        if (ticket.getId() == 0) {
+            ticket.setId(idAllocator.next());
+        }
+
+        Integer row = materializedRows.get(ticket);
+        if (row != null && !table.isDeleted(row)) {
+            table.set(row, ticket);
+            changes.updated(ticket.getId(), ticket);
+            return;
+        }
+
+        int newRow = table.addRow();
+        table.set(newRow, ticket);
+        if (newRow >= materialized.length) {
+            materialized = Arrays.copyOf(materialized, Math.max(newRow + 1, materialized.length * 3 / 2));
+        }
+        materialized[newRow] = ticket;
+        materializedRows.put(ticket, newRow);
+        ((LazyList<Ticket>) tickets).addRow(newRow);
+        changes.inserted(ticket.getId(), ticket);
+    }
+
+    @Override
+    protected boolean unlink(Ticket ticket) {
+        Integer row = materializedRows.get(ticket);
+        if (row == null || table.isDeleted(row)) {
+            return false;
+        }
+        table.delete(row);
+        changes.deleted(ticket.getId(), ticket);
+        return true;
+    }
+
+    private List<Ticket> materialize(int[] rows) {
+        List<Ticket> result = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            result.add(materialize(row));
+        }
+        return result;
+    }
+
+    private Ticket materialize(int row) {
+        Ticket ticket = materialized[row];
+        if (ticket == null) {
+            long owner = table.getOwner(row);
+            ticket = new Ticket(
+                    owner == 0 ? null : getPersonDAO().getById(owner),
+                    table.getDestination(row),
+                    table.getStartDate(row),
+                    table.getEndDate(row),
+                    table.getCost(row),
+                    table.isCheckedIn(row),
+                    table.getDescription(row)
+            );
+            ticket.setId(table.getId(row));
+            // These records don't go through addLoaded()
+            canonicalize(ticket);
+            materialized[row] = ticket;
+            materializedRows.put(ticket, row);
+        }
+        return ticket;
+    }
+
+    private LazyList.Decoder<Ticket> decoder() {
+        return new LazyList.Decoder<>() {
+            @Override
+            public Ticket decode(int row) {
+                return materialize(row);
+            }
+
+            @Override
+            public Ticket getIfDecoded(int row) {
+                return materialized[row];
+            }
+        };
+    }
+
+    /**
+     * The decoder for lists that are returned to the caller, these are read without the lock held.
+     * @param listGeneration is an int denoting the generation of the table when the rows of the list were taken
+     */
+    private LazyList.Decoder<Ticket> lockingDecoder(int listGeneration) {
+        return new LazyList.Decoder<>() {
+            @Override
+            public Ticket decode(int row) {
+                return read(() -> {
+                    checkGeneration(listGeneration);
+                    return materialize(row);
+                });
+            }
+
+            @Override
+            public Ticket getIfDecoded(int row) {
+                return read(() -> {
+                    checkGeneration(listGeneration);
+                    return materialized[row];
+                });
+            }
+        };
+    }
+
+    private void checkGeneration(int listGeneration) {
+        if (listGeneration != generation) {
+            throw new ConcurrentModificationException("The tickets have been saved or loaded after the list was " +
+                    "sorted");
+        }
+    }
+
+    private static long ownerId(Person person) {
+        return person == null ? 0 : person.getId();
+    }
+}
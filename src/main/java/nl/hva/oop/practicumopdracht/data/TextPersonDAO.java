@@ -3,13 +3,9 @@ package nl.hva.oop.practicumopdracht.data;
 import nl.hva.oop.practicumopdracht.models.Person;
 import org.apache.commons.io.FileUtils;
 import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.time.DateTimeException;
-import java.time.LocalDate;
-import java.util.Arrays;
+import java.nio.file.NoSuchFileException;
 import static nl.hva.oop.practicumopdracht.Main.getAppDataDirectory;
 import static nl.hva.oop.practicumopdracht.Main.DEBUG;
-import static nl.hva.oop.practicumopdracht.MainApplication.getDateTimeFormatter;
 
 /**
  * TextPersonDAO - TextMasterDAO
@@ -20,13 +16,15 @@ import static nl.hva.oop.practicumopdracht.MainApplication.getDateTimeFormatter;
  */
 public class TextPersonDAO extends PersonDAO {
     private static final String DIRECTORY_NAME = getAppDataDirectory();
-    private static final String FILE_NAME = "Persons.txt";
+    static final String FILE_NAME = "Persons.txt";
     private static final File DIRECTORY = FileUtils.getFile(DIRECTORY_NAME);
-    private static final File FILE = FileUtils.getFile(DIRECTORY, FILE_NAME);
-    private static final String SEPARATOR = ";";
+    static final File FILE = FileUtils.getFile(DIRECTORY, FILE_NAME);
+    static final char SEPARATOR = ';';
+    // Rows without an ID (7 fields) are from before persons had an ID and get a new ID in addLoaded()
+    private static final int FIELDS_WITHOUT_ID = 7;
 
     @Override
-    public boolean load() {
+    protected boolean loadLocked() {
         if (DEBUG) {
             System.out.printf("%n******** Debug info%n* App data directory: %s%n* Full path to file: %s%n********%n%n",
                     DIRECTORY.getAbsolutePath(), FILE.getAbsolutePath());
@@ -50,40 +48,16 @@ public class TextPersonDAO extends PersonDAO {
             System.out.println("Loading data: " + FILE_NAME);
         }
 
-        try (
-                InputStream inputStream = FileUtils.openInputStream(FILE);
-                InputStreamReader inputStreamReader = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
-                BufferedReader bufferedReader = new BufferedReader(inputStreamReader)
-        ) {
+        try {
             // Clear the list before loading new data
-            persons.clear();
-
-            String line = bufferedReader.readLine();
-            while (line != null) {
-                String[] values = line.split(SEPARATOR);
-
-                if (DEBUG) {
-                    System.out.println(Arrays.toString(values));
-                }
-
-                try {
-                    persons.add(new Person(
-                            values[0], // Name
-                            values[1], // Sex
-                            LocalDate.parse(values[2], getDateTimeFormatter()), // Birthdate
-                            values[3], // Birthplace
-                            values[4], // Nationality
-                            Integer.parseInt(values[5]), // SSN
-                            values[6]  // Document number
-                    ));
-                } catch (DateTimeException e) {
-                    System.err.println("Error parsing date: " + e.getMessage());
-                } catch (NumberFormatException e) {
-                    System.err.println("Error parsing number: " + e.getMessage());
-                }
-
-                // Read the next line
-                line = bufferedReader.readLine();
+            clearAll();
+
+            // The rows are parsed in parallel (see ChunkedLineReader), the persons are added in file order
+            for (Person person : ChunkedLineReader.read(FILE, () -> {
+                RowDecoder decoder = new RowDecoder(SEPARATOR);
+                return (text, start, end) -> parsePerson(decoder, text, start, end);
+            })) {
+                addLoaded(person);
             }
 
             if (DEBUG) {
@@ -91,7 +65,7 @@ public class TextPersonDAO extends PersonDAO {
             }
             return true;
 
-        } catch (FileNotFoundException e) {
+        } catch (NoSuchFileException e) {
             System.err.println("File not found! - " + FILE_NAME);
         } catch (IOException e) {
             System.err.println("Something went wrong while reading the file: " + e.getMessage());
@@ -101,40 +75,59 @@ public class TextPersonDAO extends PersonDAO {
         return false;
     }
 
+    /**
+     * Parses one row, every chunk of ChunkedLineReader uses its own RowDecoder.
+     * @param decoder is a RowDecoder that is only used by the current thread
+     * @return the person or null if the row is invalid
+     */
+    static Person parsePerson(RowDecoder decoder, String text, int start, int end) {
+        int fieldCount = decoder.decode(text, start, end);
+        int i = fieldCount > FIELDS_WITHOUT_ID ? 1 : 0;
+
+        if (DEBUG) {
+            System.out.println(decoder);
+        }
+
+        if (fieldCount < i + FIELDS_WITHOUT_ID) {
+            System.err.println("Incomplete row: " + decoder.getRow());
+            return null;
+        }
+
+        Person person = new Person(
+                decoder.getString(i), // Name
+                decoder.getString(i + 1), // Sex
+                decoder.getDate(i + 2), // Birthdate
+                decoder.getString(i + 3), // Birthplace
+                decoder.getString(i + 4), // Nationality
+                decoder.getInt(i + 5), // SSN
+                decoder.getString(i + 6)  // Document number
+        );
+        person.setId(i == 1 ? decoder.getLong(0) : 0); // ID
+
+        // Invalid values don't throw, the decoder remembers the first error of the row
+        if (decoder.getError() != null) {
+            System.err.println(decoder.getError());
+            return null;
+        }
+        return person;
+    }
+
     @Override
-    public boolean save() {
+    protected boolean saveSnapshot(Snapshot<Person> snapshot) {
         if (DEBUG) {
             System.out.println("\nSaving data: " + FILE_NAME);
         }
 
-        try (
-                OutputStream outputStream = FileUtils.openOutputStream(FILE);
-                OutputStreamWriter outputStreamWriter = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
-                BufferedWriter bufferedWriter = new BufferedWriter(outputStreamWriter)
-        ) {
-            for (Person person : persons) {
-                // Write Person data in the format: Name;Sex;Birthdate;Birthplace;Nationality;SSN;Document number
-                bufferedWriter.append(String.format("%s%s%s%s%s%s%s%s%s%s%d%s%s",
-                        person.getName(),
-                        SEPARATOR,
-                        person.getSex(),
-                        SEPARATOR,
-                        getDateTimeFormatter().format(person.getBirthdate()),
-                        SEPARATOR,
-                        person.getBirthplace(),
-                        SEPARATOR,
-                        person.getNationality(),
-                        SEPARATOR,
-                        person.getSSN(),
-                        SEPARATOR,
-                        person.getDocumentNumber()));
-                bufferedWriter.newLine();
+        // RowEncoder buffers the rows itself and writes UTF-8
+        try (RowEncoder encoder = new RowEncoder(SaveTransaction.openOutputStream(FILE), SEPARATOR)) {
+            for (Person person : snapshot.records()) {
+                writePerson(encoder, person);
             }
 
             if (DEBUG) {
                 System.out.println("Saving data complete: " + FILE_NAME);
             }
-            return true;
+            return idAllocator.save();
 
         } catch (IOException e) {
             System.err.println("Something went wrong while saving the file: " + e.getMessage());
@@ -143,4 +136,19 @@ public class TextPersonDAO extends PersonDAO {
 
         return false;
     }
-}
\ No newline at end of file
+
+    /**
+     * Writes one person as a row in the format: ID;Name;Sex;Birthdate;Birthplace;Nationality;SSN;Document number
+     */
+    static void writePerson(RowEncoder encoder, Person person) throws IOException {
+        encoder.writeLong(person.getId())
+                .writeString(person.getName())
+                .writeString(person.getSex())
+                .writeDate(person.getBirthdate())
+                .writeString(person.getBirthplace())
+                .writeString(person.getNationality())
+                .writeLong(person.getSSN())
+                .writeString(person.getDocumentNumber())
+                .endRow();
+    }
+}
@@ -4,14 +4,9 @@ import nl.hva.oop.practicumopdracht.models.Ticket;
 import org.apache.commons.io.FileUtils;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.time.DateTimeException;
-import java.time.LocalDate;
-import java.util.Arrays;
-import java.util.Locale;
+import java.nio.file.NoSuchFileException;
 import static nl.hva.oop.practicumopdracht.Main.DEBUG;
 import static nl.hva.oop.practicumopdracht.Main.getAppDataDirectory;
-import static nl.hva.oop.practicumopdracht.MainApplication.getDateTimeFormatter;
 import static nl.hva.oop.practicumopdracht.MainApplication.getPersonDAO;
 
 /**
@@ -24,11 +19,16 @@ public class TextTicketDAO extends TicketDAO {
     private static final String DIRECTORY_NAME = getAppDataDirectory();
     private static final String FILE_NAME = "Tickets.txt";
     private static final File DIRECTORY = FileUtils.getFile(DIRECTORY_NAME);
-    private static final File FILE = FileUtils.getFile(DIRECTORY, FILE_NAME);
-    private static final String SEPARATOR = ";";
+    static final File FILE = FileUtils.getFile(DIRECTORY, FILE_NAME);
+    static final char SEPARATOR = ';';
+    /*
+     * Rows without an ID (7 fields) are from before tickets had an ID, the first field of these rows is the position
+     * of the owner in the persons file instead of the ID of the owner.
+     */
+    private static final int FIELDS_WITHOUT_ID = 7;
 
     @Override
-    public boolean load() {
+    protected boolean loadLocked() {
         if (DEBUG) {
             System.out.printf("%n******** Debug info%n* App data directory: %s%n* Full path to file: %s%n********%n%n",
                     DIRECTORY.getAbsolutePath(), FILE.getAbsolutePath());
@@ -52,44 +52,24 @@ public class TextTicketDAO extends TicketDAO {
             System.out.println("Loading data: " + FILE_NAME);
         }
 
-        try (
-                InputStream inputStream = FileUtils.openInputStream(FILE);
-                InputStreamReader inputStreamReader = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
-                BufferedReader bufferedReader = new BufferedReader(inputStreamReader)
-        ) {
+        try {
             // Clear the list before loading new data
-            tickets.clear();
-
-            String line = bufferedReader.readLine();
-            while (line != null) {
-                String[] values = line.split(SEPARATOR);
-
-                if (DEBUG) {
-                    System.out.println(Arrays.toString(values));
-                }
-
-                try {
-                    // belongsTo, destination, startDate, endDate, cost, checkedIn, description
-                    tickets.add(new Ticket(
-                            getPersonDAO().getById(Integer.parseInt(values[0])),
-                            values[1],
-                            LocalDate.parse(values[2], getDateTimeFormatter()),
-                            LocalDate.parse(values[3], getDateTimeFormatter()),
-                            Double.parseDouble(values[4]),
-                            Boolean.parseBoolean(values[5]),
-                            values[6]
-                    ));
-                } catch (DateTimeException e) {
-                    System.err.println("Error parsing date: " + e.getMessage());
-                } catch (NumberFormatException e) {
-                    System.err.println("Error parsing number: " + e.getMessage());
-                } catch (Exception e) {
-                    System.err.println("Something went wrong: " + e.getMessage());
-                    e.printStackTrace();
+            clearAll();
+
+            // The rows are parsed in parallel (see ChunkedLineReader), the owners are looked up and the tickets are
+            // added in file order. The position of the owner in old rows needs the loaded persons
+            for (ParsedTicket parsedTicket : ChunkedLineReader.read(FILE, () -> {
+                RowDecoder decoder = new RowDecoder(SEPARATOR);
+                return (text, start, end) -> parseTicket(decoder, text, start, end);
+            })) {
+                Ticket ticket = parsedTicket.ticket();
+                if (parsedTicket.legacyIndex()) {
+                    awaitPersons();
+                    ticket.setBelongsTo(getPersonDAO().getByLegacyIndex((int) parsedTicket.belongsTo()));
+                } else {
+                    ticket.setBelongsTo(getOwner(parsedTicket.belongsTo()));
                 }
-
-                // Read the next line
-                line = bufferedReader.readLine();
+                addLoaded(ticket);
             }
 
             // Successful load
@@ -97,7 +77,7 @@ public class TextTicketDAO extends TicketDAO {
                 System.out.println("Loading complete: " + FILE_NAME);
             }
             return true;
-        } catch (FileNotFoundException e) {
+        } catch (NoSuchFileException e) {
             System.err.println("File not found! - " + FILE_NAME);
         } catch (IOException e) {
             System.err.println("Something went wrong while reading the file: " + e.getMessage());
@@ -108,44 +88,69 @@ public class TextTicketDAO extends TicketDAO {
         return false;
     }
 
+    /**
+     * A parsed row, the owner is looked up after parsing.
+     * @param belongsTo   the ID of the owner or the position of the owner in the persons file for old rows
+     * @param legacyIndex true if belongsTo is the position of the owner
+     */
+    record ParsedTicket(Ticket ticket, long belongsTo, boolean legacyIndex) {
+    }
+
+    /**
+     * Parses one row, every chunk of ChunkedLineReader uses its own RowDecoder.
+     * @param decoder is a RowDecoder that is only used by the current thread
+     * @return the ticket without owner or null if the row is invalid
+     */
+    static ParsedTicket parseTicket(RowDecoder decoder, String text, int start, int end) {
+        int fieldCount = decoder.decode(text, start, end);
+        int i = fieldCount > FIELDS_WITHOUT_ID ? 1 : 0;
+
+        if (DEBUG) {
+            System.out.println(decoder);
+        }
+
+        if (fieldCount < i + FIELDS_WITHOUT_ID) {
+            System.err.println("Incomplete row: " + decoder.getRow());
+            return null;
+        }
+
+        // id, belongsTo, destination, startDate, endDate, cost, checkedIn, description
+        long belongsTo = i == 1 ? decoder.getLong(1) : decoder.getInt(0);
+        Ticket ticket = new Ticket(
+                decoder.getString(i + 1),
+                decoder.getDate(i + 2),
+                decoder.getDate(i + 3),
+                decoder.getDouble(i + 4),
+                decoder.getBoolean(i + 5),
+                decoder.getString(i + 6)
+        );
+        ticket.setId(i == 1 ? decoder.getLong(0) : 0);
+
+        // Invalid values don't throw, the decoder remembers the first error of the row
+        if (decoder.getError() != null) {
+            System.err.println(decoder.getError());
+            return null;
+        }
+        return new ParsedTicket(ticket, belongsTo, i == 0);
+    }
+
     @Override
-    public boolean save() {
+    protected boolean saveSnapshot(Snapshot<Ticket> snapshot) {
         if (DEBUG) {
             System.out.println("\nSaving data: " + FILE_NAME);
         }
 
-        try (
-                OutputStream outputStream = FileUtils.openOutputStream(FILE);
-                OutputStreamWriter outputStreamWriter = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
-                BufferedWriter bufferedWriter = new BufferedWriter(outputStreamWriter)
-        ) {
-            for (Ticket ticket : tickets) {
-                // belongsTo, destination, startDate, endDate, cost, checkedIn, description
-                bufferedWriter.append(String.format(
-                        Locale.US, "%d%s%s%s%s%s%s%s%.2f%s%b%s%s",
-                        // belongsTo is saved as a person id based on the array index of the persons list in the personDAO
-                        getPersonDAO().getIdFor(ticket.getBelongsTo()),
-                        SEPARATOR,
-                        ticket.getDestination(),
-                        SEPARATOR,
-                        getDateTimeFormatter().format(ticket.getStartDate()),
-                        SEPARATOR,
-                        getDateTimeFormatter().format(ticket.getEndDate()),
-                        SEPARATOR,
-                        ticket.getCost(),
-                        SEPARATOR,
-                        ticket.isCheckedIn(),
-                        SEPARATOR,
-                        ticket.getDescription()
-                ));
-                bufferedWriter.newLine();
+        // RowEncoder buffers the rows itself and writes UTF-8
+        try (RowEncoder encoder = new RowEncoder(SaveTransaction.openOutputStream(FILE), SEPARATOR)) {
+            for (Ticket ticket : snapshot.records()) {
+                writeTicket(encoder, ticket);
             }
 
             // Successful save
             if (DEBUG) {
                 System.out.println("Saving data complete: " + FILE_NAME);
             }
-            return true;
+            return idAllocator.save();
         } catch (IOException e) {
             System.err.println("Something went wrong while saving the file: " + e.getMessage());
             e.printStackTrace();
@@ -153,4 +158,20 @@ public class TextTicketDAO extends TicketDAO {
 
         return false;
     }
-}
\ No newline at end of file
+
+    /**
+     * Writes one ticket as a row: id, belongsTo, destination, startDate, endDate, cost, checkedIn, description
+     */
+    static void writeTicket(RowEncoder encoder, Ticket ticket) throws IOException {
+        encoder.writeLong(ticket.getId())
+                // belongsTo is saved as the ID of the person, 0 if the ticket has no owner
+                .writeLong(ticket.getBelongsTo() == null ? 0 : ticket.getBelongsTo().getId())
+                .writeString(ticket.getDestination())
+                .writeDate(ticket.getStartDate())
+                .writeDate(ticket.getEndDate())
+                .writeCost(ticket.getCost())
+                .writeBoolean(ticket.isCheckedIn())
+                .writeString(ticket.getDescription())
+                .endRow();
+    }
+}
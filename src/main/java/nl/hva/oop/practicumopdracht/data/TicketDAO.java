@@ -5,56 +5,684 @@ import nl.hva.oop.practicumopdracht.models.Ticket;
 
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import static nl.hva.oop.practicumopdracht.MainApplication.getPersonDAO;
 
 /**
  * TicketDAO - DetailDAO
  * Abstract class for TicketDAO - subclasses will implement save and load methods.
+ * Next to the list of tickets this class keeps a secondary index from owner to tickets, so looking up the tickets of
+ * one person only costs the number of tickets of that person instead of a scan over all tickets.
+ * Subclasses must use clearAll() and addLoaded() in their loadLocked() implementation to keep the index up-to-date.
+ * Inserted, updated and removed tickets are tracked until a save of these changes succeeds.
+ * Loaded tickets share their repeated values (see Canonicalizer).
+ * addAll(), removeAll() and removeIf() change many tickets with one pass over the list and the owner index and one
+ * call of the change listeners.
+ * The DAO can be used by several threads in the same way as the PersonDAO: changes take the write lock, lookups like
+ * getAllFor() run optimistically and getAll() returns a copy. Subclasses implement loadLocked() and saveSnapshot() and
+ * override the methods ending with Locked, these are called with the lock held.
+ * Saving doesn't block changes, save() writes a Snapshot of the latest versions of the tickets like the PersonDAO.
+ * loadWith() loads the persons on another thread while the tickets are decoded. Subclasses look up the owners of the
+ * loaded tickets with getOwner(), which gives a placeholder with the ID of the owner while the persons are still
+ * loading. The placeholders are replaced by the persons in one pass when both loads are done. A subclass that needs
+ * the loaded persons, for example for the position of the owner in an old file, calls awaitPersons() first.
  * @author Remzi Cavdar - remzi.cavdar@hva.nl
  */
 
 public abstract class TicketDAO implements DAO<Ticket> {
     protected List<Ticket> tickets;
+    protected final IdAllocator idAllocator;
+    // Secondary index - owner to the tickets of that owner, see key() for tickets without an owner. Concurrent so an
+    // optimistic lookup never sees a broken map
+    private final Map<Object, List<Ticket>> ticketsByOwner;
+    private static final Object NO_OWNER = new Object();
+    // The owner every ticket is currently indexed under, needed because belongsTo can be changed with a setter
+    private final Map<Ticket, Person> indexedOwners;
+    // Tickets by owner that removeAll() takes out of the owner index at once, null outside removeAll()
+    private Map<Person, Set<Ticket>> pendingUnindex;
+    // Changes since the last load or save
+    protected final ChangeTracker<Ticket> changes;
+    private final Canonicalizer canonicalizer = new Canonicalizer();
+    // Guards the list, the owner index and the tracked changes, see read() and write()
+    private final StampedLock lock = new StampedLock();
+    // Latest version of the tickets that changed since the last save, see takeSnapshot()
+    private final Map<Ticket, Ticket> versions = new IdentityHashMap<>();
+    // One save or load at a time, a save runs without the lock
+    private final ReentrantLock saving = new ReentrantLock();
+    // The load of the persons during loadWith(), null once the persons are loaded
+    private Future<Boolean> loadingPersons;
+    // Tickets loaded while the persons were loading, indexed by awaitPersons() once their owners are known
+    private final List<Ticket> unresolved = new ArrayList<>();
 
     public TicketDAO() {
         tickets = new ArrayList<>();
+        ticketsByOwner = new ConcurrentHashMap<>();
+        indexedOwners = new IdentityHashMap<>();
+        idAllocator = new IdAllocator("ticket");
+        changes = new ChangeTracker<>();
     }
 
+    /**
+     * @return a new list with the tickets of the person, null for the tickets without an owner
+     */
     public List<Ticket> getAllFor(Person person) {
-        List<Ticket> ticketsForPerson = new ArrayList<>();
-        for (Ticket ticket : tickets) {
-            if (Objects.equals(ticket.getBelongsTo(), person)) {
-                ticketsForPerson.add(ticket);
-            }
+        return read(() -> getAllForLocked(person));
+    }
+
+    /**
+     * getAllFor() with the lock held, subclasses that keep tickets outside the owner index override this.
+     */
+    protected List<Ticket> getAllForLocked(Person person) {
+        List<Ticket> ticketsForPerson = ticketsByOwner.get(key(person));
+        if (ticketsForPerson == null) {
+            return new ArrayList<>();
         }
-        return ticketsForPerson;
+        return new ArrayList<>(ticketsForPerson);
     }
 
     public void removeAllFor(Person person) {
-        tickets.removeIf(ticket -> Objects.equals(ticket.getBelongsTo(), person));
+        write(() -> removeAllForLocked(person));
+    }
+
+    /**
+     * removeAllFor() with the lock held, subclasses that keep tickets outside the owner index override this.
+     */
+    protected void removeAllForLocked(Person person) {
+        List<Ticket> ticketsForPerson = ticketsByOwner.remove(key(person));
+        if (ticketsForPerson == null) {
+            return;
+        }
+
+        Set<Ticket> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Ticket ticket : ticketsForPerson) {
+            indexedOwners.remove(ticket);
+            removed.add(ticket);
+            changes.deleted(ticket.getId(), ticket);
+            versions.remove(ticket);
+        }
+        tickets.removeAll(removed);
     }
 
+    /**
+     * @return a copy of the list of tickets, changes made after this call aren't in the copy
+     */
     @Override
     public List<Ticket> getAll() {
-        return tickets;
+        return read(() -> List.copyOf(tickets));
     }
 
     @Override
     public void addOrUpdate(Ticket ticket) {
-        if(!tickets.contains(ticket)) {
+        write(() -> addOrUpdateLocked(ticket));
+    }
+
+    /**
+     * Changes an existing ticket with its setters and updates it like addOrUpdate(). The setters run with the write
+     * lock held, so a save that runs at the same time never sees a half changed ticket.
+     * @param edit sets the new values of the ticket
+     */
+    @Override
+    public void update(Ticket ticket, Consumer<? super Ticket> edit) {
+        write(() -> {
+            edit.accept(ticket);
+            addOrUpdateLocked(ticket);
+        });
+    }
+
+    /**
+     * addOrUpdate() with the lock held, subclasses that keep tickets outside the owner index override this.
+     */
+    protected void addOrUpdateLocked(Ticket ticket) {
+        if (!indexedOwners.containsKey(ticket)) {
+            if (ticket.getId() == 0) {
+                ticket.setId(idAllocator.next());
+            }
             tickets.add(ticket);
+            index(ticket);
+            changes.inserted(ticket.getId(), ticket);
+            keepVersion(ticket);
+            return;
+        }
+
+        changes.updated(ticket.getId(), ticket);
+        keepVersion(ticket);
+
+        // The owner of an existing ticket may have been changed through setBelongsTo()
+        Person indexedOwner = indexedOwners.get(ticket);
+        if (indexedOwner != ticket.getBelongsTo()) {
+            unindex(ticket, indexedOwner);
+            index(ticket);
         }
     }
 
     @Override
     public void remove(Ticket ticket) {
-        tickets.remove(ticket);
+        // The listeners are called after the ticket is removed from the list
+        write(() -> {
+            if (unlink(ticket)) {
+                tickets.remove(ticket);
+            }
+        });
+    }
+
+    /**
+     * Adds or updates tickets like addOrUpdate(), the change listeners are called once.
+     * @param newTickets the tickets to add or update, a ticket that is in the collection twice is added once
+     */
+    @Override
+    public void addAll(Collection<? extends Ticket> newTickets) {
+        write(() -> {
+            if (tickets instanceof ArrayList<Ticket> arrayList) {
+                arrayList.ensureCapacity(tickets.size() + newTickets.size());
+            }
+            for (Ticket ticket : newTickets) {
+                addOrUpdateLocked(ticket);
+            }
+        });
+    }
+
+    /**
+     * Removes tickets with one pass over the list and one update of the list of every owner, instead of a pass per
+     * ticket. The change listeners are called once.
+     * @param removedTickets the tickets to remove, tickets that aren't in this DAO are ignored
+     */
+    @Override
+    public void removeAll(Collection<? extends Ticket> removedTickets) {
+        write(() -> removeAllLocked(removedTickets));
+    }
+
+    private void removeAllLocked(Collection<? extends Ticket> removedTickets) {
+        Set<Ticket> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        pendingUnindex = new HashMap<>();
+        try {
+            for (Ticket ticket : removedTickets) {
+                if (!removed.contains(ticket) && unlink(ticket)) {
+                    removed.add(ticket);
+                }
+            }
+
+            for (Map.Entry<Person, Set<Ticket>> entry : pendingUnindex.entrySet()) {
+                List<Ticket> ticketsForOwner = ticketsByOwner.get(key(entry.getKey()));
+                if (ticketsForOwner != null) {
+                    ticketsForOwner.removeAll(entry.getValue());
+                    if (ticketsForOwner.isEmpty()) {
+                        ticketsByOwner.remove(key(entry.getKey()));
+                    }
+                }
+            }
+            if (!removed.isEmpty()) {
+                tickets.removeAll(removed);
+            }
+        } finally {
+            pendingUnindex = null;
+        }
+    }
+
+    /**
+     * Removes the tickets that match the filter like removeAll(), every ticket is tested.
+     * @return true if tickets have been removed
+     */
+    @Override
+    public boolean removeIf(Predicate<? super Ticket> filter) {
+        List<Ticket> matching = new ArrayList<>();
+        write(() -> {
+            for (Ticket ticket : tickets) {
+                if (filter.test(ticket)) {
+                    matching.add(ticket);
+                }
+            }
+            removeAllLocked(matching);
+        });
+        return !matching.isEmpty();
+    }
+
+    /**
+     * Takes a ticket out of the owner index and tracks the removal, the caller removes the ticket from the list.
+     * Used by remove() and removeAll() with the lock held, subclasses that keep tickets outside the owner index
+     * override this.
+     * @param ticket the ticket to remove
+     * @return true if the ticket was in this DAO
+     */
+    protected boolean unlink(Ticket ticket) {
+        if (!indexedOwners.containsKey(ticket)) {
+            return false;
+        }
+        unindex(ticket, indexedOwners.get(ticket));
+        changes.deleted(ticket.getId(), ticket);
+        versions.remove(ticket);
+        return true;
+    }
+
+    /**
+     * @return true if tickets are inserted, updated or removed since the last load or save
+     */
+    public boolean hasChanges() {
+        return read(() -> !changes.isEmpty());
+    }
+
+    /**
+     * @return the number of tickets that are inserted, updated or removed since the last load or save
+     */
+    public int changeCount() {
+        return read(changes::size);
+    }
+
+    /**
+     * Adds a listener that is called after every insert, update or remove, for example to save automatically.
+     * @param listener is called on the thread that changed the tickets, after the lock is released
+     */
+    public void addChangeListener(Runnable listener) {
+        changes.addListener(listener);
+    }
+
+    /**
+     * @return the estimated number of bytes saved by sharing repeated values since the last load
+     */
+    public long getDeduplicatedBytes() {
+        return read(canonicalizer::getBytesSaved);
+    }
+
+    /**
+     * Clears all tickets, the owner index and the tracked changes, should be called at the start of every loadLocked().
+     */
+    protected void clearAll() {
+        tickets.clear();
+        ticketsByOwner.clear();
+        indexedOwners.clear();
+        changes.clear();
+        versions.clear();
+        canonicalizer.clear();
+        unresolved.clear();
+    }
+
+    /**
+     * Adds a ticket to the list and the owner index, used by loadLocked() for every ticket that is read.
+     * A ticket without an ID (read from an old file) gets a new ID.
+     * @param ticket the loaded ticket
+     */
+    protected void addLoaded(Ticket ticket) {
+        if (ticket.getId() == 0) {
+            ticket.setId(idAllocator.next());
+        } else {
+            idAllocator.observe(ticket.getId());
+        }
+        canonicalize(ticket);
+        tickets.add(ticket);
+        if (loadingPersons != null) {
+            unresolved.add(ticket);
+        } else {
+            index(ticket);
+        }
+    }
+
+    /**
+     * Looks up the owner of a loaded ticket, can be used by several threads during loadLocked().
+     * @param id the ID of the owner
+     * @return the person with the ID, or a placeholder with the ID while loadWith() is still loading the persons
+     */
+    protected final Person getOwner(long id) {
+        Future<Boolean> persons = loadingPersons;
+        return persons == null || persons.isDone() ? getPersonDAO().getById(id) : new PendingOwner(id);
+    }
+
+    /**
+     * Waits for the persons that loadWith() is loading and gives the tickets loaded so far their owners, after this
+     * getOwner() returns the persons. Returns immediately outside loadWith().
+     */
+    protected final void awaitPersons() {
+        if (loadingPersons == null) {
+            return;
+        }
+        try {
+            loadingPersons.get();
+        } catch (ExecutionException e) {
+            // The failed load of the persons is reported by loadWith()
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        loadingPersons = null;
+
+        PersonDAO personDAO = getPersonDAO();
+        for (Ticket ticket : unresolved) {
+            if (ticket.getBelongsTo() instanceof PendingOwner owner) {
+                ticket.setBelongsTo(personDAO.getById(owner.getId()));
+            }
+            index(ticket);
+        }
+        unresolved.clear();
+    }
+
+    /**
+     * Replaces the repeated values of a loaded ticket by shared instances, addLoaded() does this for every ticket.
+     * The description is free text, so it isn't shared.
+     * @param ticket the loaded ticket
+     */
+    protected void canonicalize(Ticket ticket) {
+        ticket.setDestination(canonicalizer.canonical(ticket.getDestination()));
+        ticket.setStartDate(canonicalizer.canonical(ticket.getStartDate()));
+        ticket.setEndDate(canonicalizer.canonical(ticket.getEndDate()));
+    }
+
+    /**
+     * Adds a ticket to the owner index only, for tickets that are already in the list.
+     * @param ticket the ticket to index under its current owner
+     */
+    protected void index(Ticket ticket) {
+        ticketsByOwner.computeIfAbsent(key(ticket.getBelongsTo()), _ -> new ArrayList<>()).add(ticket);
+        indexedOwners.put(ticket, ticket.getBelongsTo());
+    }
+
+    private void unindex(Ticket ticket, Person owner) {
+        indexedOwners.remove(ticket);
+        if (pendingUnindex != null) {
+            pendingUnindex.computeIfAbsent(owner, _ -> Collections.newSetFromMap(new IdentityHashMap<>())).add(ticket);
+            return;
+        }
+        List<Ticket> ticketsForOwner = ticketsByOwner.get(key(owner));
+        if (ticketsForOwner != null) {
+            ticketsForOwner.remove(ticket);
+            if (ticketsForOwner.isEmpty()) {
+                ticketsByOwner.remove(key(owner));
+            }
+        }
     }
 
+    /**
+     * @return the key of the owner in the owner index, the concurrent map has no null key
+     */
+    private static Object key(Person owner) {
+        return owner == null ? NO_OWNER : owner;
+    }
+
+    /**
+     * Loads the tickets with the write lock, lookups of other threads wait until the tickets are loaded. A running
+     * save is finished first, as is a save that was interrupted while it published its files (see SaveTransaction).
+     */
     @Override
-    public abstract boolean load() throws FileNotFoundException;
+    public final boolean load() throws FileNotFoundException {
+        return load(null);
+    }
+
+    /**
+     * Loads the persons and the tickets at the same time: the persons on a thread of their own and the tickets on the
+     * calling thread, so the load takes about as long as the slower of the two files. The tickets wait for the
+     * persons before they get their owners, the DAOs are loaded when this returns.
+     * @param personDAO the DAO returned by MainApplication.getPersonDAO()
+     * @return true if both the persons and the tickets have been loaded
+     */
+    public final boolean loadWith(PersonDAO personDAO) throws FileNotFoundException {
+        // The executor waits for the load of the persons when it's closed, even if the tickets fail
+        try (ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable,
+                "Load persons"))) {
+            Future<Boolean> persons = executor.submit(personDAO::load);
+            boolean loaded = load(persons);
+            return persons.get() && loaded;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof FileNotFoundException fileNotFoundException) {
+                throw fileNotFoundException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Couldn't load the persons", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
 
+    /**
+     * @param persons the load of the persons that runs at the same time, null if the persons are already loaded
+     */
+    private boolean load(Future<Boolean> persons) throws FileNotFoundException {
+        saving.lock();
+        try {
+            SaveTransaction.recover();
+            long stamp = lock.writeLock();
+            try {
+                loadingPersons = persons;
+                try {
+                    return loadLocked();
+                } finally {
+                    awaitPersons();
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        } finally {
+            saving.unlock();
+        }
+    }
+
+    /**
+     * Saves a snapshot of the tickets, the lock is only held while the snapshot is taken so other threads can change
+     * the tickets during the save. These changes are saved by the next save. A subclass that decodes on a lookup
+     * saves with the write lock held. The save joins the SaveTransaction of this thread, the saved changes are
+     * forgotten when the transaction has published the files.
+     */
     @Override
-    public abstract boolean save();
-}
\ No newline at end of file
+    public final boolean save() {
+        saving.lock();
+        try (SaveTransaction transaction = SaveTransaction.begin()) {
+            Snapshot<Ticket> snapshot;
+            if (decodesOnRead()) {
+                long stamp = lock.writeLock();
+                try {
+                    snapshot = new Snapshot<>(tickets, changes.getChanges(), changes.snapshot());
+                    if (!saveSnapshot(snapshot)) {
+                        return false;
+                    }
+                } finally {
+                    lock.unlockWrite(stamp);
+                }
+            } else {
+                long stamp = lock.readLock();
+                try {
+                    snapshot = takeSnapshot();
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+                if (!saveSnapshot(snapshot)) {
+                    return false;
+                }
+            }
+
+            transaction.onCommit(() -> {
+                long stamp = lock.writeLock();
+                try {
+                    markSaved(snapshot);
+                } finally {
+                    lock.unlockWrite(stamp);
+                }
+            });
+            return transaction.commit();
+        } finally {
+            saving.unlock();
+        }
+    }
+
+    /**
+     * Saves the current tickets with the write lock held, for example by a load that converts an older file. A load
+     * doesn't run in a SaveTransaction, so the file is published before this returns.
+     * @return true if the tickets have been saved
+     */
+    protected final boolean saveLocked() {
+        try (SaveTransaction transaction = SaveTransaction.begin()) {
+            Snapshot<Ticket> snapshot = new Snapshot<>(tickets, changes.getChanges(), changes.snapshot());
+            if (!saveSnapshot(snapshot)) {
+                return false;
+            }
+            transaction.onCommit(() -> markSaved(snapshot));
+            return transaction.commit();
+        }
+    }
+
+    /**
+     * Copies the list and the changes with the latest version of every ticket, called with the read lock held. A
+     * ticket that hasn't changed since the last save is copied here, so the save never reads a ticket of the list. The
+     * list is left empty if savesChangesOnly() is true.
+     */
+    private Snapshot<Ticket> takeSnapshot() {
+        // A save of the changes only doesn't need a copy of every ticket
+        List<Ticket> records = new ArrayList<>(savesChangesOnly() ? 0 : tickets.size());
+        if (!savesChangesOnly()) {
+            for (Ticket ticket : tickets) {
+                records.add(versionOf(ticket));
+            }
+        }
+        Map<Long, ChangeTracker.Change<Ticket>> snapshotChanges = new LinkedHashMap<>();
+        for (Map.Entry<Long, ChangeTracker.Change<Ticket>> entry : changes.getChanges().entrySet()) {
+            ChangeTracker.Change<Ticket> change = entry.getValue();
+            Ticket record = change.record() == null ? null : versionOf(change.record());
+            snapshotChanges.put(entry.getKey(), new ChangeTracker.Change<>(change.type(), record, change.version()));
+        }
+        return new Snapshot<>(records, snapshotChanges, changes.snapshot());
+    }
+
+    /**
+     * Forgets the changes of the saved snapshot and the versions of the tickets that haven't changed since, called
+     * with the write lock held.
+     */
+    private void markSaved(Snapshot<Ticket> snapshot) {
+        changes.clearUpTo(snapshot.version());
+        versions.keySet().removeIf(ticket -> !changes.getChanges().containsKey(ticket.getId()));
+    }
+
+    /**
+     * Keeps a copy of the ticket as its latest version, the list and the index of a decoding subclass are only saved
+     * with the lock held so these don't need versions.
+     */
+    private void keepVersion(Ticket ticket) {
+        if (!decodesOnRead()) {
+            versions.put(ticket, copy(ticket));
+        }
+    }
+
+    /**
+     * @return the version of the ticket of the last addOrUpdate(), or a copy of a ticket without a version
+     */
+    private Ticket versionOf(Ticket ticket) {
+        Ticket version = versions.get(ticket);
+        return version != null ? version : copy(ticket);
+    }
+
+    /**
+     * @return a copy of the ticket with the same ID and owner, used as the version of the ticket in a snapshot
+     */
+    private static Ticket copy(Ticket ticket) {
+        Ticket version = new Ticket(ticket.getBelongsTo(), ticket.getDestination(), ticket.getStartDate(),
+                ticket.getEndDate(), ticket.getCost(), ticket.isCheckedIn(), ticket.getDescription());
+        version.setId(ticket.getId());
+        return version;
+    }
+
+    /**
+     * @return true if a lookup can change the state of this DAO, for example by decoding tickets from a file, then
+     * lookups take the lock exclusively
+     */
+    protected boolean decodesOnRead() {
+        return false;
+    }
+
+    /**
+     * @return true if saveSnapshot() only uses the changes of the snapshot, for example to append them to a journal,
+     * then the snapshot has no records and a save costs the number of changes instead of the number of tickets
+     */
+    protected boolean savesChangesOnly() {
+        return false;
+    }
+
+    /**
+     * Runs a lookup with an optimistic read like the PersonDAO, the lookup runs again with the read lock if the
+     * tickets were changed in the meantime.
+     * @return the result of the lookup
+     */
+    protected <R> R read(Supplier<R> lookup) {
+        if (decodesOnRead()) {
+            long stamp = lock.writeLock();
+            try {
+                return lookup.get();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                R result = lookup.get();
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return lookup.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Runs a change with the write lock as one batch, the change listeners are called after the lock is released.
+     */
+    private void write(Runnable change) {
+        changes.startBatch();
+        try {
+            long stamp = lock.writeLock();
+            try {
+                change.run();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        } finally {
+            changes.endBatch();
+        }
+    }
+
+    /**
+     * Loads the tickets, called by load() with the write lock held.
+     * @return true if the tickets have been loaded
+     */
+    protected abstract boolean loadLocked() throws FileNotFoundException;
+
+    /**
+     * Saves the tickets of the snapshot, called by save() one save at a time. The lock isn't held, so only the
+     * snapshot may be used, unless decodesOnRead() is true.
+     * @return true if the tickets have been saved
+     */
+    protected abstract boolean saveSnapshot(Snapshot<Ticket> snapshot);
+
+    /**
+     * The owner of a ticket that is loaded before the persons, only the ID is known.
+     */
+    private static final class PendingOwner extends Person {
+        private PendingOwner(long id) {
+            super(null, null, null, null, null, 0, null);
+            setId(id);
+        }
+    }
+}
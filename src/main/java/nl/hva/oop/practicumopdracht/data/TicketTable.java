@@ -0,0 +1,291 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import nl.hva.oop.practicumopdracht.models.Ticket;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * TicketTable
+ * Keeps tickets as rows of primitive columns instead of Ticket objects, used by the TableTicketDAO.
+ * A row has the ID, the ID of the owner (0 is no owner), the start and end date as epoch days, the cost in cents,
+ * the checked-in flag, the code of the destination in a dictionary and the description. The subclasses decide where
+ * the columns are kept: in arrays on the heap (ArrayTicketTable) or in memory outside the heap (OffHeapTicketTable).
+ * A cost that isn't a whole number of cents is also kept exactly in a small map, so getCost() always returns the cost
+ * that was set.
+ * Rows are only added at the end. A deleted row keeps its position until compact(), so row numbers stay valid.
+ * Sorting, filtering and aggregation read the columns directly, no Ticket objects are created.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+abstract class TicketTable implements AutoCloseable {
+    private final BitSet deleted = new BitSet();
+    // Row to cost for the costs that aren't a whole number of cents
+    private final Map<Integer, Double> exactCosts = new HashMap<>();
+    private final StringDictionary destinationDictionary;
+    private int rowCount;
+
+    /**
+     * Compares two rows, like a Comparator but without Ticket objects.
+     */
+    interface RowComparator {
+        int compare(int row1, int row2);
+    }
+
+    /**
+     * @param destinationDictionary the dictionary the destination codes refer to, for example read from a file
+     */
+    TicketTable(StringDictionary destinationDictionary) {
+        this.destinationDictionary = destinationDictionary;
+    }
+
+    /**
+     * Makes room for at least this number of rows.
+     */
+    protected abstract void ensureCapacity(int rows);
+
+    /**
+     * Stores all columns of a row, the cost is already in cents.
+     */
+    protected abstract void setColumns(int row, long id, long owner, int startDay, int endDay, long costCents,
+                                       boolean checkedIn, int destinationCode, String description);
+
+    /**
+     * Copies all columns of a row to a row with a lower number, used by compact().
+     */
+    protected abstract void moveRow(int from, int to);
+
+    /**
+     * Forgets the rows from this row on, used by compact().
+     */
+    protected abstract void truncate(int rowCount);
+
+    // Columns
+    abstract long getId(int row);
+
+    abstract long getOwner(int row);
+
+    abstract int getStartDay(int row);
+
+    abstract int getEndDay(int row);
+
+    abstract long getCostCents(int row);
+
+    abstract boolean isCheckedIn(int row);
+
+    abstract int getDestinationCode(int row);
+
+    abstract String getDescription(int row);
+
+    /**
+     * Frees the memory of the table, the table can't be used anymore.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Adds an empty row at the end.
+     * @return the number of the row
+     */
+    int addRow() {
+        ensureCapacity(rowCount + 1);
+        return rowCount++;
+    }
+
+    /**
+     * Copies all fields of a ticket into a row, the owner is stored as the ID of the person.
+     */
+    void set(int row, Ticket ticket) {
+        set(row, ticket.getId(), ticket.getBelongsTo() == null ? 0 : ticket.getBelongsTo().getId(),
+                (int) ticket.getStartDate().toEpochDay(), (int) ticket.getEndDate().toEpochDay(), ticket.getCost(),
+                ticket.isCheckedIn(), destinationDictionary.add(ticket.getDestination()), ticket.getDescription());
+    }
+
+    /**
+     * Sets all columns of a row, used when the rows are read from a file.
+     */
+    void set(int row, long id, long owner, int startDay, int endDay, double cost, boolean checkedIn,
+             int destinationCode, String description) {
+        long cents = Math.round(cost * 100);
+        // Also false for NaN, -0.0 and costs with more than 2 decimals
+        if (Double.doubleToLongBits(cents / 100.0) == Double.doubleToLongBits(cost)) {
+            exactCosts.remove(row);
+        } else {
+            exactCosts.put(row, cost);
+        }
+        setColumns(row, id, owner, startDay, endDay, cents, checkedIn, destinationCode, description);
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    boolean isDeleted(int row) {
+        return deleted.get(row);
+    }
+
+    void delete(int row) {
+        deleted.set(row);
+    }
+
+    LocalDate getStartDate(int row) {
+        return LocalDate.ofEpochDay(getStartDay(row));
+    }
+
+    LocalDate getEndDate(int row) {
+        return LocalDate.ofEpochDay(getEndDay(row));
+    }
+
+    double getCost(int row) {
+        if (!exactCosts.isEmpty()) {
+            Double cost = exactCosts.get(row);
+            if (cost != null) {
+                return cost;
+            }
+        }
+        return getCostCents(row) / 100.0;
+    }
+
+    String getDestination(int row) {
+        return destinationDictionary.get(getDestinationCode(row));
+    }
+
+    StringDictionary getDestinationDictionary() {
+        return destinationDictionary;
+    }
+
+    /**
+     * @return the rows that aren't deleted and belong to the owner, in row order
+     */
+    int[] findRows(long owner) {
+        int count = 0;
+        int[] rows = new int[16];
+        for (int row = 0; row < rowCount; row++) {
+            if (getOwner(row) == owner && !deleted.get(row)) {
+                if (count == rows.length) {
+                    rows = Arrays.copyOf(rows, count * 2);
+                }
+                rows[count++] = row;
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * @return all rows that aren't deleted, in row order
+     */
+    int[] liveRows() {
+        int[] rows = new int[rowCount - deleted.cardinality()];
+        int count = 0;
+        for (int row = deleted.nextClearBit(0); row < rowCount; row = deleted.nextClearBit(row + 1)) {
+            rows[count++] = row;
+        }
+        return rows;
+    }
+
+    /**
+     * Sorts the rows by start date and then by destination, same order as the DateComparator.
+     */
+    void sortByStartDate(int[] rows, boolean ascending) {
+        sort(rows, (row1, row2) -> {
+            int result = Integer.compare(getStartDay(row1), getStartDay(row2));
+            if (result == 0 && getDestinationCode(row1) != getDestinationCode(row2)) {
+                result = getDestination(row1).compareTo(getDestination(row2));
+            }
+            return ascending ? result : -result;
+        });
+    }
+
+    /**
+     * Sorts the rows by cost, same order as the PriceComparator.
+     */
+    void sortByCost(int[] rows, boolean ascending) {
+        sort(rows, (row1, row2) -> {
+            int result = exactCosts.isEmpty() ? Long.compare(getCostCents(row1), getCostCents(row2)) :
+                    Double.compare(getCost(row1), getCost(row2));
+            return ascending ? result : -result;
+        });
+    }
+
+    /**
+     * Stable merge sort of row numbers, like List.sort() but without boxing.
+     */
+    static void sort(int[] rows, RowComparator comparator) {
+        int[] buffer = new int[rows.length];
+        for (int width = 1; width < rows.length; width *= 2) {
+            for (int start = 0; start < rows.length - width; start += 2 * width) {
+                int middle = start + width;
+                int end = Math.min(start + 2 * width, rows.length);
+                if (comparator.compare(rows[middle - 1], rows[middle]) <= 0) {
+                    // Already in order
+                    continue;
+                }
+                System.arraycopy(rows, start, buffer, start, end - start);
+                int left = start;
+                int right = middle;
+                for (int i = start; i < end; i++) {
+                    if (right >= end || left < middle && comparator.compare(buffer[left], buffer[right]) <= 0) {
+                        rows[i] = buffer[left++];
+                    } else {
+                        rows[i] = buffer[right++];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the total cost of the rows in cents, every cost rounded to whole cents
+     */
+    long sumCostCents(int[] rows) {
+        long total = 0;
+        for (int row : rows) {
+            total += getCostCents(row);
+        }
+        return total;
+    }
+
+    int countCheckedIn(int[] rows) {
+        int count = 0;
+        for (int row : rows) {
+            if (isCheckedIn(row)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Removes the deleted rows, the other rows keep their order.
+     * @return the new number of every old row, -1 for a deleted row
+     */
+    int[] compact() {
+        int[] newRows = new int[rowCount];
+        Map<Integer, Double> keptExactCosts = new HashMap<>();
+        int kept = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (deleted.get(row)) {
+                newRows[row] = -1;
+                continue;
+            }
+            if (kept != row) {
+                moveRow(row, kept);
+            }
+            Double exactCost = exactCosts.get(row);
+            if (exactCost != null) {
+                keptExactCosts.put(kept, exactCost);
+            }
+            newRows[row] = kept++;
+        }
+
+        truncate(kept);
+        deleted.clear();
+        exactCosts.clear();
+        exactCosts.putAll(keptExactCosts);
+        rowCount = kept;
+        return newRows;
+    }
+}
@@ -11,6 +11,7 @@ import static nl.hva.oop.practicumopdracht.MainApplication.getDateTimeFormatter;
  */
 
 public class Person {
+    private long id; // Stable ID handed out by the PersonDAO, 0 means not yet stored
     private String name, sex, birthplace, nationality, documentNumber;
     private LocalDate birthdate;
     private int SSN; // Social Security Number (SSN)
@@ -45,6 +46,14 @@ public class Person {
     }
 
     // Getters and setters
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
     public String getName() {
         return name;
     }
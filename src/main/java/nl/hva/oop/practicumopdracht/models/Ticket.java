@@ -1,5 +1,6 @@
 package nl.hva.oop.practicumopdracht.models;
 
+import java.io.Serial;
 import java.io.Serializable;
 import java.time.LocalDate;
 
@@ -12,6 +13,10 @@ import static nl.hva.oop.practicumopdracht.MainApplication.getDateTimeFormatter;
  */
 
 public class Ticket implements Serializable {
+    // Fixed to the value of the first version of this class, so existing Tickets.obj files can still be read
+    @Serial
+    private static final long serialVersionUID = -8272948609553254015L;
+    private long id; // Stable ID handed out by the TicketDAO, 0 means not yet stored
     private Person belongsTo;
     private String destination, description;
     private LocalDate startDate, endDate;
@@ -59,6 +64,14 @@ public class Ticket implements Serializable {
     }
 
     // Getters and setters
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
     public Person getBelongsTo() {
         return belongsTo;
     }
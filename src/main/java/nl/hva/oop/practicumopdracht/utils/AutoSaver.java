@@ -0,0 +1,169 @@
+package nl.hva.oop.practicumopdracht.utils;
+
+import javafx.application.Platform;
+import nl.hva.oop.practicumopdracht.data.PersonDAO;
+import nl.hva.oop.practicumopdracht.data.TicketDAO;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import static nl.hva.oop.practicumopdracht.Main.DEBUG;
+
+/**
+ * AutoSaver
+ * Saves the DAOs automatically after they have been changed. A burst of edits is combined into one save: the save
+ * starts when there have been no edits for the quiet period, but never later than the maximum delay after the first
+ * edit that hasn't been saved yet. The save runs as a DAOTask, so it never runs at the same time as another save or
+ * load. Edits made while a save is running are saved by the next save.
+ * Works with every PersonDAO and TicketDAO, it only uses the change listeners and save().
+ * All methods must be called on the JavaFX application thread. The DAOs can also be changed on other threads, the
+ * change listener then continues on the JavaFX application thread.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+public class AutoSaver {
+    // One timer thread for scheduling, the saves themselves run on the I/O thread of the DAOTask
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Autosave");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final PersonDAO personDAO;
+    private final TicketDAO ticketDAO;
+    private final long quietPeriod;
+    private final long maxDelay;
+    private Consumer<DAOTask> onSave;
+    private ScheduledFuture<?> scheduledSave;
+    // Increased for every schedule, so a timer that has been replaced doesn't save
+    private long generation;
+    private boolean saving;
+    // Edits since the last save started and the time of the first of these edits
+    private int pendingEdits;
+    private long firstEditTime;
+    // Counters
+    private long editCount;
+    private long saveCount;
+    private long coalescedEditCount;
+    private long failedSaveCount;
+
+    /**
+     * @param quietPeriod is a Duration denoting how long there must be no edits before saving
+     * @param maxDelay    is a Duration denoting the maximum time between the first unsaved edit and the save
+     */
+    public AutoSaver(PersonDAO personDAO, TicketDAO ticketDAO, Duration quietPeriod, Duration maxDelay) {
+        if (quietPeriod.isNegative() || maxDelay.compareTo(quietPeriod) < 0) {
+            throw new IllegalArgumentException("The maximum delay can't be shorter than the quiet period!");
+        }
+        this.personDAO = personDAO;
+        this.ticketDAO = ticketDAO;
+        this.quietPeriod = quietPeriod.toNanos();
+        this.maxDelay = maxDelay.toNanos();
+        personDAO.addChangeListener(this::edited);
+        ticketDAO.addChangeListener(this::edited);
+    }
+
+    /**
+     * @param onSave is called with every autosave task before it starts, for example to show its progress
+     */
+    public void setOnSave(Consumer<DAOTask> onSave) {
+        this.onSave = onSave;
+    }
+
+    private void edited() {
+        if (!Platform.isFxApplicationThread()) {
+            Platform.runLater(this::edited);
+            return;
+        }
+
+        long now = System.nanoTime();
+        editCount++;
+        if (pendingEdits++ == 0) {
+            firstEditTime = now;
+        }
+        // A running save schedules the next save when it's done
+        if (!saving) {
+            schedule(now);
+        }
+    }
+
+    private void schedule(long now) {
+        if (scheduledSave != null) {
+            scheduledSave.cancel(false);
+        }
+        long delay = Math.min(quietPeriod, Math.max(0, firstEditTime + maxDelay - now));
+        long scheduledGeneration = ++generation;
+        scheduledSave = SCHEDULER.schedule(() -> Platform.runLater(() -> save(scheduledGeneration)), delay,
+                TimeUnit.NANOSECONDS);
+    }
+
+    private void save(long scheduledGeneration) {
+        if (scheduledGeneration != generation || saving || pendingEdits == 0) {
+            return;
+        }
+        // Saved or loaded by hand in the meantime
+        if (!personDAO.hasChanges() && !ticketDAO.hasChanges()) {
+            pendingEdits = 0;
+            return;
+        }
+
+        int edits = pendingEdits;
+        pendingEdits = 0;
+        saving = true;
+
+        DAOTask task = DAOTask.save(personDAO, ticketDAO);
+        task.setOnSucceeded(_ -> saved(edits, task.getValue()));
+        task.setOnFailed(_ -> {
+            task.getException().printStackTrace();
+            saved(edits, false);
+        });
+        task.setOnCancelled(_ -> saved(edits, false));
+        if (onSave != null) {
+            onSave.accept(task);
+        }
+        task.start();
+    }
+
+    private void saved(int edits, boolean result) {
+        saving = false;
+        if (result) {
+            saveCount++;
+            coalescedEditCount += edits - 1;
+        } else {
+            // The changes are still in the DAOs, the next edit schedules a new save
+            failedSaveCount++;
+            System.err.println("Autosave failed, the changes will be saved after the next edit");
+        }
+
+        if (DEBUG) {
+            System.out.printf("Autosave %s: %d edits, %d saves, %d edits coalesced, %d failed saves%n",
+                    result ? "complete" : "failed", edits, saveCount, coalescedEditCount, failedSaveCount);
+        }
+
+        // Edits made while saving
+        if (result && pendingEdits > 0) {
+            schedule(System.nanoTime());
+        }
+    }
+
+    // Getters
+    public long getEditCount() {
+        return editCount;
+    }
+
+    public long getSaveCount() {
+        return saveCount;
+    }
+
+    /**
+     * @return the number of edits that didn't need a save of their own, because they were saved together
+     */
+    public long getCoalescedEditCount() {
+        return coalescedEditCount;
+    }
+
+    public long getFailedSaveCount() {
+        return failedSaveCount;
+    }
+}
@@ -0,0 +1,135 @@
+package nl.hva.oop.practicumopdracht.utils;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.concurrent.Task;
+import nl.hva.oop.practicumopdracht.data.Exporter;
+import nl.hva.oop.practicumopdracht.data.PersonDAO;
+import nl.hva.oop.practicumopdracht.data.SaveTransaction;
+import nl.hva.oop.practicumopdracht.data.TicketDAO;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import static nl.hva.oop.practicumopdracht.Main.DEBUG;
+
+/**
+ * DAOTask
+ * Saves or loads the DAOs in the background, so the JavaFX application thread doesn't freeze on large files.
+ * All tasks run one after another on the same I/O thread, so the DAOs are never used by two tasks at the same time.
+ * The progress is reported per step and the value of the task is the result of the save or load.
+ * A task can only be cancelled before it starts: the tickets refer to the persons, so once the persons are saved or
+ * loaded the tickets are always done as well.
+ * A save writes both files in one SaveTransaction, the files are only published together after the tickets have been
+ * saved, so a crash or a failed save never leaves new persons next to old tickets.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+public class DAOTask extends Task<Boolean> {
+    private static final ExecutorService IO_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "DAO I/O");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final List<Step> steps;
+    private final boolean transaction;
+    private final ReadOnlyBooleanWrapper cancellable = new ReadOnlyBooleanWrapper(true);
+    private boolean started;
+
+    private record Step(String message, Callable<Boolean> action) {
+    }
+
+    private DAOTask(List<Step> steps, boolean transaction) {
+        this.steps = steps;
+        this.transaction = transaction;
+        updateMessage("Wachten...");
+    }
+
+    /**
+     * @return a task that saves the persons and then the tickets
+     */
+    public static DAOTask save(PersonDAO personDAO, TicketDAO ticketDAO) {
+        return new DAOTask(List.of(
+                new Step("Personen opslaan...", personDAO::save),
+                new Step("Vliegtickets opslaan...", ticketDAO::save)
+        ), true);
+    }
+
+    /**
+     * @return a task that loads the persons and the tickets at the same time, see TicketDAO.loadWith()
+     */
+    public static DAOTask load(PersonDAO personDAO, TicketDAO ticketDAO) {
+        return new DAOTask(List.of(
+                new Step("Personen en vliegtickets laden...", () -> ticketDAO.loadWith(personDAO))
+        ), false);
+    }
+
+    /**
+     * @return a task that writes the export, on the I/O thread so the DAOs don't change during the export
+     */
+    public static DAOTask export(Exporter exporter) {
+        return new DAOTask(List.of(
+                new Step("Data exporteren...", exporter::export)
+        ), false);
+    }
+
+    /**
+     * Queues the task on the I/O thread.
+     */
+    public void start() {
+        IO_EXECUTOR.execute(this);
+    }
+
+    @Override
+    protected Boolean call() throws Exception {
+        synchronized (this) {
+            if (isCancelled()) {
+                return false;
+            }
+            started = true;
+        }
+        Platform.runLater(() -> cancellable.set(false));
+
+        // A resource that is null is skipped by try-with-resources
+        try (SaveTransaction saveTransaction = transaction ? SaveTransaction.begin() : null) {
+            for (int i = 0; i < steps.size(); i++) {
+                Step step = steps.get(i);
+                updateMessage(step.message());
+                updateProgress(i, steps.size());
+                if (DEBUG) {
+                    System.out.println("Background task: " + step.message());
+                }
+                // Same as save() && save(), the next DAO isn't used if the previous one failed
+                if (!step.action().call()) {
+                    return false;
+                }
+            }
+            if (saveTransaction != null && !saveTransaction.commit()) {
+                return false;
+            }
+        }
+
+        updateProgress(steps.size(), steps.size());
+        return true;
+    }
+
+    /**
+     * Cancels the task if it hasn't started yet.
+     * @return false if the task has already started with the DAOs
+     */
+    @Override
+    public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+        if (started) {
+            return false;
+        }
+        return super.cancel(false);
+    }
+
+    /**
+     * @return true as long as the task hasn't started with the DAOs
+     */
+    public ReadOnlyBooleanProperty cancellableProperty() {
+        return cancellable.getReadOnlyProperty();
+    }
+}
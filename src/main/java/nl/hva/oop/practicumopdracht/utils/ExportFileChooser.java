@@ -0,0 +1,74 @@
+package nl.hva.oop.practicumopdracht.utils;
+
+import javafx.stage.FileChooser;
+import javafx.stage.Window;
+import nl.hva.oop.practicumopdracht.data.Exporter;
+import nl.hva.oop.practicumopdracht.data.PersonDAO;
+import nl.hva.oop.practicumopdracht.data.TicketDAO;
+import java.io.File;
+import java.util.List;
+
+/**
+ * ExportFileChooser
+ * Asks where the export of the persons and tickets (see Exporter) is saved, the chosen file type determines the format
+ * and whether the file is compressed.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+public class ExportFileChooser {
+    private record FileType(FileChooser.ExtensionFilter filter, Exporter.Format format, boolean gzip) {
+        FileType(String description, Exporter.Format format, boolean gzip) {
+            this(new FileChooser.ExtensionFilter(description, "*" + getExtension(format, gzip)), format, gzip);
+        }
+    }
+
+    private static final List<FileType> FILE_TYPES = List.of(
+            new FileType("CSV-bestand", Exporter.Format.CSV, false),
+            new FileType("CSV-bestand (gzip)", Exporter.Format.CSV, true),
+            new FileType("JSON Lines-bestand", Exporter.Format.JSON_LINES, false),
+            new FileType("JSON Lines-bestand (gzip)", Exporter.Format.JSON_LINES, true)
+    );
+
+    private ExportFileChooser() {
+    }
+
+    /**
+     * Shows the save dialog.
+     * @param owner is a Window denoting the window the dialog belongs to
+     * @return an Exporter for the chosen file or null if the dialog was cancelled
+     */
+    public static Exporter show(Window owner, PersonDAO personDAO, TicketDAO ticketDAO) {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Data exporteren");
+        fileChooser.setInitialDirectory(new File(System.getProperty("user.home")));
+        fileChooser.setInitialFileName("Export" + Exporter.Format.CSV.getExtension());
+        for (FileType fileType : FILE_TYPES) {
+            fileChooser.getExtensionFilters().add(fileType.filter());
+        }
+
+        File file = fileChooser.showSaveDialog(owner);
+        if (file == null) {
+            return null;
+        }
+
+        FileType chosen = FILE_TYPES.getFirst();
+        for (FileType fileType : FILE_TYPES) {
+            if (fileType.filter() == fileChooser.getSelectedExtensionFilter()) {
+                chosen = fileType;
+            }
+        }
+        // Not every platform adds the extension of the file type to the name
+        String name = file.getName();
+        if (!name.endsWith(getExtension(chosen.format(), chosen.gzip()))) {
+            if (!name.endsWith(chosen.format().getExtension())) {
+                name += chosen.format().getExtension();
+            }
+            file = new File(file.getParentFile(), chosen.gzip() ? name + Exporter.GZIP_EXTENSION : name);
+        }
+        return new Exporter(personDAO, ticketDAO, file, chosen.format(), chosen.gzip());
+    }
+
+    private static String getExtension(Exporter.Format format, boolean gzip) {
+        return format.getExtension() + (gzip ? Exporter.GZIP_EXTENSION : "");
+    }
+}
@@ -0,0 +1,96 @@
+package nl.hva.oop.practicumopdracht.utils;
+
+import javafx.concurrent.Worker;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * StatusBar
+ * Shows the progress of a DAOTask at the bottom of a view with a button to cancel it.
+ * The status bar is hidden when no task is running.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+public class StatusBar extends HBox {
+    private final ProgressBar progressBar = new ProgressBar();
+    private final Label label = new Label();
+    private final Button cancelButton = new Button("Annuleren");
+    // The running tasks in the order they were shown
+    private final List<DAOTask> tasks = new ArrayList<>();
+    // Number of running tasks that disabled a node
+    private final Map<Node, Integer> locks = new HashMap<>();
+
+    public StatusBar() {
+        getStyleClass().add("status-bar");
+        setSpacing(10);
+        setAlignment(Pos.CENTER_LEFT);
+        label.setMaxWidth(Double.MAX_VALUE);
+        HBox.setHgrow(label, Priority.ALWAYS);
+        getChildren().addAll(progressBar, label, cancelButton);
+        setVisible(false);
+        setManaged(false);
+    }
+
+    /**
+     * Shows the progress of the task and disables the nodes until the task is done, cancelled or failed. Tasks can
+     * overlap, for example an autosave and a load: the status bar shows the newest running task and a node stays
+     * disabled until the last task that locked it is finished.
+     * @param task        the task to show, should be started after calling this method
+     * @param lockedNodes the nodes that can't be used while the task is running
+     */
+    public void show(DAOTask task, Node... lockedNodes) {
+        tasks.add(task);
+        for (Node node : lockedNodes) {
+            locks.merge(node, 1, Integer::sum);
+            node.setDisable(true);
+        }
+        bind(task);
+
+        task.stateProperty().addListener((_, _, state) -> {
+            if (state == Worker.State.SUCCEEDED || state == Worker.State.FAILED ||
+                    state == Worker.State.CANCELLED) {
+                finished(task, lockedNodes);
+            }
+        });
+    }
+
+    private void finished(DAOTask task, Node[] lockedNodes) {
+        tasks.remove(task);
+        // Only the nodes that no other running task has locked are enabled again
+        for (Node node : lockedNodes) {
+            if (locks.merge(node, -1, Integer::sum) == 0) {
+                locks.remove(node);
+                node.setDisable(false);
+            }
+        }
+
+        if (!tasks.isEmpty()) {
+            bind(tasks.getLast());
+            return;
+        }
+        progressBar.progressProperty().unbind();
+        label.textProperty().unbind();
+        cancelButton.disableProperty().unbind();
+        cancelButton.setOnAction(null);
+        setVisible(false);
+        setManaged(false);
+    }
+
+    private void bind(DAOTask task) {
+        progressBar.progressProperty().bind(task.progressProperty());
+        label.textProperty().bind(task.messageProperty());
+        cancelButton.disableProperty().bind(task.cancellableProperty().not());
+        cancelButton.setOnAction(_ -> task.cancel());
+        setVisible(true);
+        setManaged(true);
+    }
+}
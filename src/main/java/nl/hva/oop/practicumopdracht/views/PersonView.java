@@ -8,6 +8,7 @@ import javafx.scene.layout.*;
 import nl.hva.oop.practicumopdracht.MainApplication;
 import nl.hva.oop.practicumopdracht.models.Person;
 import nl.hva.oop.practicumopdracht.utils.NumericTextField;
+import nl.hva.oop.practicumopdracht.utils.StatusBar;
 
 /**
  * PersonView - MasterView
@@ -19,7 +20,11 @@ public class PersonView extends View {
     private ComboBox<String> comboBoxSex;
     private Button saveButton, newButton, deleteButton, switchButton;
     private ListView<Person> listView;
-    private MenuItem menuItemSave, menuItemLoad, menuItemClose, menuItemSortAZ, menuItemSortZA, menuItemAbout;
+    private MenuBar menuBar;
+    private VBox vboxContainer;
+    private StatusBar statusBar;
+    private MenuItem menuItemSave, menuItemLoad, menuItemExport, menuItemClose, menuItemSortAZ, menuItemSortZA,
+            menuItemAbout;
     private static final int MAX_LENGTH_SSN = 9;
 
     @Override
@@ -28,14 +33,15 @@ public class PersonView extends View {
         BorderPane rootBorderPane = new BorderPane();
         rootBorderPane.getStyleClass().add("root-container");
         // Create the menu bar.
-        MenuBar menuBar = new MenuBar();
+        menuBar = new MenuBar();
         menuBar.getStyleClass().add("menu-bar");
         // Create the file menu.
         Menu fileMenu = new Menu("Bestand");
         menuItemSave = new MenuItem("Opslaan");
         menuItemLoad = new MenuItem("Laden");
+        menuItemExport = new MenuItem("Exporteren...");
         menuItemClose = new MenuItem("Afsluiten");
-        fileMenu.getItems().addAll(menuItemSave, menuItemLoad, new SeparatorMenuItem(), menuItemClose);
+        fileMenu.getItems().addAll(menuItemSave, menuItemLoad, menuItemExport, new SeparatorMenuItem(), menuItemClose);
         // Create the sort menu.
         Menu sortMenu = new Menu("Sorteren");
         menuItemSortAZ = new MenuItem("Naam (A-Z)");
@@ -49,7 +55,7 @@ public class PersonView extends View {
         menuBar.getMenus().addAll(fileMenu, sortMenu, aboutMenu);
 
         // VBox parent container
-        VBox vboxContainer = new VBox();
+        vboxContainer = new VBox();
         vboxContainer.getStyleClass().add("vbox-container");
         // Padding
         vboxContainer.setPadding(new Insets(10));
@@ -149,9 +155,12 @@ public class PersonView extends View {
 
         // VBox container
         vboxContainer.getChildren().addAll(gridpane, hboxSaveButton, hboxListview, hboxBottomButtons);
+        // Status bar for saving and loading in the background, hidden until a task is running
+        statusBar = new StatusBar();
         // Root
         rootBorderPane.setTop(menuBar);
         rootBorderPane.setCenter(vboxContainer);
+        rootBorderPane.setBottom(statusBar);
         return rootBorderPane;
     }
 
@@ -164,6 +173,10 @@ public class PersonView extends View {
         return menuItemLoad;
     }
 
+    public MenuItem getMenuItemExport() {
+        return menuItemExport;
+    }
+
     public MenuItem getMenuItemClose() {
         return menuItemClose;
     }
@@ -227,4 +240,16 @@ public class PersonView extends View {
     public ListView<Person> getListView() {
         return listView;
     }
+
+    public MenuBar getMenuBar() {
+        return menuBar;
+    }
+
+    public VBox getVboxContainer() {
+        return vboxContainer;
+    }
+
+    public StatusBar getStatusBar() {
+        return statusBar;
+    }
 }
\ No newline at end of file
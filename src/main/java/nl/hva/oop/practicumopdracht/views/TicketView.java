@@ -9,6 +9,7 @@ import nl.hva.oop.practicumopdracht.MainApplication;
 import nl.hva.oop.practicumopdracht.models.Person;
 import nl.hva.oop.practicumopdracht.models.Ticket;
 import nl.hva.oop.practicumopdracht.utils.NumericTextField;
+import nl.hva.oop.practicumopdracht.utils.StatusBar;
 
 /**
  * TicketView - DetailView
@@ -22,7 +23,10 @@ public class TicketView extends View {
     private ComboBox<Person> comboBoxBelongsTo;
     private Button saveButton, newButton, deleteButton, switchButton;
     private ListView<Ticket> listview;
-    private MenuItem menuItemSave, menuItemLoad, menuItemClose, menuItemAbout;
+    private MenuBar menuBar;
+    private VBox vboxContainer;
+    private StatusBar statusBar;
+    private MenuItem menuItemSave, menuItemLoad, menuItemExport, menuItemClose, menuItemAbout;
     private RadioButton radioButtonDate1, radioButtonDate2, radioButtonCost1, radioButtonCost2;
 
     @Override
@@ -31,14 +35,15 @@ public class TicketView extends View {
         BorderPane rootBorderPane = new BorderPane();
         rootBorderPane.getStyleClass().add("root-container");
         // Create the menu bar.
-        MenuBar menuBar = new MenuBar();
+        menuBar = new MenuBar();
         menuBar.getStyleClass().add("menu-bar");
         // Create the file menu.
         Menu fileMenu = new Menu("Bestand");
         menuItemSave = new MenuItem("Opslaan");
         menuItemLoad = new MenuItem("Laden");
+        menuItemExport = new MenuItem("Exporteren...");
         menuItemClose = new MenuItem("Afsluiten");
-        fileMenu.getItems().addAll(menuItemSave, menuItemLoad, new SeparatorMenuItem(), menuItemClose);
+        fileMenu.getItems().addAll(menuItemSave, menuItemLoad, menuItemExport, new SeparatorMenuItem(), menuItemClose);
         // Create the info and about menu.
         Menu aboutMenu = new Menu("Support & info");
         menuItemAbout = new MenuItem("Info & contactgegevens");
@@ -47,7 +52,7 @@ public class TicketView extends View {
         menuBar.getMenus().addAll(fileMenu, aboutMenu);
 
         // VBox parent container
-        VBox vboxContainer = new VBox();
+        vboxContainer = new VBox();
         vboxContainer.getStyleClass().add("vbox-container");
         // Padding
         vboxContainer.setPadding(new Insets(10));
@@ -177,9 +182,12 @@ public class TicketView extends View {
 
         // VBox container
         vboxContainer.getChildren().addAll(gridpane, hboxSaveButton, hboxListview, hboxRadioButtons, hboxBottomButtons);
+        // Status bar for saving and loading in the background, hidden until a task is running
+        statusBar = new StatusBar();
         // Root
         rootBorderPane.setTop(menuBar);
         rootBorderPane.setCenter(vboxContainer);
+        rootBorderPane.setBottom(statusBar);
         return rootBorderPane;
     }
 
@@ -192,6 +200,10 @@ public class TicketView extends View {
         return menuItemLoad;
     }
 
+    public MenuItem getMenuItemExport() {
+        return menuItemExport;
+    }
+
     public MenuItem getMenuItemClose() {
         return menuItemClose;
     }
@@ -263,4 +275,16 @@ public class TicketView extends View {
     public RadioButton getRadioButtonCost2() {
         return radioButtonCost2;
     }
+
+    public MenuBar getMenuBar() {
+        return menuBar;
+    }
+
+    public VBox getVboxContainer() {
+        return vboxContainer;
+    }
+
+    public StatusBar getStatusBar() {
+        return statusBar;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,185 @@
+package nl.hva.oop.practicumopdracht.data;
+
+import nl.hva.oop.practicumopdracht.models.Person;
+import nl.hva.oop.practicumopdracht.models.Ticket;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static nl.hva.oop.practicumopdracht.Main.getAppDataDirectory;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DAOStressTest
+ * Changes persons and tickets from several threads while another thread looks up the tickets of the persons and
+ * another thread saves. Afterwards the lists, the ID lookup and the owner index of the DAOs must agree with each other
+ * and with the changes of the threads. Every writer changes only its own persons and tickets, so the expected result
+ * doesn't depend on the order of the threads.
+ *
+ * @author Remzi Cavdar - remzi.cavdar@hva.nl
+ */
+class DAOStressTest {
+    private static final int WRITERS = 4;
+    private static final int ROUNDS = 1000;
+
+    @BeforeAll
+    static void useTestDirectory() throws IOException {
+        if (System.getProperty("appDataDirectory") == null) {
+            System.setProperty("appDataDirectory", "target" + File.separator + "test-appdata");
+        }
+        FileUtils.deleteDirectory(new File(getAppDataDirectory()));
+    }
+
+    @Test
+    void concurrentChangesKeepListsAndIndexesConsistent() throws Exception {
+        BinaryPersonDAO personDAO = new BinaryPersonDAO();
+        BinaryTicketDAO ticketDAO = new BinaryTicketDAO();
+        Set<Person> expectedPersons = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        Set<Ticket> expectedTickets = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + 2);
+
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int i = 0; i < WRITERS; i++) {
+                int writer = i;
+                writers.add(executor.submit(() -> {
+                    write(personDAO, ticketDAO, writer, expectedPersons, expectedTickets);
+                    return null;
+                }));
+            }
+            Future<Integer> reader = executor.submit(() -> {
+                int lookups = 0;
+                while (writing.get()) {
+                    for (Person person : personDAO.getAll()) {
+                        List<Ticket> tickets = ticketDAO.getAllFor(person);
+                        assertEquals(tickets.size(), identitySet(tickets).size(), "ticket twice for one person");
+                        lookups++;
+                    }
+                }
+                return lookups;
+            });
+            Future<Integer> saver = executor.submit(() -> {
+                int saves = 0;
+                while (writing.get()) {
+                    assertTrue(personDAO.save(), "persons not saved");
+                    assertTrue(ticketDAO.save(), "tickets not saved");
+                    saves++;
+                }
+                return saves;
+            });
+
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            writing.set(false);
+            assertTrue(reader.get() > 0, "no lookups during the changes");
+            assertTrue(saver.get() > 0, "no saves during the changes");
+        } finally {
+            writing.set(false);
+            executor.shutdownNow();
+        }
+
+        assertConsistent(personDAO, ticketDAO, expectedPersons, expectedTickets);
+
+        // The last save has everything, a new DAO loads the same persons
+        assertTrue(personDAO.save());
+        assertTrue(ticketDAO.save());
+        assertFalse(personDAO.hasChanges());
+        assertFalse(ticketDAO.hasChanges());
+        BinaryPersonDAO reloaded = new BinaryPersonDAO();
+        assertTrue(reloaded.load());
+        assertEquals(ids(personDAO.getAll()), ids(reloaded.getAll()));
+    }
+
+    /**
+     * Adds, updates, moves and removes the persons and tickets of one writer and records what should be left.
+     */
+    private static void write(PersonDAO personDAO, TicketDAO ticketDAO, int writer, Set<Person> expectedPersons,
+                              Set<Ticket> expectedTickets) {
+        Random random = new Random(writer);
+        List<Person> persons = new ArrayList<>();
+        List<Ticket> tickets = new ArrayList<>();
+
+        for (int round = 0; round < ROUNDS; round++) {
+            Person person = new Person("Naam " + writer + "-" + round, round % 2 == 0 ? "Man" : "Vrouw",
+                    LocalDate.of(1990, 1, 1).plusDays(round), "Amsterdam", "Nederlandse",
+                    100000000 + writer * ROUNDS + round, "D" + writer + "-" + round);
+            personDAO.addOrUpdate(person);
+            persons.add(person);
+
+            Ticket ticket = new Ticket(persons.get(random.nextInt(persons.size())), "Bestemming " + round,
+                    LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 8), round, false, "Ticket " + round);
+            ticketDAO.addOrUpdate(ticket);
+            tickets.add(ticket);
+
+            // Update a ticket and sometimes move it to another person
+            Ticket updated = tickets.get(random.nextInt(tickets.size()));
+            Person owner = random.nextInt(4) == 0
+                    ? persons.get(random.nextInt(persons.size()))
+                    : updated.getBelongsTo();
+            ticketDAO.update(updated, edited -> {
+                edited.setCost(edited.getCost() + 1);
+                edited.setBelongsTo(owner);
+            });
+
+            if (round % 10 == 9) {
+                ticketDAO.remove(tickets.remove(random.nextInt(tickets.size())));
+            }
+            if (round % 25 == 24) {
+                Person removed = persons.remove(random.nextInt(persons.size()));
+                ticketDAO.removeAllFor(removed);
+                personDAO.remove(removed);
+                tickets.removeIf(owned -> owned.getBelongsTo() == removed);
+            }
+        }
+
+        expectedPersons.addAll(persons);
+        expectedTickets.addAll(tickets);
+    }
+
+    private static void assertConsistent(PersonDAO personDAO, TicketDAO ticketDAO, Set<Person> expectedPersons,
+                                         Set<Ticket> expectedTickets) {
+        List<Person> persons = personDAO.getAll();
+        assertEquals(persons.size(), identitySet(persons).size(), "person twice in the list");
+        assertEquals(expectedPersons, identitySet(persons));
+        for (Person person : persons) {
+            assertSame(person, personDAO.getById(person.getId()), "ID lookup of person " + person.getId());
+        }
+
+        List<Ticket> tickets = ticketDAO.getAll();
+        assertEquals(tickets.size(), identitySet(tickets).size(), "ticket twice in the list");
+        assertEquals(expectedTickets, identitySet(tickets));
+
+        // Every ticket is in the index under its owner and only there
+        Set<Ticket> indexed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Person person : persons) {
+            for (Ticket ticket : ticketDAO.getAllFor(person)) {
+                assertSame(person, ticket.getBelongsTo(), "ticket " + ticket.getId() + " under another owner");
+                assertTrue(indexed.add(ticket), "ticket " + ticket.getId() + " twice in the index");
+            }
+        }
+        assertEquals(identitySet(tickets), indexed);
+    }
+
+    private static <T> Set<T> identitySet(Collection<T> collection) {
+        Set<T> set = Collections.newSetFromMap(new IdentityHashMap<>());
+        set.addAll(collection);
+        return set;
+    }
+
+    private static Set<Long> ids(List<Person> persons) {
+        Set<Long> ids = new HashSet<>();
+        for (Person person : persons) {
+            ids.add(person.getId());
+        }
+        return ids;
+    }
+}